@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.9.21"
     id("org.jetbrains.intellij") version "1.16.1"
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 group = "wang.imold"
@@ -22,6 +23,8 @@ intellij {
 }
 
 dependencies {
+    // 解析与格式化逻辑在不依赖 IntelliJ 的 mlf-core 模块中，打包进插件
+    implementation(project(":mlf-core"))
     implementation(kotlin("stdlib-jdk8"))
     // 移除可能过时的依赖，避免冲突
 }
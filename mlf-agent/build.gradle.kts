@@ -0,0 +1,29 @@
+plugins {
+    `java-library`
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    api(project(":mlf-core"))
+    // 由使用方的应用提供
+    compileOnly("org.mybatis:mybatis:3.5.16")
+}
+
+tasks.withType<JavaCompile> {
+    options.release.set(8)
+    options.encoding = "UTF-8"
+}
+
+// 本地联调：./gradlew :mlf-agent:standIn --args="127.0.0.1 17017 10000 2000"
+tasks.register<JavaExec>("standIn") {
+    group = "application"
+    description = "不依赖 MyBatis，向 IDE 发送模拟语句"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("wang.imold.mlf.agent.MlfStandInSender")
+}
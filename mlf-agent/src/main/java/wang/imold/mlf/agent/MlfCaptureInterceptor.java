@@ -0,0 +1,149 @@
+package wang.imold.mlf.agent;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * MyBatis 拦截器：直接捕获 BoundSql 与类型化参数，经 {@link MlfCaptureSender} 发送到本机 IDE 的「MyBatis SQL」工具窗口，
+ * 不依赖 DEBUG 日志。
+ * <pre>
+ * &lt;plugins&gt;
+ *     &lt;plugin interceptor="wang.imold.mlf.agent.MlfCaptureInterceptor"&gt;
+ *         &lt;property name="port" value="17017"/&gt;
+ *     &lt;/plugin&gt;
+ * &lt;/plugins&gt;
+ * </pre>
+ * 可选属性：host、port、queueCapacity、batchSize。IDE 未连接时只多一次 volatile 读取；
+ * 连接后业务线程只读取参数值并入队，转文本与发送在后台线程中进行，队列满时丢弃。
+ * <p>
+ * 拦截 StatementHandler 而不是 Executor：BoundSql 直接取执行器已经生成的那一份，不会再求值一次动态 SQL，
+ * 二级缓存命中、未访问数据库的查询也不会被记录。BATCH 执行器的语句在 batch 时记录，影响行数为 -1。
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "batch", args = {Statement.class})
+})
+public class MlfCaptureInterceptor implements Interceptor {
+
+    private volatile MlfCaptureSender sender;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MlfCaptureSender s = sender();
+        if (!s.isActive()) return invocation.proceed();
+
+        StatementHandler handler = (StatementHandler) invocation.getTarget();
+        MappedStatement ms = mappedStatement(handler);
+        if (ms == null) return invocation.proceed();
+        BoundSql boundSql = handler.getBoundSql();
+        Object parameter = handler.getParameterHandler().getParameterObject();
+        // 执行前读取参数，避免生成的主键等回写值混入
+        Object[] values = values(ms.getConfiguration(), boundSql, parameter);
+
+        long time = System.currentTimeMillis();
+        long start = System.nanoTime();
+        int rows = -1;
+        try {
+            Object result = invocation.proceed();
+            if (result instanceof List) {
+                rows = ((List<?>) result).size();
+            } else if (result instanceof Integer) {
+                rows = (Integer) result;
+            }
+            return result;
+        } finally {
+            s.offer(boundSql.getSql(), values, ms.getId(), time, (System.nanoTime() - start) / 1000, rows);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public synchronized void setProperties(Properties properties) {
+        if (sender != null) sender.close();
+        sender = new MlfCaptureSender(
+                properties.getProperty("host", MlfCaptureSender.DEFAULT_HOST),
+                intProperty(properties, "port", MlfCaptureSender.DEFAULT_PORT),
+                intProperty(properties, "queueCapacity", MlfCaptureSender.DEFAULT_QUEUE_CAPACITY),
+                intProperty(properties, "batchSize", MlfCaptureSender.DEFAULT_BATCH_SIZE));
+    }
+
+    /** 以 Bean 方式注册、未调用 setProperties 时使用默认配置 */
+    private MlfCaptureSender sender() {
+        MlfCaptureSender s = sender;
+        if (s == null) {
+            synchronized (this) {
+                s = sender;
+                if (s == null) {
+                    s = new MlfCaptureSender(MlfCaptureSender.DEFAULT_HOST, MlfCaptureSender.DEFAULT_PORT,
+                            MlfCaptureSender.DEFAULT_QUEUE_CAPACITY, MlfCaptureSender.DEFAULT_BATCH_SIZE);
+                    sender = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /** 穿过其他插件的代理与 RoutingStatementHandler 取出 MappedStatement，自定义的 StatementHandler 取不到时返回 null */
+    private static MappedStatement mappedStatement(Object handler) {
+        MetaObject meta = SystemMetaObject.forObject(handler);
+        while (meta.hasGetter("h")) {
+            Object h = meta.getValue("h");
+            if (!(h instanceof Plugin)) break;
+            meta = SystemMetaObject.forObject(SystemMetaObject.forObject(h).getValue("target"));
+        }
+        if (meta.hasGetter("delegate")) meta = SystemMetaObject.forObject(meta.getValue("delegate"));
+        if (!meta.hasGetter("mappedStatement")) return null;
+        Object ms = meta.getValue("mappedStatement");
+        return ms instanceof MappedStatement ? (MappedStatement) ms : null;
+    }
+
+    /** 与 DefaultParameterHandler 相同的取值规则：附加参数 → 单个简单类型参数 → 对象属性 */
+    private static Object[] values(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        Object[] values = new Object[mappings.size()];
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        MetaObject meta = null;
+        for (int i = 0; i < values.length; i++) {
+            String property = mappings.get(i).getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (registry.hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                if (meta == null) meta = configuration.newMetaObject(parameter);
+                value = meta.getValue(property);
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static int intProperty(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,305 @@
+package wang.imold.mlf.agent;
+
+import wang.imold.mlf.MlfFrameCodec;
+import wang.imold.mlf.MlfParamBuffer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把捕获到的语句发送到本机 IDE 的后台发送器。
+ * <p>
+ * 业务线程上只为参数做快照后 {@link ArrayBlockingQueue#offer}，队列满或 IDE 未连接时直接丢弃并计数，从不阻塞；
+ * 编码与网络写入都在单独的守护线程中完成，每次最多取 batchSize 条编成一帧发送。
+ * <p>
+ * 快照时不可变的值（字符串、数字、布尔、枚举、java.time 类型）原样保留，其余值（实体、集合、Date、数组等）
+ * 当场转为截断后的文本，因此发送线程不会在业务对象被修改时调用其 toString，队列也不持有业务对象；
+ * 单个值转文本失败时以占位文本代替，不影响同一帧的其他语句。
+ * IDE 未监听时每隔 {@link #RECONNECT_MILLIS} 毫秒重试一次连接，期间 {@link #isActive()} 为 false，拦截器不做任何捕获。
+ */
+public final class MlfCaptureSender implements Closeable {
+
+    public static final String DEFAULT_HOST = "127.0.0.1";
+    public static final int DEFAULT_PORT = 17017;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long RECONNECT_MILLIS = 5000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    /** 单个参数值最多发送的字符数 */
+    private static final int MAX_VALUE_CHARS = 4096;
+
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final String host;
+    private final int port;
+    private final int batchSize;
+    private final ArrayBlockingQueue<Captured> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean active;
+    private volatile boolean closed;
+
+    // 以下字段只在发送线程中使用
+    private final MlfFrameCodec.Encoder encoder = new MlfFrameCodec.Encoder();
+    private final MlfParamBuffer params = new MlfParamBuffer();
+    private Socket socket;
+    private OutputStream out;
+    private long nextConnect;
+
+    public MlfCaptureSender(String host, int port, int queueCapacity, int batchSize) {
+        this.host = host;
+        this.port = port;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::run, "mlf-capture-sender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** IDE 已连接，拦截器只在此时捕获 */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 提交一条语句，不阻塞；未连接或队列已满时丢弃并返回 false
+     *
+     * @param values 与 ? 一一对应的参数值，在调用线程上做快照，调用返回后可以修改
+     */
+    public boolean offer(String sql, Object[] values, String statementId, long time, long elapsedMicros, int rows) {
+        if (!active || !queue.offer(new Captured(sql, snapshot(values), Thread.currentThread().getName(),
+                statementId, time, elapsedMicros, rows))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** 因未连接、队列满或发送失败而丢弃的语句数 */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long sentCount() {
+        return sent.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        active = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        List<Captured> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed) {
+                if (!connect()) {
+                    queue.clear();
+                    Thread.sleep(Math.max(1, nextConnect - System.currentTimeMillis()));
+                    continue;
+                }
+                Captured first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ignored) {
+            // close()
+        } finally {
+            disconnect();
+        }
+    }
+
+    private void send(List<Captured> batch) {
+        try {
+            encoder.begin(batch.get(0).time);
+            for (Captured c : batch) {
+                toParams(c.values);
+                encoder.add(c.sql, c.thread, c.statementId, c.time, c.elapsedMicros, c.rows, params);
+            }
+            encoder.writeTo(out);
+            out.flush();
+            sent.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            disconnect();
+        }
+    }
+
+    private boolean connect() {
+        if (out != null) return true;
+        long now = System.currentTimeMillis();
+        if (now < nextConnect) return false;
+        nextConnect = now + RECONNECT_MILLIS;
+        try {
+            Socket s = new Socket();
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            socket = s;
+            out = new BufferedOutputStream(s.getOutputStream(), 64 << 10);
+            out.write(MlfFrameCodec.MAGIC);
+            encoder.reset();
+            active = true;
+            return true;
+        } catch (IOException e) {
+            disconnect();
+            return false;
+        }
+    }
+
+    private void disconnect() {
+        active = false;
+        out = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 已断开
+            }
+            socket = null;
+        }
+    }
+
+    /** 在调用线程上为参数做快照：不可变的值原样保留，其余转为 {@link Text} */
+    static Object[] snapshot(Object[] values) {
+        Object[] copy = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            Object v = values[i];
+            copy[i] = isImmutable(v) ? v : Text.of(v);
+        }
+        return copy;
+    }
+
+    private static boolean isImmutable(Object v) {
+        if (v == null || v instanceof String || v instanceof Boolean || v instanceof Character || v instanceof Enum) {
+            return true;
+        }
+        Class<?> c = v.getClass();
+        return c == Integer.class || c == Long.class || c == Short.class || c == Byte.class
+                || c == Double.class || c == Float.class || c == BigDecimal.class || c == BigInteger.class
+                || (v instanceof TemporalAccessor && c.getName().startsWith("java.time."));
+    }
+
+    /** 快照后的参数转为 SQL 字面量：数字与布尔原样输出，null 为 NULL，其余按字符串加引号 */
+    private void toParams(Object[] values) {
+        params.clear();
+        for (Object v : values) {
+            if (v == null) {
+                params.add("null", 0, 4, MlfParamBuffer.NULL);
+            } else if (v instanceof Text) {
+                Text t = (Text) v;
+                params.add(t.value, 0, t.value.length(), t.kind);
+            } else if (v instanceof Number || v instanceof Boolean) {
+                add(v.toString(), MlfParamBuffer.RAW);
+            } else if (v instanceof Enum) {
+                add(((Enum<?>) v).name(), MlfParamBuffer.QUOTED);
+            } else if (v instanceof TemporalAccessor) {
+                add(v.toString().replace('T', ' '), MlfParamBuffer.QUOTED);
+            } else {
+                add(v.toString(), MlfParamBuffer.QUOTED);
+            }
+        }
+    }
+
+    private void add(String s, byte kind) {
+        params.add(s, 0, Math.min(s.length(), MAX_VALUE_CHARS), kind);
+    }
+
+    /** 在调用线程上转好的参数文本 */
+    static final class Text {
+        final String value;
+        final byte kind;
+
+        private Text(String value, byte kind) {
+            this.value = value.length() > MAX_VALUE_CHARS ? value.substring(0, MAX_VALUE_CHARS) : value;
+            this.kind = kind;
+        }
+
+        /** 转换失败（例如延迟加载代理在会话外被访问）时返回占位文本 */
+        static Text of(Object v) {
+            try {
+                if (v instanceof Number) {
+                    return new Text(v.toString(), MlfParamBuffer.RAW);
+                } else if (v instanceof java.sql.Timestamp || v instanceof java.sql.Date || v instanceof java.sql.Time) {
+                    return new Text(v.toString(), MlfParamBuffer.QUOTED);
+                } else if (v instanceof Date) {
+                    return new Text(DATE_FORMAT.format(Instant.ofEpochMilli(((Date) v).getTime())), MlfParamBuffer.QUOTED);
+                } else if (v instanceof TemporalAccessor) {
+                    return new Text(v.toString().replace('T', ' '), MlfParamBuffer.QUOTED);
+                } else if (v instanceof byte[]) {
+                    return new Text(hex((byte[]) v), MlfParamBuffer.RAW);
+                } else if (v.getClass().isArray()) {
+                    return new Text(arrayText(v), MlfParamBuffer.QUOTED);
+                }
+                return new Text(String.valueOf(v), MlfParamBuffer.QUOTED);
+            } catch (RuntimeException e) {
+                return new Text("<" + v.getClass().getName() + " 无法转为文本：" + e.getClass().getSimpleName() + ">",
+                        MlfParamBuffer.QUOTED);
+            }
+        }
+
+        private static String hex(byte[] bytes) {
+            StringBuilder sb = new StringBuilder(Math.min(MAX_VALUE_CHARS, 2 + bytes.length * 2));
+            sb.append("0x");
+            for (int i = 0; i < bytes.length && sb.length() < MAX_VALUE_CHARS; i++) {
+                sb.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            return sb.toString();
+        }
+
+        private static String arrayText(Object array) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('{');
+            for (int i = 0, n = Array.getLength(array); i < n && sb.length() < MAX_VALUE_CHARS; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(Array.get(array, i));
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    private static final class Captured {
+        final String sql;
+        final Object[] values;
+        final String thread;
+        final String statementId;
+        final long time;
+        final long elapsedMicros;
+        final int rows;
+
+        Captured(String sql, Object[] values, String thread, String statementId, long time, long elapsedMicros,
+                 int rows) {
+            this.sql = sql;
+            this.values = values;
+            this.thread = thread;
+            this.statementId = statementId;
+            this.time = time;
+            this.elapsedMicros = elapsedMicros;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package wang.imold.mlf.agent;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 不依赖 MyBatis 的模拟发送端，用于本地联调 IDE 中的接收端：
+ * <pre>
+ * java -cp mlf-agent.jar:mlf-core.jar wang.imold.mlf.agent.MlfStandInSender [host] [port] [条数] [每秒条数]
+ * </pre>
+ */
+public class MlfStandInSender {
+
+    private static final String[] STATEMENTS = {
+            "SELECT id, user_id, amount, status FROM `order` WHERE user_id = ? AND status IN (?, ?) ORDER BY id DESC LIMIT ?",
+            "SELECT oi.id, oi.sku, oi.quantity FROM order_item oi WHERE oi.order_id = ?",
+            "UPDATE `order` SET status = ?, updated_at = ? WHERE id = ?",
+            "INSERT INTO order_item (order_id, sku, quantity, price) VALUES (?, ?, ?, ?)",
+    };
+    private static final String[] IDS = {
+            "com.example.OrderMapper.selectByUser", "com.example.OrderItemMapper.selectByOrder",
+            "com.example.OrderMapper.updateStatus", "com.example.OrderItemMapper.insert",
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : MlfCaptureSender.DEFAULT_HOST;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : MlfCaptureSender.DEFAULT_PORT;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int rate = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        MlfCaptureSender sender = new MlfCaptureSender(host, port,
+                MlfCaptureSender.DEFAULT_QUEUE_CAPACITY, MlfCaptureSender.DEFAULT_BATCH_SIZE);
+        for (int i = 0; i < 50 && !sender.isActive(); i++) Thread.sleep(100);
+        if (!sender.isActive()) {
+            System.err.println("无法连接 " + host + ":" + port + "，请确认 IDE 已启动且 Registry 项 mlf.agent.port 未被设为 0");
+            System.exit(1);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long pause = rate > 0 ? Math.max(0, 1000L / rate) : 0;
+        for (int i = 0; i < count; i++) {
+            int k = random.nextInt(STATEMENTS.length);
+            Object[] values;
+            switch (k) {
+                case 0:
+                    values = new Object[]{random.nextLong(1, 10_000), "PAID", "SHIPPED", 20};
+                    break;
+                case 1:
+                    values = new Object[]{random.nextLong(1, 1_000_000)};
+                    break;
+                case 2:
+                    values = new Object[]{"CANCELLED", new Date(), random.nextLong(1, 1_000_000)};
+                    break;
+                default:
+                    values = new Object[]{random.nextLong(1, 1_000_000), "SKU-" + random.nextInt(1000),
+                            random.nextInt(1, 5), BigDecimal.valueOf(random.nextInt(100, 100_000), 2)};
+            }
+            sender.offer(STATEMENTS[k], values, IDS[k], System.currentTimeMillis(),
+                    random.nextLong(200, 50_000), k < 2 ? random.nextInt(0, 20) : 1);
+            if (pause > 0) Thread.sleep(pause);
+        }
+        Thread.sleep(1500);
+        System.out.println("已发送 " + sender.sentCount() + " 条，丢弃 " + sender.droppedCount() + " 条");
+        sender.close();
+    }
+}
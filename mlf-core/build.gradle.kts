@@ -0,0 +1,46 @@
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// 日志集成会被部署到各个服务中，保持 Java 8 字节码
+tasks.withType<JavaCompile> {
+    options.release.set(8)
+    options.encoding = "UTF-8"
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+// 基准测试：./gradlew :mlf-core:jmh，结果输出到 mlf-core/build/results/jmh/results.txt
+jmh {
+    jmhVersion.set("1.37")
+    profilers.set(listOf("gc"))
+    resultFormat.set("TEXT")
+    // 只跑部分基准：./gradlew :mlf-core:jmh -Pjmh.includes=formatRawSql
+    project.findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+}
+
+// 命令行工具：java -jar mlf-core/build/libs/mlf-core-<version>-cli.jar app.log
+tasks.register<Jar>("cliJar") {
+    group = "build"
+    description = "打包 MyBatis 日志格式化命令行工具"
+    archiveClassifier.set("cli")
+    manifest {
+        attributes("Main-Class" to "wang.imold.mlf.MlfCli")
+    }
+    from(sourceSets.main.get().output)
+}
@@ -0,0 +1,99 @@
+package wang.imold.mlf;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MlfLogParser 热点路径基准测试，语料位于 src/jmh/resources/corpus：
+ * <ul>
+ *     <li>crud：单条简单 CRUD</li>
+ *     <li>nested-report：15 层嵌套的报表查询</li>
+ *     <li>in-list-10k：10000 个元素的 IN 列表</li>
+ *     <li>console-dump：多线程交错输出的 500 条语句</li>
+ * </ul>
+ * 运行：{@code ./gradlew jmh}，报告包含 GC profiler 的分配速率。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MlfLogParserBenchmark {
+
+    @Param({"crud", "nested-report", "in-list-10k"})
+    public String corpus;
+
+    private final MlfLogParser parser = new MlfLogParser();
+    private final MlfParamBuffer params = new MlfParamBuffer();
+    private String log;
+    private String sql;
+    private String parameters;
+    private String consoleDump;
+
+    @Setup
+    public void setup() {
+        log = load(corpus);
+        consoleDump = load("console-dump");
+        sql = parser.extractPureSqlFromLog(log);
+        MlfStatementRecord record = MlfLogRecordExtractor.extractAll(log).get(0);
+        parameters = record.getParameters();
+    }
+
+    @Benchmark
+    public String formatMybatisLog() {
+        return parser.formatMybatisLog(log);
+    }
+
+    /** 清空模板缓存，测量完整的解析 + 排版开销 */
+    @Benchmark
+    public String formatMybatisLogColdCache() {
+        MlfLogParser.templateCache().clear();
+        return parser.formatMybatisLog(log);
+    }
+
+    @Benchmark
+    public String formatRawSql() {
+        return parser.formatRawSql(sql);
+    }
+
+    @Benchmark
+    public String extractPureSqlFromLog() {
+        return parser.extractPureSqlFromLog(log);
+    }
+
+    @Benchmark
+    public int extractParameters() {
+        params.clear();
+        MlfParamScanner.scan(parameters, 0, params);
+        return params.count();
+    }
+
+    /** 多语句控制台：提取 + 配对 + 批量格式化 */
+    @Benchmark
+    public String formatConsoleDump() {
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(consoleDump);
+        return parser.formatRecords(records);
+    }
+
+    private static String load(String name) {
+        String path = "/corpus/" + name + ".log";
+        try (InputStream in = MlfLogParserBenchmark.class.getResourceAsStream(path)) {
+            if (in == null) throw new IllegalStateException("语料不存在：" + path);
+            // 与 main 一样按 Java 8 编译，不能用 readAllBytes
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) != -1; ) out.write(buf, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package wang.imold.mlf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * BATCH 执行器日志的流式展开：一条 Preparing 之后的每个 Parameters 输出一条可执行 SQL。
+ * <p>
+ * 模板只排版一次（{@link MlfLogParser#cachedLayout(String)}），之后每条语句只扫描参数并拼接到占位符位置，
+ * 逐条写出，内存占用与批量大小无关。
+ * <p>
+ * 开启合并时，形如 {@code INSERT ... VALUES (?, ?)} 的模板把同一批次的参数合并为多行
+ * {@code INSERT ... VALUES (...), (...)}，每条最多 maxRows 行；其他模板仍逐条输出。非线程安全。
+ */
+public class MlfBatchExpander {
+
+    /** 合并时每条 INSERT 默认的最大行数 */
+    public static final int DEFAULT_ROWS = 1000;
+
+    private static final String ROW_INDENT = "\n    ";
+
+    private final Appendable out;
+    private final int maxRows;
+    private final MlfParamBuffer params = new MlfParamBuffer();
+    private final MlfSqlLexer lexer = new MlfSqlLexer();
+    private final StringBuilder sb = new StringBuilder(1024);
+    /** 合并中的批次，按「线程名 + Mapper 日志名」区分 */
+    private final Map<String, Group> groups = new HashMap<>();
+    private long statements;
+
+    /**
+     * @param maxRows 合并为多行 INSERT 时每条的最大行数，&lt;= 1 表示不合并
+     */
+    public MlfBatchExpander(Appendable out, int maxRows) {
+        this.out = out;
+        this.maxRows = maxRows;
+    }
+
+    /** 可直接作为 {@link MlfLogRecordExtractor} 的 sink，写出失败时抛出 {@link UncheckedIOException} */
+    public void accept(MlfStatementRecord record) {
+        try {
+            if (maxRows <= 1) {
+                writeStatement(record);
+                return;
+            }
+            String key = record.getThread() + '\u0000' + record.getLogger();
+            Group group = groups.get(key);
+            if (group != null && (record.getBatchIndex() == 0 || !group.first.getSql().equals(record.getSql()))) {
+                groups.remove(key);
+                flush(group);
+                group = null;
+            }
+            if (group == null) {
+                ValuesTemplate template = ValuesTemplate.of(lexer, record.getSql());
+                if (template == null) {
+                    // 先写出同一线程上合并中的批次，保持该线程的日志顺序
+                    flushThread(record.getThread());
+                    writeStatement(record);
+                    return;
+                }
+                group = new Group(record, template);
+                groups.put(key, group);
+            }
+            group.add(record, params);
+            if (group.rows == maxRows) {
+                groups.remove(key);
+                flush(group);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** 输入结束，写出所有合并中的批次 */
+    public void finish() {
+        List<Group> rest = new ArrayList<>(groups.values());
+        groups.clear();
+        rest.sort(Comparator.comparingLong(g -> g.first.getSequence()));
+        try {
+            for (Group group : rest) flush(group);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushThread(String thread) throws IOException {
+        if (groups.isEmpty()) return;
+        List<Group> held = new ArrayList<>();
+        for (Iterator<Group> it = groups.values().iterator(); it.hasNext(); ) {
+            Group group = it.next();
+            if (group.first.getThread().equals(thread)) {
+                held.add(group);
+                it.remove();
+            }
+        }
+        held.sort(Comparator.comparingLong(g -> g.first.getSequence()));
+        for (Group group : held) flush(group);
+    }
+
+    /** 已写出的语句数（合并后的多行 INSERT 计为一条） */
+    public long getStatements() {
+        return statements;
+    }
+
+    private void writeStatement(MlfStatementRecord record) throws IOException {
+        params.clear();
+        if (record.getParameters() != null) MlfParamScanner.scan(record.getParameters(), 0, params);
+        sb.setLength(0);
+        sb.append(record.header()).append('\n');
+        MlfLogParser.cachedLayout(record.getSql()).splice(params, sb);
+        sb.append(";\n\n");
+        write();
+    }
+
+    private void flush(Group group) throws IOException {
+        if (group.rows == 1) {
+            writeStatement(group.first);
+            return;
+        }
+        sb.setLength(0);
+        sb.append(group.first.header()).append("  合并 ").append(group.rows).append(" 行\n")
+                .append(group.template.prefix).append(ROW_INDENT)
+                .append(group.values).append(";\n\n");
+        write();
+    }
+
+    private void write() throws IOException {
+        out.append(sb);
+        statements++;
+        // 单条超大语句写出后释放缓冲
+        if (sb.capacity() > 1 << 20) {
+            sb.setLength(0);
+            sb.trimToSize();
+        }
+    }
+
+    /** 同一批次中已合并的行 */
+    private static final class Group {
+        final MlfStatementRecord first;
+        final ValuesTemplate template;
+        final StringBuilder values = new StringBuilder();
+        int rows;
+
+        Group(MlfStatementRecord first, ValuesTemplate template) {
+            this.first = first;
+            this.template = template;
+        }
+
+        void add(MlfStatementRecord record, MlfParamBuffer params) {
+            params.clear();
+            if (record.getParameters() != null) MlfParamScanner.scan(record.getParameters(), 0, params);
+            if (rows > 0) values.append(',').append(ROW_INDENT);
+            template.row.splice(params, values);
+            rows++;
+        }
+    }
+
+    /**
+     * INSERT ... VALUES (...) 模板拆成 VALUES 之前（含 VALUES）的前缀与一行值，值中的 ? 位置预先记录
+     */
+    static final class ValuesTemplate {
+        final String prefix;
+        final MlfSqlLayout row;
+
+        private ValuesTemplate(String prefix, MlfSqlLayout row) {
+            this.prefix = prefix;
+            this.row = row;
+        }
+
+        /** 模板不是以单行 VALUES (...) 结尾、或前缀中含 ? 时返回 null */
+        static ValuesTemplate of(MlfSqlLexer lexer, String sql) {
+            MlfSqlLexer lx = lexer.reset(sql);
+            try {
+                int n = lx.count();
+                int values = -1;
+                int depth = 0;
+                for (int i = 0; i < n && values == -1; i++) {
+                    byte type = lx.type(i);
+                    if (type == MlfSqlLexer.LPAREN) {
+                        depth++;
+                    } else if (type == MlfSqlLexer.RPAREN) {
+                        depth--;
+                    } else if (type == MlfSqlLexer.PLACEHOLDER) {
+                        return null;
+                    } else if (type == MlfSqlLexer.WORD && depth == 0 && isValues(lx, i)) {
+                        values = i;
+                    }
+                }
+                if (values == -1 || values + 1 >= n || lx.type(values + 1) != MlfSqlLexer.LPAREN) return null;
+                int open = values + 1;
+                int close = lx.match(open);
+                if (close < open || close != lastCode(lx)) return null;
+
+                int rowStart = lx.start(open);
+                int[] placeholders = new int[8];
+                int count = 0;
+                for (int i = open + 1; i < close; i++) {
+                    if (lx.type(i) != MlfSqlLexer.PLACEHOLDER) continue;
+                    if (count == placeholders.length) placeholders = Arrays.copyOf(placeholders, count << 1);
+                    placeholders[count++] = lx.start(i) - rowStart;
+                }
+                String prefix = sql.substring(0, lx.end(values));
+                String row = sql.substring(rowStart, lx.end(close));
+                return new ValuesTemplate(prefix, new MlfSqlLayout(row, Arrays.copyOf(placeholders, count)));
+            } finally {
+                lexer.reset("");
+            }
+        }
+
+        private static boolean isValues(MlfSqlLexer lx, int i) {
+            if (lx.end(i) - lx.start(i) != 6) return false;
+            CharSequence src = lx.source();
+            String word = "VALUES";
+            for (int k = 0; k < 6; k++) {
+                if (MlfSqlLexer.toUpperAscii(src.charAt(lx.start(i) + k)) != word.charAt(k)) return false;
+            }
+            return true;
+        }
+
+        private static int lastCode(MlfSqlLexer lx) {
+            int i = lx.count() - 1;
+            while (i >= 0 && (lx.type(i) == MlfSqlLexer.LINE_COMMENT || lx.type(i) == MlfSqlLexer.BLOCK_COMMENT
+                    || (lx.type(i) == MlfSqlLexer.SYMBOL && lx.source().charAt(lx.start(i)) == ';'))) {
+                i--;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package wang.imold.mlf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * 批量并行格式化：按下标区间递归拆分任务交给 work-stealing 的 {@link ForkJoinPool}，
+ * 结果写回对应下标，输出顺序与输入一致。解析器的临时对象按线程复用，无需加锁。
+ */
+public final class MlfBatchFormatter {
+
+    /** 区间小于该值时不再拆分，直接在当前线程顺序格式化 */
+    private static final int SPLIT_THRESHOLD = 16;
+
+    private MlfBatchFormatter() {
+    }
+
+    /**
+     * 并行格式化多段 MyBatis 日志（每段包含 Preparing / Parameters），没有 Preparing 的位置为 null
+     */
+    public static List<String> formatAll(List<String> logs) {
+        MlfLogParser parser = new MlfLogParser();
+        return formatParallel(logs, parser::formatMybatisLog, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行格式化已提取的语句记录
+     */
+    public static List<String> formatRecords(List<MlfStatementRecord> records) {
+        return formatRecords(records, ForkJoinPool.commonPool());
+    }
+
+    public static List<String> formatRecords(List<MlfStatementRecord> records, ForkJoinPool pool) {
+        MlfLogParser parser = new MlfLogParser();
+        return formatParallel(records, parser::formatRecord, pool);
+    }
+
+    /**
+     * 并行格式化捕获或导入的语句
+     */
+    public static List<String> formatStatements(List<MlfCapturedStatement> statements, ForkJoinPool pool) {
+        MlfLogParser parser = new MlfLogParser();
+        return formatParallel(statements, s -> s.format(parser), pool);
+    }
+
+    private static <T> List<String> formatParallel(List<T> items, Function<T, String> formatter, ForkJoinPool pool) {
+        String[] results = new String[items.size()];
+        if (items.size() <= SPLIT_THRESHOLD) {
+            for (int i = 0; i < results.length; i++) results[i] = formatter.apply(items.get(i));
+        } else {
+            // 工作线程沿用调用方的格式化预算
+            MlfFormatBudget budget = MlfFormatBudget.current();
+            pool.invoke(new FormatTask<>(items, formatter, results, 0, results.length, budget));
+        }
+        return Arrays.asList(results);
+    }
+
+    private static final class FormatTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+        private final Function<T, String> formatter;
+        private final String[] results;
+        private final int from;
+        private final int to;
+        private final MlfFormatBudget budget;
+
+        FormatTask(List<T> items, Function<T, String> formatter, String[] results, int from, int to,
+                   MlfFormatBudget budget) {
+            this.items = items;
+            this.formatter = formatter;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.budget = budget;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                budget.call(() -> {
+                    for (int i = from; i < to; i++) {
+                        results[i] = formatter.apply(items.get(i));
+                    }
+                    return null;
+                });
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FormatTask<>(items, formatter, results, from, mid, budget),
+                    new FormatTask<>(items, formatter, results, mid, to, budget));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package wang.imold.mlf;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 由 MyBatis 拦截器直接捕获（而非从日志解析）的一条语句：BoundSql 模板、编码后的类型化参数与执行结果
+ */
+public final class MlfCapturedStatement {
+
+    private final String sql;
+    private final String thread;
+    private final String statementId;
+    private final long time;
+    private final long elapsedMicros;
+    private final int rows;
+    private final byte[] encodedParams;
+
+    public MlfCapturedStatement(String sql, String thread, String statementId, long time, long elapsedMicros,
+                                int rows, byte[] encodedParams) {
+        this.sql = sql;
+        this.thread = thread;
+        this.statementId = statementId;
+        this.time = time;
+        this.elapsedMicros = elapsedMicros;
+        this.rows = rows;
+        this.encodedParams = encodedParams;
+    }
+
+    /** 带 ? 占位符的 SQL 模板 */
+    public String getSql() {
+        return sql;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    /** MappedStatement 的 id，例如 {@code com.example.UserMapper.selectById} */
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /** 执行开始时间（毫秒），未知时为 -1 */
+    public long getTime() {
+        return time;
+    }
+
+    /** 执行耗时（微秒），未知时为 -1 */
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    /** 查询返回的行数或更新影响的行数，未知时为 -1 */
+    public int getRows() {
+        return rows;
+    }
+
+    /** 是否为查询（以 SELECT / WITH 开头），此时 {@link #getRows()} 为返回行数，否则为影响行数 */
+    public boolean isQuery() {
+        int i = 0;
+        while (i < sql.length() && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) i++;
+        return sql.regionMatches(true, i, "SELECT", 0, 6) || sql.regionMatches(true, i, "WITH", 0, 4);
+    }
+
+    /** {@link MlfParamCodec} 编码的参数 */
+    public byte[] getEncodedParams() {
+        return encodedParams;
+    }
+
+    /** 解码参数并格式化为可执行 SQL */
+    public String format(MlfLogParser parser) {
+        MlfParamBuffer params = new MlfParamBuffer();
+        MlfParamCodec.decode(encodedParams, 0, params, new StringBuilder());
+        return parser.formatStatement(sql, params);
+    }
+
+    /** 结果窗口中的注释头 */
+    public String header() {
+        StringBuilder sb = new StringBuilder("--");
+        if (time >= 0) sb.append(' ').append(new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(time)));
+        if (!thread.isEmpty()) sb.append(" [").append(thread).append(']');
+        if (!statementId.isEmpty()) sb.append(' ').append(statementId);
+        if (rows >= 0) sb.append(isQuery() ? "  Total: " : "  Updates: ").append(rows);
+        if (elapsedMicros >= 0) sb.append("  耗时: ").append(MlfLatencyHistogram.formatMillis(elapsedMicros)).append(" ms");
+        return sb.toString();
+    }
+}
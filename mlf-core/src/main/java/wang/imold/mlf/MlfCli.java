@@ -0,0 +1,498 @@
+package wang.imold.mlf;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 命令行入口：以内存映射方式流式读取 MyBatis 日志文件，输出可直接执行的格式化 SQL。
+ * <pre>
+ * java -jar mlf-cli.jar [-o out.sql] [--from 字节偏移] [--to 字节偏移] [-j 线程数] app.log
+ * java -jar mlf-cli.jar --report 20 app.log
+ * java -jar mlf-cli.jar --n-plus-one 10 [--window 500] app.log
+ * java -jar mlf-cli.jar --latency 20 app.log
+ * java -jar mlf-cli.jar --collapse-batch [--batch-rows 1000] -o out.sql app.log
+ * java -jar mlf-cli.jar --index app.log
+ * java -jar mlf-cli.jar [--fingerprint 0x1a2b3c4d5e6f7a8b] [--thread 线程名] app.log
+ * java -jar mlf-cli.jar --export app.mlfx [--compress] app.log
+ * java -jar mlf-cli.jar --import [-o out.sql] app.mlfx
+ * java -jar mlf-cli.jar --compare baseline.log [--threshold 10] [--min-delta 1] [--min-rows-delta 10] candidate.log
+ * </pre>
+ * 退出码：0 成功，1 读写失败，2 参数错误，3 --compare 发现新增语句或次数 / 行数增加超过阈值。
+ */
+public class MlfCli {
+
+    /** 每次并行格式化的语句数 */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** 统计报表最少保留的指纹数 */
+    private static final int REPORT_MIN_CAPACITY = 4096;
+
+    /** --compare 发现回归时的退出码 */
+    static final int EXIT_REGRESSION = 3;
+
+    /** 比较两次运行时默认的变化阈值（百分比） */
+    private static final double DEFAULT_THRESHOLD = 10;
+    private static final long DEFAULT_MIN_ROWS_DELTA = 10;
+
+    /** N+1 检测默认的行窗口 */
+    private static final long DEFAULT_WINDOW = 500;
+
+    private static final String USAGE = String.join("\n",
+            "用法: java -jar mlf-cli.jar [选项] <日志文件>",
+            "  -o, --output <文件>   输出到文件（默认输出到标准输出）",
+            "  --from <字节偏移>      从该偏移之后的第一行开始处理",
+            "  --to <字节偏移>        只处理行首位于该偏移之前的行",
+            "  -j, --parallel <线程数> 并行格式化使用的线程数（默认 CPU 核数）",
+            "  --collapse-batch       BATCH 执行器的 INSERT ... VALUES 按批次合并为多行 INSERT",
+            "  --batch-rows <行数>    合并后每条 INSERT 的最大行数（默认 " + MlfBatchExpander.DEFAULT_ROWS + "）",
+            "  --report <N>           不输出 SQL，按语句指纹统计执行次数与行数，输出前 N 个",
+            "  --n-plus-one <阈值>    不输出 SQL，检测同一线程上连续执行达到阈值次数的同一语句（N+1 查询）",
+            "  --latency <N>          不输出 SQL，按 Preparing 到 Total/Updates 的时间差统计各语句耗时，输出 p99 最慢的 N 个",
+            "  --window <行数>        N+1 检测中相邻两次执行最多间隔的行数（默认 " + DEFAULT_WINDOW + "）",
+            "  --index                建立或增量更新日志旁的 " + MlfLogIndex.SUFFIX + " 索引，输出索引概况",
+            "  --fingerprint <指纹>   借助索引只输出该指纹（--report 中的 0x... 或一条 SQL）的全部执行",
+            "  --thread <线程名>      借助索引只输出该线程上的语句，可与 --fingerprint 同时使用",
+            "  --export <文件>        不输出 SQL，把提取出的语句导出为紧凑的字典编码文件",
+            "  --compress             导出时按块 Deflate 压缩",
+            "  --import               输入为 --export 导出的文件，读回并输出格式化 SQL",
+            "  --compare <基线日志>   不输出 SQL，按语句指纹比较基线与输入日志的执行次数和行数，有回归时退出码为 " + EXIT_REGRESSION,
+            "  --threshold <百分比>   比较时次数或行数相对基线变化超过该百分比才报告（默认 10）",
+            "  --min-delta <次数>     比较时次数变化至少为该值才报告（默认 1）",
+            "  --min-rows-delta <行数> 比较时行数变化至少为该值才报告（默认 10）",
+            "  --stats                处理结束后在标准错误输出各阶段的累计次数与耗时",
+            "  -h, --help             显示帮助");
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        Path input = null;
+        Path output = null;
+        long from = 0;
+        long to = Long.MAX_VALUE;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int report = 0;
+        int nPlusOne = 0;
+        int latency = 0;
+        int batchRows = 0;
+        boolean collapse = false;
+        boolean index = false;
+        boolean stats = false;
+        Path export = null;
+        boolean compress = false;
+        boolean importing = false;
+        Path baseline = null;
+        double threshold = DEFAULT_THRESHOLD;
+        long minDelta = 1;
+        long minRowsDelta = DEFAULT_MIN_ROWS_DELTA;
+        long fingerprint = 0;
+        String thread = null;
+        long window = DEFAULT_WINDOW;
+        boolean ranged = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o":
+                    case "--output":
+                        output = Paths.get(args[++i]);
+                        break;
+                    case "--from":
+                        from = Long.parseLong(args[++i]);
+                        ranged = true;
+                        break;
+                    case "--to":
+                        to = Long.parseLong(args[++i]);
+                        ranged = true;
+                        break;
+                    case "-j":
+                    case "--parallel":
+                        parallelism = Integer.parseInt(args[++i]);
+                        if (parallelism < 1) throw new IllegalArgumentException("线程数必须大于 0");
+                        break;
+                    case "--collapse-batch":
+                        collapse = true;
+                        break;
+                    case "--batch-rows":
+                        batchRows = Integer.parseInt(args[++i]);
+                        if (batchRows < 2) throw new IllegalArgumentException("--batch-rows 必须大于 1");
+                        break;
+                    case "--report":
+                        report = Integer.parseInt(args[++i]);
+                        if (report < 1) throw new IllegalArgumentException("--report 必须大于 0");
+                        break;
+                    case "--n-plus-one":
+                        nPlusOne = Integer.parseInt(args[++i]);
+                        if (nPlusOne < 2) throw new IllegalArgumentException("--n-plus-one 必须大于 1");
+                        break;
+                    case "--latency":
+                        latency = Integer.parseInt(args[++i]);
+                        if (latency < 1) throw new IllegalArgumentException("--latency 必须大于 0");
+                        break;
+                    case "--window":
+                        window = Long.parseLong(args[++i]);
+                        if (window < 1) throw new IllegalArgumentException("--window 必须大于 0");
+                        break;
+                    case "--index":
+                        index = true;
+                        break;
+                    case "--fingerprint":
+                        fingerprint = fingerprintHash(args[++i]);
+                        break;
+                    case "--thread":
+                        thread = args[++i];
+                        break;
+                    case "--export":
+                        export = Paths.get(args[++i]);
+                        break;
+                    case "--compress":
+                        compress = true;
+                        break;
+                    case "--import":
+                        importing = true;
+                        break;
+                    case "--compare":
+                        baseline = Paths.get(args[++i]);
+                        break;
+                    case "--threshold":
+                        threshold = Double.parseDouble(args[++i]);
+                        if (threshold < 0) throw new IllegalArgumentException("--threshold 不能小于 0");
+                        break;
+                    case "--min-delta":
+                        minDelta = Long.parseLong(args[++i]);
+                        if (minDelta < 1) throw new IllegalArgumentException("--min-delta 必须大于 0");
+                        break;
+                    case "--min-rows-delta":
+                        minRowsDelta = Long.parseLong(args[++i]);
+                        if (minRowsDelta < 1) throw new IllegalArgumentException("--min-rows-delta 必须大于 0");
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    case "-h":
+                    case "--help":
+                        System.out.println(USAGE);
+                        return 0;
+                    default:
+                        if (args[i].startsWith("-") || input != null) throw new IllegalArgumentException("未知参数：" + args[i]);
+                        input = Paths.get(args[i]);
+                }
+            }
+            // 各模式互斥，不再按优先级静默忽略其余选项
+            List<String> modes = new ArrayList<>();
+            if (baseline != null) modes.add("--compare");
+            if (export != null) modes.add("--export");
+            if (importing) modes.add("--import");
+            if (index || fingerprint != 0 || thread != null) modes.add("--index / --fingerprint / --thread");
+            if (report > 0) modes.add("--report");
+            if (latency > 0) modes.add("--latency");
+            if (nPlusOne > 0) modes.add("--n-plus-one");
+            if (collapse) modes.add("--collapse-batch");
+            if (modes.size() > 1) throw new IllegalArgumentException("不能同时使用 " + String.join("、", modes));
+            // 索引总是覆盖整个文件，导入的输入不是日志，字节偏移没有意义
+            if (ranged && (importing || index || fingerprint != 0 || thread != null)) {
+                throw new IllegalArgumentException(modes.get(0) + " 不支持 --from / --to");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "缺少参数值" : e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (input == null || !Files.isRegularFile(input)) {
+            System.err.println(input == null ? "请指定日志文件" : "日志文件不存在：" + input);
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        if (baseline != null && !Files.isRegularFile(baseline)) {
+            System.err.println("基线日志不存在：" + baseline);
+            return 2;
+        }
+
+        if (importing) {
+            try (Writer out = openOutput(output)) {
+                importFile(input, out, parallelism);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("处理失败：" + e.getMessage());
+                return 1;
+            }
+            if (stats) System.err.print(MlfStageStats.summary() + MlfLogParser.templateCache() + '\n');
+            return 0;
+        }
+
+        try (Writer out = openOutput(output);
+             MlfMappedLineReader reader = new MlfMappedLineReader(input)) {
+            if (baseline != null) {
+                try (MlfMappedLineReader base = new MlfMappedLineReader(baseline)) {
+                    if (compareFiles(base, reader, from, to, out, threshold, minDelta, minRowsDelta)) return EXIT_REGRESSION;
+                }
+            } else if (export != null) {
+                exportFile(reader, from, to, export, compress, out);
+            } else if (index || fingerprint != 0 || thread != null) {
+                indexFile(reader, MlfLogIndex.fileFor(input), out, fingerprint, thread, parallelism);
+            } else if (report > 0) {
+                reportFile(reader, from, to, out, report);
+            } else if (latency > 0) {
+                latencyFile(reader, from, to, out, latency);
+            } else if (nPlusOne > 0) {
+                detectFile(reader, from, to, out, nPlusOne, window);
+            } else if (collapse) {
+                expandFile(reader, from, to, out, batchRows > 0 ? batchRows : MlfBatchExpander.DEFAULT_ROWS);
+            } else {
+                formatFile(reader, from, to, out, parallelism);
+            }
+            if (stats) System.err.print(MlfStageStats.summary() + MlfLogParser.templateCache() + '\n');
+            return 0;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("处理失败：" + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * 配对完成的语句按块并行格式化后顺序写出，内存中只保留一个块、尚未配对完成的 Preparing 记录
+     * 以及等待更早语句完成的记录
+     */
+    static void formatFile(MlfMappedLineReader reader, long from, long to, Writer out, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            InputOrder order = new InputOrder(out, pool);
+            MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(order::add);
+            reader.scan(from, to, (line, offset) -> {
+                extractor.accept(line, 0, line.length(), offset);
+                order.drainIfFull(extractor);
+            });
+            extractor.finish();
+            order.drain(Long.MAX_VALUE);
+            order.flush();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 顺序展开并合并 BATCH 日志：模板只排版一次，每个 Parameters 只拼接参数
+     */
+    static void expandFile(MlfMappedLineReader reader, long from, long to, Writer out, int maxRows) throws IOException {
+        MlfBatchExpander expander = new MlfBatchExpander(out, maxRows);
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(expander::accept);
+        reader.scan(from, to, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+        extractor.finish();
+        expander.finish();
+    }
+
+    /**
+     * 单遍统计各语句指纹的执行次数与行数，内存占用只与保留的指纹数有关
+     */
+    static void reportFile(MlfMappedLineReader reader, long from, long to, Writer out, int top) throws IOException {
+        MlfFingerprintReport report = new MlfFingerprintReport(Math.max(REPORT_MIN_CAPACITY, top * 16));
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(report::accept);
+        reader.scan(from, to, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+        extractor.finish();
+        out.write(report.toText(top));
+    }
+
+    /**
+     * 单遍统计各语句指纹的耗时分布，每个指纹的直方图大小固定
+     */
+    static void latencyFile(MlfMappedLineReader reader, long from, long to, Writer out, int top) throws IOException {
+        MlfLatencyAnalyzer analyzer = new MlfLatencyAnalyzer(Math.max(REPORT_MIN_CAPACITY, top * 16));
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(analyzer::accept);
+        reader.scan(from, to, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+        extractor.finish();
+        out.write(analyzer.toText(top));
+    }
+
+    /**
+     * 流式检测 N+1 查询，每个告警在突发结束时立即写出
+     */
+    static void detectFile(MlfMappedLineReader reader, long from, long to, Writer out,
+                           int threshold, long window) throws IOException {
+        MlfLogParser parser = new MlfLogParser();
+        MlfNPlusOneDetector detector = new MlfNPlusOneDetector(threshold, window, alert -> {
+            try {
+                out.write(alert.toText(parser));
+                out.write("\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(detector::accept);
+        // 窗口与告警中的行号都按文件中的真实行计算，与在编辑器中检测一致
+        reader.scanNumbered(from, to, (line, offset, number) -> extractor.accept(line, 0, line.length(), offset, number));
+        extractor.finish();
+        detector.finish();
+        out.write("-- 共发现 " + detector.getAlerts() + " 处 N+1 查询\n");
+    }
+
+    /**
+     * 先增量更新日志旁的索引，再按指纹 / 线程查找，只读取并格式化命中的语句；都未指定时只输出索引概况
+     */
+    static void indexFile(MlfMappedLineReader reader, Path file, Writer out, long fingerprint, String thread,
+                          int parallelism) throws IOException {
+        try (MlfLogIndex index = new MlfLogIndex(reader, file)) {
+            long added = index.update();
+            if (fingerprint == 0 && thread == null) {
+                out.write("-- 索引 " + file + "：共 " + index.size() + " 条语句，本次新增 " + added
+                        + " 条，已索引 " + index.indexedLength() + " 字节\n");
+                return;
+            }
+            long[] found = index.find(fingerprint, thread);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<MlfStatementRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+                index.read(found, record -> {
+                    chunk.add(record);
+                    if (chunk.size() == CHUNK_SIZE) writeChunk(chunk, out, pool);
+                });
+                writeChunk(chunk, out, pool);
+            } finally {
+                pool.shutdown();
+            }
+            out.write("-- 共 " + found.length + " 条语句\n");
+        }
+    }
+
+    /**
+     * 基线与候选日志各流式统计一遍，按指纹连接后输出差异，返回是否有回归；--from / --to 只作用于候选日志
+     */
+    static boolean compareFiles(MlfMappedLineReader baseline, MlfMappedLineReader candidate, long from, long to,
+                                Writer out, double threshold, long minDelta, long minRowsDelta)
+            throws IOException {
+        MlfRunComparator comparator = new MlfRunComparator(MlfRunComparator.DEFAULT_CAPACITY);
+        MlfLogRecordExtractor base = new MlfLogRecordExtractor(comparator::acceptBaseline);
+        baseline.scan(0, Long.MAX_VALUE, (line, offset) -> base.accept(line, 0, line.length(), offset));
+        base.finish();
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(comparator::acceptCandidate);
+        candidate.scan(from, to, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+        extractor.finish();
+        MlfRunComparator.Result result = comparator.compare(threshold, minDelta, minRowsDelta);
+        out.write(result.toText());
+        return result.isRegression();
+    }
+
+    /**
+     * 把提取出的语句流式写入导出文件，同一模板只写一次，参数类型化变长编码
+     */
+    static void exportFile(MlfMappedLineReader reader, long from, long to, Path file, boolean compress, Writer out)
+            throws IOException {
+        try (MlfStatementExport.Writer writer = new MlfStatementExport.Writer(Files.newOutputStream(file), compress)) {
+            MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(record -> {
+                try {
+                    writer.add(record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            reader.scan(from, to, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+            extractor.finish();
+            writer.finish();
+            out.write("-- 已导出 " + writer.count() + " 条语句到 " + file + "（" + Files.size(file) + " 字节）\n");
+        }
+    }
+
+    /**
+     * 逐块读回导出文件，每块并行格式化后顺序写出
+     */
+    static void importFile(Path file, Writer out, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (MlfStatementExport.Reader reader = new MlfStatementExport.Reader(Files.newInputStream(file))) {
+            List<MlfCapturedStatement> block;
+            while ((block = reader.read()) != null) {
+                List<String> formatted = MlfBatchFormatter.formatStatements(block, pool);
+                for (int i = 0; i < block.size(); i++) {
+                    out.write(block.get(i).header());
+                    out.write('\n');
+                    out.write(formatted.get(i));
+                    out.write(";\n\n");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** 0x 开头按十六进制指纹解析，否则视为 SQL 计算其指纹 */
+    static long fingerprintHash(String value) {
+        if (!value.startsWith("0x")) return MlfSqlFingerprint.hash(new MlfSqlFingerprint().normalize(value));
+        try {
+            return Long.parseUnsignedLong(value.substring(2), 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的指纹：" + value);
+        }
+    }
+
+    private static void writeChunk(List<MlfStatementRecord> chunk, Writer out, ForkJoinPool pool) {
+        List<String> formatted = MlfBatchFormatter.formatRecords(chunk, pool);
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                out.write(chunk.get(i).header());
+                out.write('\n');
+                out.write(formatted.get(i));
+                out.write(";\n\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    /**
+     * 把完成顺序的记录恢复为 Preparing 出现顺序：已完成的记录按序号排队，早于所有未完成记录的才进入输出块。
+     * 某条 Preparing 一直等不到 Total 时，排队超过 {@link #MAX_WAITING} 条后按序号强制写出，避免无限积压。
+     */
+    private static final class InputOrder {
+
+        private static final int MAX_WAITING = CHUNK_SIZE * 16;
+
+        private final PriorityQueue<MlfStatementRecord> waiting =
+                new PriorityQueue<>(CHUNK_SIZE, Comparator.comparingLong(MlfStatementRecord::getSequence));
+        private final List<MlfStatementRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final Writer out;
+        private final ForkJoinPool pool;
+        private int nextDrain = CHUNK_SIZE;
+
+        InputOrder(Writer out, ForkJoinPool pool) {
+            this.out = out;
+            this.pool = pool;
+        }
+
+        void add(MlfStatementRecord record) {
+            waiting.add(record);
+        }
+
+        /** 排队的记录攒够一块时才查询未完成记录，避免每行都遍历 */
+        void drainIfFull(MlfLogRecordExtractor extractor) {
+            if (waiting.size() < nextDrain) return;
+            drain(extractor.oldestPending());
+            nextDrain = waiting.size() + CHUNK_SIZE;
+        }
+
+        /** 写出序号小于 before 的记录 */
+        void drain(long before) {
+            while (!waiting.isEmpty() && (waiting.peek().getSequence() < before || waiting.size() > MAX_WAITING)) {
+                chunk.add(waiting.poll());
+                if (chunk.size() == CHUNK_SIZE) writeChunk(chunk, out, pool);
+            }
+        }
+
+        void flush() {
+            writeChunk(chunk, out, pool);
+        }
+    }
+
+    private static Writer openOutput(Path output) throws IOException {
+        OutputStream stream = output == null
+                ? new FileOutputStream(FileDescriptor.out)
+                : Files.newOutputStream(output);
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+    }
+}
@@ -0,0 +1,191 @@
+package wang.imold.mlf;
+
+import java.util.*;
+
+/**
+ * 按 SQL 指纹聚合语句的执行次数、Total 返回行数与 Updates 影响行数。
+ * <p>
+ * 采用 Space-Saving 算法，内存中最多保留 capacity 个指纹：表满时新指纹顶替次数最少的条目，
+ * 并继承其次数作为误差上界（{@link Entry#getError()}）。出现次数超过 语句总数 / capacity 的指纹一定会被保留，
+ * 因此可以单遍流式处理包含上百万条语句的日志。行数统计从指纹进入表时开始累计。
+ * <p>
+ * 非线程安全。
+ */
+public class MlfFingerprintReport {
+
+    private final int capacity;
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+    private final Map<String, Entry> entries;
+    /** 按 count 排序的小顶堆，entry.heapIndex 为其在堆中的位置 */
+    private final Entry[] heap;
+    private int size;
+    private long statements;
+
+    public MlfFingerprintReport(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity 必须大于 0");
+        this.capacity = capacity;
+        this.entries = new HashMap<>(Math.min(capacity, 1 << 16) * 2);
+        this.heap = new Entry[capacity];
+    }
+
+    public void accept(MlfStatementRecord record) {
+        add(record.getSql(), record.getTotal(), record.getUpdates());
+    }
+
+    /**
+     * @param sql     Preparing 模板
+     * @param total   Total 行数，未出现时为 -1
+     * @param updates Updates 行数，未出现时为 -1
+     */
+    public void add(String sql, int total, int updates) {
+        statements++;
+        String key = fingerprint.of(sql);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (size < capacity) {
+                entry = new Entry();
+                entry.heapIndex = size;
+                heap[size++] = entry;
+            } else {
+                // 顶替次数最少的指纹
+                entry = heap[0];
+                entries.remove(entry.fingerprint);
+                entry.error = entry.count;
+                entry.rows = 0;
+                entry.updates = 0;
+                entry.executions = 0;
+            }
+            entry.fingerprint = key;
+            entry.hash = MlfSqlFingerprint.hash(key);
+            entry.sample = sql;
+            entries.put(key, entry);
+        }
+        entry.count++;
+        entry.executions++;
+        if (total > 0) entry.rows += total;
+        if (updates > 0) entry.updates += updates;
+        // 次数只增不减，条目只会在堆中下沉；新追加的条目位于堆尾，需要上浮
+        if (entry.count == 1) {
+            siftUp(entry.heapIndex);
+        } else {
+            siftDown(entry.heapIndex);
+        }
+    }
+
+    /** 已处理的语句总数 */
+    public long getStatements() {
+        return statements;
+    }
+
+    /** 当前保留的指纹数 */
+    public int size() {
+        return size;
+    }
+
+    /** 按次数从多到少取前 n 个指纹 */
+    public List<Entry> top(int n) {
+        List<Entry> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(heap[i]);
+        list.sort(Comparator.comparingLong(Entry::getCount).reversed()
+                .thenComparing(Comparator.comparingLong(Entry::getRows).reversed()));
+        return n < list.size() ? new ArrayList<>(list.subList(0, n)) : list;
+    }
+
+    /** 命令行输出的文本报表 */
+    public String toText(int n) {
+        List<Entry> top = top(n);
+        StringBuilder sb = new StringBuilder();
+        sb.append("-- 共 ").append(statements).append(" 条语句，")
+                .append(size).append(" 个指纹，按执行次数展示前 ").append(top.size()).append(" 个\n");
+        sb.append(String.format("%-4s %10s %8s %12s %12s  %-18s  %s%n",
+                "#", "次数", "误差", "返回行数", "影响行数", "指纹", "语句"));
+        for (int i = 0; i < top.size(); i++) {
+            Entry e = top.get(i);
+            sb.append(String.format("%-4d %10d %8d %12d %12d  %-18s  %s%n",
+                    i + 1, e.count, e.error, e.rows, e.updates, MlfSqlFingerprint.hex(e.hash), e.fingerprint));
+        }
+        return sb.toString();
+    }
+
+    private void siftUp(int i) {
+        Entry entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= entry.count) break;
+            heap[i] = heap[parent];
+            heap[i].heapIndex = i;
+            i = parent;
+        }
+        heap[i] = entry;
+        entry.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        Entry entry = heap[i];
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (heap[child].count >= entry.count) break;
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = entry;
+        entry.heapIndex = i;
+    }
+
+    /** 一个指纹的统计结果 */
+    public static final class Entry {
+
+        private String fingerprint;
+        private long hash;
+        private String sample;
+        private long count;
+        private long error;
+        private long executions;
+        private long rows;
+        private long updates;
+        private int heapIndex;
+
+        /** 归一化后的指纹文本 */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /** 指纹文本的 64 位哈希 */
+        public long getHash() {
+            return hash;
+        }
+
+        /** 最近一次进入统计时的原始模板 */
+        public String getSample() {
+            return sample;
+        }
+
+        /** 执行次数（可能多算，最多多算 {@link #getError()}） */
+        public long getCount() {
+            return count;
+        }
+
+        /** 次数的误差上界，0 表示精确 */
+        public long getError() {
+            return error;
+        }
+
+        /** Total 返回行数合计 */
+        public long getRows() {
+            return rows;
+        }
+
+        /** Updates 影响行数合计 */
+        public long getUpdates() {
+            return updates;
+        }
+
+        /** 每次执行平均返回 / 影响的行数 */
+        public double getAverageRows() {
+            return executions == 0 ? 0 : (double) (rows + updates) / executions;
+        }
+    }
+}
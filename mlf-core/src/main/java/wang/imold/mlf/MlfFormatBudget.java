@@ -0,0 +1,104 @@
+package wang.imold.mlf;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 格式化预算：限制单条语句的大小和整个任务的耗时，并支持外部取消。
+ * <p>
+ * 预算通过 {@link #call(Supplier)} 绑定到当前线程，词法分析与排版过程定期调用 {@link #checkpoint()}；
+ * 超出预算的语句退化为只填充参数、不排版的 SQL，取消则抛出 {@link CanceledException}。
+ */
+public final class MlfFormatBudget {
+
+    public static final MlfFormatBudget UNLIMITED = new MlfFormatBudget(Long.MAX_VALUE, Integer.MAX_VALUE, () -> false);
+
+    private static final ThreadLocal<MlfFormatBudget> CURRENT = new ThreadLocal<>();
+
+    private final long deadline;
+    private final int maxChars;
+    private final BooleanSupplier canceled;
+    private volatile boolean exceeded;
+
+    private MlfFormatBudget(long deadline, int maxChars, BooleanSupplier canceled) {
+        this.deadline = deadline;
+        this.maxChars = maxChars;
+        this.canceled = canceled;
+    }
+
+    /**
+     * @param timeoutMillis 从现在起允许的总耗时，&lt;= 0 表示不限
+     * @param maxChars      单条语句（模板 + 参数）允许格式化的最大字符数，&lt;= 0 表示不限
+     * @param canceled      取消标志，例如进度条的 isCanceled
+     */
+    public static MlfFormatBudget of(long timeoutMillis, int maxChars, BooleanSupplier canceled) {
+        long deadline = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1_000_000L : Long.MAX_VALUE;
+        return new MlfFormatBudget(deadline, maxChars > 0 ? maxChars : Integer.MAX_VALUE, canceled);
+    }
+
+    /** 当前线程绑定的预算，未绑定时为 {@link #UNLIMITED} */
+    public static MlfFormatBudget current() {
+        MlfFormatBudget budget = CURRENT.get();
+        return budget != null ? budget : UNLIMITED;
+    }
+
+    /** 在当前线程绑定本预算后执行 task */
+    public <T> T call(Supplier<T> task) {
+        MlfFormatBudget previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /** 检查取消与超时，超时后本预算内的所有语句都直接退化 */
+    public void checkpoint() {
+        if (this == UNLIMITED) return;
+        if (canceled.getAsBoolean()) throw new CanceledException();
+        if (exceeded || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)) {
+            exceeded = true;
+            throw new ExceededException();
+        }
+    }
+
+    /** 只检查取消，用于提取等不能退化的阶段 */
+    public void checkCanceled() {
+        if (canceled.getAsBoolean()) throw new CanceledException();
+    }
+
+    /** 该大小的语句是否允许排版，不允许时记为超出预算 */
+    public boolean allows(long chars) {
+        if (chars <= maxChars) return true;
+        exceeded = true;
+        return false;
+    }
+
+    /** 是否有语句因超出预算而未排版 */
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    /** 超出时间预算 */
+    public static final class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExceededException() {
+            super("超出格式化预算", null, false, false);
+        }
+    }
+
+    /** 任务被取消 */
+    public static final class CanceledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CanceledException() {
+            super("格式化已取消", null, false, false);
+        }
+    }
+}
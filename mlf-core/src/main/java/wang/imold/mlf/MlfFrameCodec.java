@@ -0,0 +1,220 @@
+package wang.imold.mlf;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 拦截器与 IDE 之间的二进制帧格式。
+ * <p>
+ * 连接建立后先发送 4 字节魔数 {@code MLF1}，之后每帧为 4 字节大端长度 + 帧体。帧体：
+ * <pre>
+ * flags(1 字节，bit0 = 清空字典) 基准时间(变长) 语句数(变长)
+ * 每条语句：SQL 模板 线程名 语句 id（字典引用） 时间差(zigzag) 耗时+1 行数+1 参数({@link MlfParamCodec})
+ * </pre>
+ * 字符串按连接维护字典：引用为 0 表示后面跟着新字符串并加入字典，k 表示字典中第 k-1 项，
+ * 同一模板在一个连接中只传输一次。字典满时编码方在下一帧开头清空并通知解码方。
+ */
+public final class MlfFrameCodec {
+
+    public static final byte[] MAGIC = {'M', 'L', 'F', '1'};
+
+    /** 解码方接受的最大帧长度，防止错误数据导致分配超大数组 */
+    public static final int MAX_FRAME_BYTES = 16 << 20;
+
+    /** 字典最大项数 */
+    private static final int DICTIONARY_LIMIT = 16384;
+
+    private static final int FLAG_RESET = 1;
+
+    private MlfFrameCodec() {
+    }
+
+    /** 编码方，非线程安全，每个连接一个实例 */
+    public static final class Encoder {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final MlfParamCodec params = new MlfParamCodec();
+        private byte[] buf = new byte[8192];
+        private int size;
+        private int count;
+        private int countPos;
+        private long lastTime;
+
+        /** 开始新的一帧 */
+        public void begin(long baseTime) {
+            size = 4;
+            int flags = 0;
+            if (dictionary.size() >= DICTIONARY_LIMIT) {
+                dictionary.clear();
+                flags |= FLAG_RESET;
+            }
+            ensure(1 + 10 + 5);
+            buf[size++] = (byte) flags;
+            size = MlfParamCodec.writeVarLong(buf, size, baseTime);
+            // 语句数固定占 5 字节（变长编码的冗余形式），结束时回填
+            countPos = size;
+            size += 5;
+            count = 0;
+            lastTime = baseTime;
+        }
+
+        /**
+         * 追加一条语句
+         *
+         * @param elapsedMicros 耗时（微秒），未知时传 -1
+         * @param rows          行数，未知时传 -1
+         */
+        public void add(String sql, String thread, String statementId, long time, long elapsedMicros, int rows,
+                        MlfParamBuffer values) {
+            writeString(sql);
+            writeString(thread);
+            writeString(statementId);
+            long delta = time - lastTime;
+            lastTime = time;
+            writeVarLong((delta << 1) ^ (delta >> 63));
+            writeVarLong(elapsedMicros + 1);
+            writeVarLong(rows + 1L);
+            int len = params.encode(values);
+            ensure(len);
+            System.arraycopy(params.buffer(), 0, buf, size, len);
+            size += len;
+            count++;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /** 当前帧的字节数（含长度前缀） */
+        public int size() {
+            return size;
+        }
+
+        /** 回填长度与语句数并写出整帧 */
+        public void writeTo(OutputStream out) throws IOException {
+            int body = size - 4;
+            buf[0] = (byte) (body >>> 24);
+            buf[1] = (byte) (body >>> 16);
+            buf[2] = (byte) (body >>> 8);
+            buf[3] = (byte) body;
+            int p = countPos;
+            for (int i = 0; i < 4; i++) buf[p++] = (byte) (((count >>> (7 * i)) & 0x7F) | 0x80);
+            buf[p] = (byte) (count >>> 28);
+            out.write(buf, 0, size);
+        }
+
+        /** 连接断开重连后调用，对端的字典已经丢失 */
+        public void reset() {
+            dictionary.clear();
+        }
+
+        private void writeString(String s) {
+            Integer id = dictionary.get(s);
+            if (id != null) {
+                writeVarLong(id + 1L);
+                return;
+            }
+            if (dictionary.size() < DICTIONARY_LIMIT) dictionary.put(s, dictionary.size());
+            // 字典满时仍按新字符串发送，但不占用编号，解码方同样不会加入
+            writeVarLong(0);
+            writeVarLong(s.length());
+            for (int i = 0; i < s.length(); i++) writeVarLong(s.charAt(i));
+        }
+
+        private void writeVarLong(long v) {
+            ensure(10);
+            size = MlfParamCodec.writeVarLong(buf, size, v);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + extra));
+        }
+    }
+
+    /** 解码方，非线程安全，每个连接一个实例 */
+    public static final class Decoder {
+
+        private final List<String> dictionary = new ArrayList<>();
+        private final StringBuilder scratch = new StringBuilder();
+        private final MlfParamBuffer values = new MlfParamBuffer();
+        private byte[] frame = new byte[8192];
+
+        /** 读取并校验连接开头的魔数 */
+        public void readHeader(DataInputStream in) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("不是 MyBatis 捕获数据流");
+        }
+
+        /** 读取一帧，连接正常关闭时返回 null */
+        public List<MlfCapturedStatement> read(DataInputStream in) throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length < 0 || length > MAX_FRAME_BYTES) throw new IOException("帧长度异常：" + length);
+            if (frame.length < length) frame = new byte[Math.max(length, frame.length << 1)];
+            in.readFully(frame, 0, length);
+            return decode(frame, length);
+        }
+
+        private List<MlfCapturedStatement> decode(byte[] src, int length) throws IOException {
+            try {
+                int[] pos = {0};
+                int flags = src[pos[0]++];
+                if ((flags & FLAG_RESET) != 0) dictionary.clear();
+                long time = MlfParamCodec.readVarLong(src, pos);
+                // 每条语句至少占一个字节，先按剩余字节数校验来自连接的计数再分配
+                int n = checkedLength(MlfParamCodec.readVarLong(src, pos), length - pos[0], "语句数");
+                List<MlfCapturedStatement> result = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    String sql = readString(src, pos, length);
+                    String thread = readString(src, pos, length);
+                    String statementId = readString(src, pos, length);
+                    long z = MlfParamCodec.readVarLong(src, pos);
+                    time += (z >>> 1) ^ -(z & 1);
+                    long elapsed = MlfParamCodec.readVarLong(src, pos) - 1;
+                    int rows = (int) (MlfParamCodec.readVarLong(src, pos) - 1);
+                    int start = pos[0];
+                    pos[0] = MlfParamCodec.decode(src, start, values, scratch);
+                    result.add(new MlfCapturedStatement(sql, thread, statementId, time, elapsed, rows,
+                            Arrays.copyOfRange(src, start, pos[0])));
+                }
+                if (pos[0] != length) throw new IOException("帧长度与内容不符");
+                return result;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("帧内容不完整", e);
+            }
+        }
+
+        private String readString(byte[] src, int[] pos, int length) throws IOException {
+            long ref = MlfParamCodec.readVarLong(src, pos);
+            if (ref > 0) {
+                if (ref > dictionary.size()) throw new IOException("字典引用越界：" + ref);
+                return dictionary.get((int) ref - 1);
+            }
+            if (ref < 0) throw new IOException("字典引用越界：" + ref);
+            // 每个字符至少占一个字节
+            int len = checkedLength(MlfParamCodec.readVarLong(src, pos), length - pos[0], "字符串长度");
+            scratch.setLength(0);
+            for (int i = 0; i < len; i++) scratch.append((char) MlfParamCodec.readVarLong(src, pos));
+            String s = scratch.toString();
+            if (dictionary.size() < DICTIONARY_LIMIT) dictionary.add(s);
+            return s;
+        }
+
+        private static int checkedLength(long value, int remaining, String what) throws IOException {
+            if (value < 0 || value > remaining) throw new IOException(what + "超出帧的剩余长度：" + value);
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package wang.imold.mlf;
+
+import java.util.*;
+
+/**
+ * 按 SQL 指纹统计语句耗时：Preparing 与同一线程上配对的 Total / Updates 之间的时间差计入该指纹的
+ * {@link MlfLatencyHistogram}，报告 p50 / p95 / p99 / max 并按 p99 排序。
+ * <p>
+ * 最多为 capacity 个指纹单独建直方图，之后出现的新指纹合并到「其他语句」，内存固定。非线程安全。
+ */
+public class MlfLatencyAnalyzer {
+
+    private static final String OTHERS = "（其他语句）";
+
+    private final int capacity;
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+    private final Map<String, Stat> stats = new HashMap<>();
+    private final Stat others = new Stat(OTHERS, null);
+    private final MlfLatencyHistogram overall = new MlfLatencyHistogram();
+    private long statements;
+    private long unmatched;
+
+    public MlfLatencyAnalyzer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity 必须大于 0");
+        this.capacity = capacity;
+    }
+
+    public void accept(MlfStatementRecord record) {
+        statements++;
+        long latency = record.getLatencyMicros();
+        if (latency < 0) {
+            unmatched++;
+            return;
+        }
+        String key = fingerprint.of(record.getSql());
+        Stat stat = stats.get(key);
+        if (stat == null) {
+            if (stats.size() < capacity) {
+                stat = new Stat(key, record.getSql());
+                stats.put(key, stat);
+            } else {
+                stat = others;
+            }
+        }
+        stat.histogram.record(latency);
+        overall.record(latency);
+    }
+
+    /** 已处理的语句总数 */
+    public long getStatements() {
+        return statements;
+    }
+
+    /** 没有时间戳或没有配对到 Total / Updates、无法计算耗时的语句数 */
+    public long getUnmatched() {
+        return unmatched;
+    }
+
+    /** 全部语句的耗时分布 */
+    public MlfLatencyHistogram getOverall() {
+        return overall;
+    }
+
+    /** 按 p99 从慢到快取前 n 个指纹，「其他语句」有记录时排在最后 */
+    public List<Stat> top(int n) {
+        List<Stat> list = new ArrayList<>(stats.values());
+        list.sort(Comparator.comparingLong((Stat s) -> s.histogram.percentile(99)).reversed()
+                .thenComparing(Comparator.comparingLong((Stat s) -> s.histogram.getSum()).reversed()));
+        if (n < list.size()) list = new ArrayList<>(list.subList(0, n));
+        if (others.histogram.getCount() > 0) list.add(others);
+        return list;
+    }
+
+    /** 命令行输出的文本报表，耗时单位为毫秒 */
+    public String toText(int n) {
+        List<Stat> top = top(n);
+        StringBuilder sb = new StringBuilder();
+        sb.append("-- 共 ").append(statements).append(" 条语句，").append(overall.getCount())
+                .append(" 条可计算耗时，").append(stats.size()).append(" 个指纹，按 p99 展示前 ")
+                .append(Math.min(n, stats.size())).append(" 个（单位 ms）\n");
+        sb.append(String.format("%-4s %10s %12s %10s %10s %10s %10s  %s%n",
+                "#", "次数", "合计", "p50", "p95", "p99", "max", "语句"));
+        appendRow(sb, "*", overall, "（全部语句）");
+        for (int i = 0; i < top.size(); i++) {
+            Stat stat = top.get(i);
+            appendRow(sb, stat == others ? "-" : String.valueOf(i + 1), stat.histogram, stat.fingerprint);
+        }
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String rank, MlfLatencyHistogram h, String sql) {
+        sb.append(String.format("%-4s %10d %12s %10s %10s %10s %10s  %s%n", rank, h.getCount(),
+                MlfLatencyHistogram.formatMillis(h.getSum()),
+                MlfLatencyHistogram.formatMillis(h.percentile(50)),
+                MlfLatencyHistogram.formatMillis(h.percentile(95)),
+                MlfLatencyHistogram.formatMillis(h.percentile(99)),
+                MlfLatencyHistogram.formatMillis(h.getMax()), sql));
+    }
+
+    /** 一个指纹的耗时统计 */
+    public static final class Stat {
+
+        private final String fingerprint;
+        private final String sample;
+        private final MlfLatencyHistogram histogram = new MlfLatencyHistogram();
+
+        private Stat(String fingerprint, String sample) {
+            this.fingerprint = fingerprint;
+            this.sample = sample;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /** 第一次出现时的原始模板，「其他语句」为 null */
+        public String getSample() {
+            return sample;
+        }
+
+        public MlfLatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package wang.imold.mlf;
+
+/**
+ * 固定内存的对数分桶耗时直方图（单位微秒）。
+ * <p>
+ * 每个 2 的幂区间再均分为 16 个子桶，相对误差不超过 1/16；覆盖 0 到 2^40 微秒（约 12 天），
+ * 更大的值计入最后一个桶。整个直方图只有一个 int 数组，与记录的次数无关。非线程安全。
+ */
+public final class MlfLatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final int[] counts = new int[BUCKETS];
+    private long count;
+    private long sum;
+    private long max = -1;
+
+    public void record(long micros) {
+        if (micros < 0) return;
+        counts[index(micros)]++;
+        count++;
+        sum += micros;
+        if (micros > max) max = micros;
+    }
+
+    public void merge(MlfLatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) counts[i] += other.counts[i];
+        count += other.count;
+        sum += other.sum;
+        if (other.max > max) max = other.max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** 耗时合计（微秒） */
+    public long getSum() {
+        return sum;
+    }
+
+    /** 最大耗时（微秒），没有记录时为 -1 */
+    public long getMax() {
+        return max;
+    }
+
+    /** 平均耗时（微秒） */
+    public long getMean() {
+        return count == 0 ? -1 : sum / count;
+    }
+
+    /**
+     * 百分位耗时（微秒），取所在桶的上界且不超过最大值；没有记录时为 -1
+     *
+     * @param percentile 0 - 100，例如 99
+     */
+    public long percentile(double percentile) {
+        if (count == 0) return -1;
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100.0);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /** 微秒格式化为保留三位小数的毫秒，负数（无记录）为 "-" */
+    public static String formatMillis(long micros) {
+        if (micros < 0) return "-";
+        long frac = micros % 1000;
+        return micros / 1000 + "." + (frac < 10 ? "00" : frac < 100 ? "0" : "") + frac;
+    }
+
+    private static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + (int) ((v >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int shift = exponent - SUB_BITS;
+        long low = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
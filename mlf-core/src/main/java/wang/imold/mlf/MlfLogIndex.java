@@ -0,0 +1,402 @@
+package wang.imold.mlf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 日志文件的持久化语句索引，保存在日志旁的 {@code app.log.mlfidx} 中，再次打开同一日志时不必重新扫描。
+ * <p>
+ * 文件由 64 字节文件头、定长条目（每条 {@value #ENTRY_BYTES} 字节）和尾部组成：
+ * 条目记录 Preparing / Parameters 行的字节偏移、语句指纹、线程与 Mapper 日志名编号、起止时间戳和行数；
+ * 尾部是名称表以及上次扫描结束时尚未配对完成的条目编号。
+ * <p>
+ * 日志增长后 {@link #update()} 只扫描已索引长度之后的完整行，新条目覆盖旧尾部后重写尾部与文件头；
+ * 未配对完成的语句会被恢复，之后出现的 Parameters / Total 行配对完成时原地改写其条目。
+ * 日志被截断或轮转（开头内容变化）、索引文件损坏时整体重建。
+ * <p>
+ * 查询时映射条目区逐条比较指纹与线程编号，只按偏移读取命中语句所在的行来解析。非线程安全。
+ */
+public final class MlfLogIndex implements Closeable {
+
+    public static final String SUFFIX = ".mlfidx";
+
+    static final int ENTRY_BYTES = 56;
+
+    /** "MLFIDX01" */
+    private static final long MAGIC = 0x4d4c464944583031L;
+    private static final int HEADER_BYTES = 64;
+    /** 用于识别日志轮转的开头字节数 */
+    private static final int HEAD_BYTES = 4096;
+    /** 追加条目时每次写入的条数 */
+    private static final int WRITE_BATCH = 1024;
+    /** 查询时每次映射的条目数 */
+    private static final int MAP_ENTRIES = 1 << 20;
+
+    private static final int FLAG_INCOMPLETE = 1;
+    private static final int FLAG_UPDATES = 2;
+
+    // 条目内各字段的位置
+    private static final int PREPARING = 0;
+    private static final int PARAMETERS = 8;
+    private static final int FINGERPRINT = 16;
+    private static final int START_TIME = 24;
+    private static final int END_TIME = 32;
+    private static final int THREAD = 40;
+    private static final int LOGGER = 44;
+    private static final int ROWS = 48;
+    private static final int BATCH_INDEX = 52;
+    private static final int FLAGS = 54;
+
+    private final MlfMappedLineReader reader;
+    private final FileChannel channel;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+    private final MlfLogLine logLine = new MlfLogLine();
+    private final ByteBuffer pendingWrites = ByteBuffer.allocate(WRITE_BATCH * ENTRY_BYTES);
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+    /** 本次更新中从上次恢复的记录及其条目编号 */
+    private final Map<MlfStatementRecord, Long> resumed = new IdentityHashMap<>();
+    private long[] incomplete = new long[0];
+    private long indexedLength;
+    private long storedHeadHash;
+    private long count;
+    /** 已写入文件的条目数，其余在 pendingWrites 中 */
+    private long written;
+
+    MlfLogIndex(MlfMappedLineReader reader, Path file) throws IOException {
+        this.reader = reader;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (!load()) reset();
+    }
+
+    /**
+     * 打开 log 旁的索引文件（不存在时创建），需要时调用 {@link #update()} 索引新增内容
+     */
+    public static MlfLogIndex open(Path log) throws IOException {
+        MlfMappedLineReader reader = new MlfMappedLineReader(log);
+        try {
+            return new MlfLogIndex(reader, fileFor(log));
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /** log 对应的索引文件路径 */
+    public static Path fileFor(Path log) {
+        return log.resolveSibling(log.getFileName() + SUFFIX);
+    }
+
+    /** 条目数 */
+    public long size() {
+        return count;
+    }
+
+    /** 已索引的日志字节数 */
+    public long indexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * 索引日志中新增的完整行，返回新增的条目数
+     */
+    public long update() throws IOException {
+        if (reader.size() < indexedLength || headHash(indexedLength) != storedHeadHash) reset();
+        long end = reader.completeLength();
+        if (end <= indexedLength) return 0;
+        long before = count;
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(this::add);
+        for (long index : incomplete) {
+            MlfStatementRecord record = read(index, index);
+            if (record == null) continue;
+            resumed.put(record, index);
+            extractor.resume(record);
+        }
+        try {
+            reader.scan(indexedLength, end, (line, offset) -> extractor.accept(line, 0, line.length(), offset));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<MlfStatementRecord> rest = extractor.pending();
+        long[] next = new long[rest.size()];
+        for (int i = 0; i < next.length; i++) {
+            MlfStatementRecord record = rest.get(i);
+            Long index = resumed.remove(record);
+            next[i] = index != null ? index : count;
+            write(record, true, index);
+        }
+        resumed.clear();
+        flush();
+        incomplete = next;
+        indexedLength = end;
+        storedHeadHash = headHash(end);
+        writeTrailer();
+        return count - before;
+    }
+
+    /**
+     * 按指纹与线程查找，返回按 Preparing 偏移排序的条目编号
+     *
+     * @param hash   {@link MlfSqlFingerprint#hash} 的结果，为 0 时不限
+     * @param thread 线程名，为 null 时不限
+     */
+    public long[] find(long hash, String thread) throws IOException {
+        int threadId = -1;
+        if (thread != null) {
+            Integer id = nameIds.get(thread);
+            if (id == null) return new long[0];
+            threadId = id;
+        }
+        long[] found = new long[64];
+        long[] keys = new long[64];
+        boolean sorted = true;
+        int n = 0;
+        for (long first = 0; first < count; first += MAP_ENTRIES) {
+            long entries = Math.min(MAP_ENTRIES, count - first);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * ENTRY_BYTES, entries * ENTRY_BYTES);
+            for (int i = 0; i < entries; i++) {
+                int base = i * ENTRY_BYTES;
+                if (hash != 0 && buf.getLong(base + FINGERPRINT) != hash) continue;
+                if (threadId >= 0 && buf.getInt(base + THREAD) != threadId) continue;
+                if (n == found.length) {
+                    found = Arrays.copyOf(found, n << 1);
+                    keys = Arrays.copyOf(keys, n << 1);
+                }
+                // Preparing 偏移在前、批量序号在后，组成排序键
+                long key = buf.getLong(base + PREPARING) << 16 | buf.getChar(base + BATCH_INDEX);
+                if (n > 0 && keys[n - 1] > key) sorted = false;
+                found[n] = first + i;
+                keys[n++] = key;
+            }
+        }
+        found = Arrays.copyOf(found, n);
+        return sorted ? found : sortByKey(found, keys);
+    }
+
+    /**
+     * 按偏移读取日志中的语句行并交给 sink，sink 收到的记录序号为其在 indexes 中的位置
+     */
+    public void read(long[] indexes, Consumer<MlfStatementRecord> sink) throws IOException {
+        for (int i = 0; i < indexes.length; i++) {
+            MlfStatementRecord record = read(indexes[i], i);
+            if (record != null) sink.accept(record);
+        }
+    }
+
+    private MlfStatementRecord read(long index, long sequence) throws IOException {
+        ByteBuffer e = readEntry(index);
+        long preparing = e.getLong(PREPARING);
+        if (!parse(preparing, MlfLogLine.PREPARING)) return null;
+        MlfStatementRecord record = new MlfStatementRecord(sequence, preparing, -1,
+                names.get(e.getInt(THREAD)), names.get(e.getInt(LOGGER)),
+                MlfLogRecordExtractor.trimSql(logLine.payload()));
+        long parameters = e.getLong(PARAMETERS);
+        if (parameters >= 0 && parse(parameters, MlfLogLine.PARAMETERS)) {
+            record.setParameters(logLine.payload(), parameters);
+        }
+        record.setStartTime(e.getLong(START_TIME));
+        record.setEndTime(e.getLong(END_TIME));
+        record.setBatchIndex(e.getChar(BATCH_INDEX));
+        int rows = e.getInt(ROWS);
+        if (rows >= 0) {
+            if ((e.getChar(FLAGS) & FLAG_UPDATES) != 0) {
+                record.setUpdates(rows);
+            } else {
+                record.setTotal(rows);
+            }
+        }
+        return record;
+    }
+
+    private boolean parse(long offset, int kind) throws IOException {
+        CharBuffer line = reader.readLine(offset);
+        return logLine.parse(line, 0, line.length()) && logLine.kind == kind;
+    }
+
+    private ByteBuffer readEntry(long index) throws IOException {
+        entry.clear();
+        long pos = HEADER_BYTES + index * ENTRY_BYTES;
+        while (entry.hasRemaining() && channel.read(entry, pos + entry.position()) > 0) {
+            // 读满一个条目
+        }
+        if (entry.hasRemaining()) throw new IOException("索引文件不完整：" + index);
+        return entry;
+    }
+
+    /** 配对完成的记录：从上次恢复的原地改写，其余追加 */
+    private void add(MlfStatementRecord record) {
+        try {
+            write(record, false, resumed.remove(record));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(MlfStatementRecord record, boolean incomplete, Long index) throws IOException {
+        ByteBuffer buf = index != null ? entry : pendingWrites;
+        if (index != null) buf.clear();
+        int base = buf.position();
+        int rows = record.getUpdates() >= 0 ? record.getUpdates() : record.getTotal();
+        int flags = (incomplete ? FLAG_INCOMPLETE : 0) | (record.getUpdates() >= 0 ? FLAG_UPDATES : 0);
+        buf.putLong(record.getOffset())
+                .putLong(record.getParametersOffset())
+                .putLong(MlfSqlFingerprint.hash(fingerprint.of(record.getSql())))
+                .putLong(record.getStartTime())
+                .putLong(record.getEndTime())
+                .putInt(nameId(record.getThread()))
+                .putInt(nameId(record.getLogger()))
+                .putInt(rows)
+                .putChar((char) Math.min(record.getBatchIndex(), Character.MAX_VALUE))
+                .putChar((char) flags);
+        if (index != null) {
+            buf.flip();
+            long pos = HEADER_BYTES + index * ENTRY_BYTES;
+            while (buf.hasRemaining()) channel.write(buf, pos + buf.position());
+            return;
+        }
+        count++;
+        if (!pendingWrites.hasRemaining()) flush();
+    }
+
+    private void flush() throws IOException {
+        pendingWrites.flip();
+        long pos = HEADER_BYTES + written * ENTRY_BYTES;
+        while (pendingWrites.hasRemaining()) channel.write(pendingWrites, pos + pendingWrites.position());
+        pendingWrites.clear();
+        written = count;
+    }
+
+    private int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /** 写入尾部，再写文件头；中途中断时文件头与尾部对不上，下次打开会重建 */
+    private void writeTrailer() throws IOException {
+        long trailer = HEADER_BYTES + count * ENTRY_BYTES;
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        int bytes = 4 + 4 + incomplete.length * 8;
+        for (String name : names) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            encoded.add(b);
+            bytes += 4 + b.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(bytes);
+        buf.putInt(encoded.size());
+        for (byte[] b : encoded) buf.putInt(b.length).put(b);
+        buf.putInt(incomplete.length);
+        for (long index : incomplete) buf.putLong(index);
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf, trailer + buf.position());
+        channel.truncate(trailer + bytes);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC).putInt(ENTRY_BYTES).putInt(bytes)
+                .putLong(indexedLength).putLong(storedHeadHash).putLong(count);
+        header.clear();
+        while (header.hasRemaining()) channel.write(header, header.position());
+        channel.force(false);
+    }
+
+    private boolean load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_BYTES) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // 读满文件头
+        }
+        header.flip();
+        if (header.getLong() != MAGIC || header.getInt() != ENTRY_BYTES) return false;
+        int trailerBytes = header.getInt();
+        long length = header.getLong();
+        long hash = header.getLong();
+        long entries = header.getLong();
+        long trailer = HEADER_BYTES + entries * ENTRY_BYTES;
+        if (entries < 0 || trailerBytes < 8 || trailer + trailerBytes != fileSize) return false;
+        if (length > reader.size() || hash != headHash(length)) return false;
+
+        ByteBuffer buf = ByteBuffer.allocate(trailerBytes);
+        while (buf.hasRemaining() && channel.read(buf, trailer + buf.position()) > 0) {
+            // 读满尾部
+        }
+        buf.flip();
+        try {
+            for (int i = 0, n = buf.getInt(); i < n; i++) {
+                byte[] b = new byte[buf.getInt()];
+                buf.get(b);
+                nameId(new String(b, StandardCharsets.UTF_8));
+            }
+            long[] rest = new long[buf.getInt()];
+            for (int i = 0; i < rest.length; i++) rest[i] = buf.getLong();
+            incomplete = rest;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            names.clear();
+            nameIds.clear();
+            return false;
+        }
+        indexedLength = length;
+        storedHeadHash = hash;
+        count = written = entries;
+        return true;
+    }
+
+    private void reset() throws IOException {
+        names.clear();
+        nameIds.clear();
+        incomplete = new long[0];
+        indexedLength = count = written = 0;
+        storedHeadHash = headHash(0);
+        channel.truncate(0);
+        writeTrailer();
+    }
+
+    /** 日志开头（最多 {@link #HEAD_BYTES} 字节）的哈希，用于识别日志被截断或轮转 */
+    private long headHash(long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(HEAD_BYTES, length));
+        reader.read(buf, 0);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < buf.position(); i++) {
+            h = (h ^ (buf.get(i) & 0xFF)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** 条目按配对完成的顺序写入，多线程交错时需按 Preparing 偏移重新排序 */
+    private static long[] sortByKey(long[] indexes, long[] keys) {
+        Integer[] order = new Integer[indexes.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        long[] sorted = new long[indexes.length];
+        for (int i = 0; i < order.length; i++) sorted[i] = indexes[order[i]];
+        return sorted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            reader.close();
+        }
+    }
+}
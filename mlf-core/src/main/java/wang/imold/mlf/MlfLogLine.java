@@ -0,0 +1,205 @@
+package wang.imold.mlf;
+
+/**
+ * 单行 MyBatis 日志识别：判断行类型（Preparing / Parameters / Total / Updates），
+ * 并定位线程名、Mapper 日志名与正文的区间。实例可复用，非线程安全。
+ * <p>
+ * 兼容常见的 Logback / Log4j 输出，例如：
+ * <pre>
+ * 2025-11-27 15:51:44.123 DEBUG 1 --- [nio-8080-exec-1] c.e.m.UserMapper.selectById : ==>  Preparing: SELECT ...
+ * [http-nio-8080-exec-2] DEBUG c.e.m.UserMapper.selectById - ==> Parameters: 1(Long)
+ * </pre>
+ * 宿主（如 IDE 插件的控制台过滤器）通过公开方法逐行识别；其余成员供 mlf-core 内部使用。
+ */
+public final class MlfLogLine {
+
+    public static final int NONE = 0;
+    public static final int PREPARING = 1;
+    public static final int PARAMETERS = 2;
+    public static final int TOTAL = 3;
+    public static final int UPDATES = 4;
+
+    private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+
+    private CharSequence text;
+    int kind;
+    /** 行首位置 */
+    int lineStart;
+    /** 日志标记（==> / <== / Preparing:）之前的前缀结束位置 */
+    int markStart;
+    /** "Preparing:" 等冒号之后正文的起始位置 */
+    int payloadStart;
+    int payloadEnd;
+    int threadStart = -1;
+    int threadEnd = -1;
+    int loggerStart = -1;
+    int loggerEnd = -1;
+
+    /**
+     * 解析 text 中 [start, end) 这一行，返回是否为 MyBatis 日志行
+     */
+    public boolean parse(CharSequence text, int start, int end) {
+        this.text = text;
+        this.kind = NONE;
+        this.lineStart = start;
+        this.payloadEnd = end;
+        this.threadStart = this.threadEnd = -1;
+        this.loggerStart = this.loggerEnd = -1;
+
+        int arrow = indexOf(text, "==>", start, end);
+        if (arrow != -1) {
+            int p = skipSpaces(text, arrow + 3, end);
+            if (startsWith(text, p, end, "Preparing:")) {
+                setKind(PREPARING, arrow, p + 10);
+            } else if (startsWith(text, p, end, "Parameters:")) {
+                setKind(PARAMETERS, arrow, p + 11);
+            }
+        } else if ((arrow = indexOf(text, "<==", start, end)) != -1) {
+            int p = skipSpaces(text, arrow + 3, end);
+            if (startsWith(text, p, end, "Total:")) {
+                setKind(TOTAL, arrow, p + 6);
+            } else if (startsWith(text, p, end, "Updates:")) {
+                setKind(UPDATES, arrow, p + 8);
+            }
+        } else {
+            // 没有箭头的精简日志格式
+            int p = indexOf(text, "Preparing:", start, end);
+            if (p != -1) {
+                setKind(PREPARING, p, p + 10);
+            } else if ((p = indexOf(text, "Parameters:", start, end)) != -1) {
+                setKind(PARAMETERS, p, p + 11);
+            }
+        }
+        if (kind == NONE) return false;
+        locateThreadAndLogger(start, markStart);
+        return true;
+    }
+
+    /** 行类型，见 {@link #PREPARING} 等常量，不是 MyBatis 日志行时为 {@link #NONE} */
+    public int kind() {
+        return kind;
+    }
+
+    /** 日志标记（==> / <== / Preparing:）在 text 中的位置 */
+    public int markStart() {
+        return markStart;
+    }
+
+    public String thread() {
+        return threadStart == -1 ? "" : text.subSequence(threadStart, threadEnd).toString();
+    }
+
+    public String logger() {
+        return loggerStart == -1 ? "" : text.subSequence(loggerStart, loggerEnd).toString();
+    }
+
+    /** 正文，去掉首尾空白 */
+    public String payload() {
+        int s = payloadStart, e = payloadEnd;
+        while (s < e && Character.isWhitespace(text.charAt(s))) s++;
+        while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+        return text.subSequence(s, e).toString();
+    }
+
+    /** 行首时间戳（微秒），见 {@link MlfTimestampParser}，没有时返回 -1 */
+    long timestamp() {
+        return MlfTimestampParser.parse(text, lineStart, markStart);
+    }
+
+    /** Total / Updates 行的行数，无法解析时返回 -1 */
+    int count() {
+        int p = skipSpaces(text, payloadStart, payloadEnd);
+        int value = 0;
+        boolean digits = false;
+        while (p < payloadEnd && text.charAt(p) >= '0' && text.charAt(p) <= '9') {
+            value = value * 10 + (text.charAt(p++) - '0');
+            digits = true;
+        }
+        return digits ? value : -1;
+    }
+
+    /** 配对用的键：线程名 + Mapper 日志名 */
+    public String pairKey() {
+        return pairKey(thread(), logger());
+    }
+
+    static String pairKey(String thread, String logger) {
+        return thread + '\u0000' + logger;
+    }
+
+    private void setKind(int kind, int markStart, int payloadStart) {
+        this.kind = kind;
+        this.markStart = markStart;
+        this.payloadStart = payloadStart;
+    }
+
+    private void locateThreadAndLogger(int start, int prefixEnd) {
+        // 线程名：前缀中第一个不是日志级别的 [...]
+        int p = start;
+        while (p < prefixEnd) {
+            int open = indexOf(text, '[', p, prefixEnd);
+            if (open == -1) break;
+            int close = indexOf(text, ']', open + 1, prefixEnd);
+            if (close == -1) break;
+            if (!isLevel(open + 1, close)) {
+                threadStart = open + 1;
+                threadEnd = close;
+                break;
+            }
+            p = close + 1;
+        }
+
+        // Mapper 日志名：标记之前最后一个单词（跳过 " : " / " - " 分隔符）
+        int e = prefixEnd;
+        while (e > start && isSeparator(text.charAt(e - 1))) e--;
+        int s = e;
+        while (s > start && !Character.isWhitespace(text.charAt(s - 1))) s--;
+        if (s < e && s >= threadEnd) {
+            loggerStart = s;
+            loggerEnd = e;
+        }
+    }
+
+    private boolean isLevel(int start, int end) {
+        int s = skipSpaces(text, start, end);
+        int e = end;
+        while (e > s && text.charAt(e - 1) == ' ') e--;
+        for (String level : LEVELS) {
+            if (e - s == level.length() && startsWith(text, s, e, level)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == ':' || c == '-';
+    }
+
+    static int skipSpaces(CharSequence text, int p, int end) {
+        while (p < end && (text.charAt(p) == ' ' || text.charAt(p) == '\t')) p++;
+        return p;
+    }
+
+    static boolean startsWith(CharSequence text, int p, int end, String word) {
+        if (end - p < word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(p + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static int indexOf(CharSequence text, String word, int from, int end) {
+        char first = word.charAt(0);
+        int last = end - word.length();
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) == first && startsWith(text, i, end, word)) return i;
+        }
+        return -1;
+    }
+
+    static int indexOf(CharSequence text, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,284 @@
+package wang.imold.mlf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MyBatis 日志解析与 SQL 格式化入口。
+ * <p>
+ * 解析过程中的词法分析器、参数缓冲区等临时对象按线程复用，实例本身无状态，可被多个线程同时使用。
+ */
+public class MlfLogParser {
+
+    private static final Pattern PREPARING_PATTERN = Pattern.compile("(?i)Preparing:\\s*(.+?)(?=\\n|Parameters:|$)", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final String PARAMETERS_MARK = "parameters:";
+
+    /** 超过该容量的临时缓冲区用完即释放，避免单条超大语句长期占用线程内存 */
+    private static final int SCRATCH_RETAIN_LIMIT = 1 << 20;
+
+    /** 模板缓存容量（字符数） */
+    private static final long TEMPLATE_CACHE_WEIGHT = 8L << 20;
+
+    private static final MlfSqlTemplateCache TEMPLATE_CACHE = new MlfSqlTemplateCache(TEMPLATE_CACHE_WEIGHT);
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** 每个线程独享的临时对象 */
+    private static final class Scratch {
+        final MlfSqlLexer lexer = new MlfSqlLexer();
+        MlfParamBuffer params = new MlfParamBuffer();
+
+        void release() {
+            lexer.reset("");
+            if (params.charCount() > SCRATCH_RETAIN_LIMIT) params = new MlfParamBuffer();
+        }
+    }
+
+    /**
+     * 格式化一段包含 Preparing / Parameters 的日志，没有 Preparing 时返回 null；
+     * 超出预算的语句退化为未排版的可执行 SQL，其他异常（取消或实现缺陷）原样抛给调用方
+     */
+    public String formatMybatisLog(String log) {
+        long start = MlfStageStats.begin(MlfStageStats.EXTRACT);
+        String sql = extractPureSqlFromLog(log);
+        MlfStageStats.record(MlfStageStats.EXTRACT, start, log.length(), 0, 0);
+        if (sql == null || sql.isEmpty()) return null;
+
+        Scratch scratch = SCRATCH.get();
+        start = MlfStageStats.begin(MlfStageStats.PARAMETERS);
+        extractParameters(log, scratch.params);
+        MlfStageStats.record(MlfStageStats.PARAMETERS, start, log.length(), scratch.params.count(), 0);
+        return formatExecutable(sql, scratch.params, scratch);
+    }
+
+    /**
+     * 用 "Parameters:" 之后的原文填充 SQL 模板并格式化，parameters 为 null 时只格式化模板
+     */
+    public String formatStatement(String sql, String parameters) {
+        Scratch scratch = SCRATCH.get();
+        scanParameters(parameters, 0, scratch.params);
+        return formatExecutable(sql, scratch.params, scratch);
+    }
+
+    /**
+     * 用已解析好的参数填充 SQL 模板并格式化，例如从历史记录中解码出的参数
+     */
+    public String formatStatement(String sql, MlfParamBuffer params) {
+        return formatExecutable(sql, params, SCRATCH.get());
+    }
+
+    /**
+     * 用 "Parameters:" 之后的原文填充 SQL 模板，不做排版，得到单行可执行 SQL
+     */
+    public String inlineStatement(String sql, String parameters) {
+        Scratch scratch = SCRATCH.get();
+        scanParameters(parameters, 0, scratch.params);
+        try {
+            long start = MlfStageStats.begin(MlfStageStats.SPLICE);
+            String result = inlineParameters(sql, scratch.params, scratch.lexer);
+            MlfStageStats.record(MlfStageStats.SPLICE, start, sql.length(), scratch.params.count(), 0);
+            return result;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * 用 parameters[from, ...) 中 "Parameters:" 之后的原文填充 SQL 模板，直接追加到 out，不产生中间字符串；
+     * pretty 为 true 时按模板缓存中的排版输出，否则输出单行可执行 SQL
+     *
+     * @return 参数个数与模板中的占位符个数不一致时（模板与参数不是同一条语句）返回 false，不写入任何内容
+     */
+    public boolean appendStatement(String sql, CharSequence parameters, int from, boolean pretty, StringBuilder out) {
+        Scratch scratch = SCRATCH.get();
+        scanParameters(parameters, from, scratch.params);
+        try {
+            MlfSqlLayout layout = pretty ? cachedLayout(sql) : null;
+            long start = MlfStageStats.begin(MlfStageStats.SPLICE);
+            if (layout != null) {
+                if (layout.placeholderCount() != scratch.params.count()) return false;
+                layout.splice(scratch.params, out);
+            } else {
+                MlfSqlLexer lx = scratch.lexer.reset(sql, MlfFormatBudget.UNLIMITED);
+                if (placeholderCount(lx) != scratch.params.count()) return false;
+                appendInline(sql, scratch.params, lx, out);
+            }
+            MlfStageStats.record(MlfStageStats.SPLICE, start, sql.length(), scratch.params.count(), 0);
+            return true;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /** 解析 parameters[from, ...) 中的参数，parameters 为 null 时清空 out */
+    private static void scanParameters(CharSequence parameters, int from, MlfParamBuffer out) {
+        out.clear();
+        if (parameters == null) return;
+        long start = MlfStageStats.begin(MlfStageStats.PARAMETERS);
+        MlfParamScanner.scan(parameters, from, out);
+        MlfStageStats.record(MlfStageStats.PARAMETERS, start, parameters.length() - from, out.count(), 0);
+    }
+
+    /**
+     * 从模板缓存取排版结果（未命中时排版模板），再把参数拼接到占位符位置；
+     * 语句超出当前线程的格式化预算时退化为不排版的可执行 SQL
+     */
+    private String formatExecutable(String sql, MlfParamBuffer params, Scratch scratch) {
+        MlfFormatBudget budget = MlfFormatBudget.current();
+        try {
+            MlfSqlLayout layout = null;
+            try {
+                // 分词与排版每 1024 步才检查一次，短语句与缓存命中也要在每条语句上响应取消与超时
+                budget.checkpoint();
+                if (budget.allows((long) sql.length() + params.charCount())) layout = cachedLayout(sql);
+            } catch (MlfFormatBudget.ExceededException e) {
+                // 排版超出预算，只填充参数
+            }
+            long start = MlfStageStats.begin(MlfStageStats.SPLICE);
+            String result = layout != null ? layout.splice(params) : inlineParameters(sql, params, scratch.lexer);
+            MlfStageStats.record(MlfStageStats.SPLICE, start, sql.length() + params.charCount(), params.count(), 0);
+            return result;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /** 按顺序把参数填入 ? 占位符，结果写入预估好容量的 builder */
+    private static String inlineParameters(String sql, MlfParamBuffer params, MlfSqlLexer lexer) {
+        if (params.count() == 0) return sql;
+        StringBuilder sb = new StringBuilder(sql.length() + params.charCount() + (params.count() << 1));
+        // 填充参数是超出预算时的退化路径，分词不受预算限制
+        appendInline(sql, params, lexer.reset(sql, MlfFormatBudget.UNLIMITED), sb);
+        return sb.toString();
+    }
+
+    /** 只替换 sql 分词结果 lx 中的 ? 占位符，字符串、"..." / `...` 标识符与注释中的 ? 原样保留 */
+    private static void appendInline(String sql, MlfParamBuffer params, MlfSqlLexer lx, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + sql.length() + params.charCount() + (params.count() << 1));
+        int copied = 0;
+        int paramIdx = 0;
+        for (int i = 0, n = lx.count(); i < n && paramIdx < params.count(); i++) {
+            if (lx.type(i) != MlfSqlLexer.PLACEHOLDER) continue;
+            sb.append(sql, copied, lx.start(i));
+            params.appendLiteral(sb, paramIdx++);
+            copied = lx.end(i);
+        }
+        sb.append(sql, copied, sql.length());
+    }
+
+    private static int placeholderCount(MlfSqlLexer lx) {
+        int count = 0;
+        for (int i = 0, n = lx.count(); i < n; i++) {
+            if (lx.type(i) == MlfSqlLexer.PLACEHOLDER) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 排版带 ? 占位符的 SQL 模板，并记录占位符在结果中的位置
+     */
+    public static MlfSqlLayout layout(String template) {
+        Scratch scratch = SCRATCH.get();
+        StringBuilder sb = new StringBuilder(template.length() + (template.length() >> 1));
+        MlfSqlWriter writer = new MlfSqlWriter(sb);
+        long start = MlfStageStats.begin(MlfStageStats.LAYOUT);
+        MlfSqlFormatter formatter = new MlfSqlFormatter(scratch.lexer.reset(template));
+        try {
+            formatter.format(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            scratch.lexer.reset("");
+        }
+        int[] placeholders = writer.placeholders();
+        MlfStageStats.record(MlfStageStats.LAYOUT, start, template.length(), placeholders.length, formatter.depth());
+        return new MlfSqlLayout(sb.toString(), placeholders);
+    }
+
+    /**
+     * 从全局模板缓存取排版结果，未命中时排版并缓存；同一模板的后续语句只需拼接参数
+     */
+    public static MlfSqlLayout cachedLayout(String template) {
+        return TEMPLATE_CACHE.get(template, MlfLogParser::layout);
+    }
+
+    /** 全局模板缓存，可查看命中统计 */
+    public static MlfSqlTemplateCache templateCache() {
+        return TEMPLATE_CACHE;
+    }
+
+    public String formatRecord(MlfStatementRecord record) {
+        return formatStatement(record.getSql(), record.getParameters());
+    }
+
+    /**
+     * 将多条语句格式化为一份结果，每条语句前带注释头、以分号结尾
+     */
+    public String formatRecords(List<MlfStatementRecord> records) {
+        List<String> formatted = MlfBatchFormatter.formatRecords(records);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records.size(); i++) {
+            if (sb.length() > 0) sb.append("\n\n");
+            sb.append(records.get(i).header()).append('\n');
+            sb.append(formatted.get(i)).append(';');
+        }
+        return sb.toString();
+    }
+
+    public String formatRawSql(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length() + (sql.length() >> 1));
+        try {
+            formatTo(sql, sb);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将 SQL 格式化后直接写入 out，子查询按缩进层级递归写出，不产生中间字符串
+     */
+    public void formatTo(CharSequence sql, Appendable out) throws IOException {
+        Scratch scratch = SCRATCH.get();
+        try {
+            format(sql, out, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    private static void format(CharSequence sql, Appendable out, Scratch scratch) throws IOException {
+        long start = MlfStageStats.begin(MlfStageStats.LAYOUT);
+        MlfSqlFormatter formatter = new MlfSqlFormatter(scratch.lexer.reset(sql));
+        formatter.format(new MlfSqlWriter(out));
+        MlfStageStats.record(MlfStageStats.LAYOUT, start, sql.length(), 0, formatter.depth());
+    }
+
+    public String extractPureSqlFromLog(String log) {
+        Matcher preparingMatcher = PREPARING_PATTERN.matcher(log);
+        if (preparingMatcher.find()) {
+            String sql = preparingMatcher.group(1).trim();
+            return sql.replaceAll("[;,\\s]+$", "");
+        }
+        return null;
+    }
+
+    private void extractParameters(String log, MlfParamBuffer out) {
+        out.clear();
+        int idx = indexOfIgnoreCase(log, PARAMETERS_MARK, 0);
+        if (idx == -1) return;
+        MlfParamScanner.scan(log, idx + PARAMETERS_MARK.length(), out);
+    }
+
+    private static int indexOfIgnoreCase(String text, String lowerWord, int from) {
+        int last = text.length() - lowerWord.length();
+        for (int i = from; i <= last; i++) {
+            if (text.regionMatches(true, i, lowerWord, 0, lowerWord.length())) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,153 @@
+package wang.imold.mlf;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 流式日志记录提取器：逐行读取日志，按「线程名 + Mapper 日志名」把
+ * {@code ==> Preparing}、{@code ==> Parameters} 与 {@code <== Total/Updates} 配对成语句记录。
+ * <p>
+ * 多线程交错输出的日志也能正确配对；记录在配对完成（或被同一线程的下一条 Preparing 顶替）时交给 sink，
+ * 因此 sink 收到的是完成顺序，需要输入顺序时按 {@link MlfStatementRecord#getSequence()} 排序。
+ */
+public class MlfLogRecordExtractor {
+
+    private final Consumer<MlfStatementRecord> sink;
+    private final MlfLogLine logLine = new MlfLogLine();
+    private final Map<String, MlfStatementRecord> pending = new HashMap<>();
+    private long sequence;
+    private long lineNumber;
+
+    public MlfLogRecordExtractor(Consumer<MlfStatementRecord> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 一次性提取 text 中的全部语句，按 Preparing 出现顺序返回
+     */
+    public static List<MlfStatementRecord> extractAll(CharSequence text) {
+        List<MlfStatementRecord> records = new ArrayList<>();
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(records::add);
+        long start = MlfStageStats.begin(MlfStageStats.EXTRACT);
+        extractor.acceptAll(text);
+        extractor.finish();
+        MlfStageStats.record(MlfStageStats.EXTRACT, start, text.length(), 0, 0);
+        records.sort(Comparator.comparingLong(MlfStatementRecord::getSequence));
+        return records;
+    }
+
+    /**
+     * 逐行处理 text 中的全部内容，不调用 {@link #finish()}
+     */
+    public void acceptAll(CharSequence text) {
+        MlfFormatBudget budget = MlfFormatBudget.current();
+        int len = text.length();
+        int start = 0;
+        while (start <= len) {
+            if ((lineNumber & 4095) == 4095) budget.checkCanceled();
+            int end = start;
+            while (end < len && text.charAt(end) != '\n') end++;
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            accept(text, start, lineEnd, start);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 处理 text 中 [start, end) 这一行（不含换行符），offset 为该行在整个输入中的位置；
+     * 行号按调用次数计算，只传入部分行时用 {@link #accept(CharSequence, int, int, long, long)}
+     */
+    public void accept(CharSequence text, int start, int end, long offset) {
+        accept(text, start, end, offset, lineNumber);
+    }
+
+    /**
+     * 同 {@link #accept(CharSequence, int, int, long)}，line 为该行的真实行号（从 0 开始），
+     * 用于调用方预先筛掉了非 MyBatis 行的情况
+     */
+    public void accept(CharSequence text, int start, int end, long offset, long line) {
+        lineNumber = line + 1;
+        if (!logLine.parse(text, start, end)) return;
+
+        String key = logLine.pairKey();
+        MlfStatementRecord record = pending.get(key);
+        switch (logLine.kind) {
+            case MlfLogLine.PREPARING:
+                if (record != null) sink.accept(record);
+                String sql = trimSql(logLine.payload());
+                record = new MlfStatementRecord(sequence++, offset, line, logLine.thread(), logLine.logger(), sql);
+                record.setStartTime(logLine.timestamp());
+                pending.put(key, record);
+                break;
+            case MlfLogLine.PARAMETERS:
+                if (record == null) return;
+                if (record.getParameters() != null) {
+                    // 同一模板的后续参数行（BATCH 执行器），复用模板生成新记录
+                    sink.accept(record);
+                    MlfStatementRecord previous = record;
+                    record = new MlfStatementRecord(sequence++, previous.getOffset(), previous.getLine(),
+                            previous.getThread(), previous.getLogger(), previous.getSql());
+                    record.setBatchIndex(previous.getBatchIndex() + 1);
+                    record.setStartTime(logLine.timestamp());
+                    pending.put(key, record);
+                }
+                record.setParameters(logLine.payload(), offset);
+                break;
+            case MlfLogLine.TOTAL:
+            case MlfLogLine.UPDATES:
+                if (record == null) return;
+                if (logLine.kind == MlfLogLine.TOTAL) {
+                    record.setTotal(logLine.count());
+                } else {
+                    record.setUpdates(logLine.count());
+                }
+                record.setEndTime(logLine.timestamp());
+                pending.remove(key);
+                sink.accept(record);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 输入结束，输出所有尚未配对完成的记录
+     */
+    public void finish() {
+        List<MlfStatementRecord> rest = pending();
+        pending.clear();
+        rest.forEach(sink);
+    }
+
+    /**
+     * 恢复上次输入结束时尚未配对完成的记录，之后的 Parameters / Total 行继续与它配对（增量索引用）
+     */
+    void resume(MlfStatementRecord record) {
+        pending.put(MlfLogLine.pairKey(record.getThread(), record.getLogger()), record);
+    }
+
+    /** 尚未配对完成的记录，按 Preparing 出现顺序 */
+    List<MlfStatementRecord> pending() {
+        List<MlfStatementRecord> rest = new ArrayList<>(pending.values());
+        rest.sort(Comparator.comparingLong(MlfStatementRecord::getSequence));
+        return rest;
+    }
+
+    /** 尚未配对完成的记录中最小的序号，没有时为 {@link Long#MAX_VALUE} */
+    long oldestPending() {
+        long oldest = Long.MAX_VALUE;
+        for (MlfStatementRecord record : pending.values()) oldest = Math.min(oldest, record.getSequence());
+        return oldest;
+    }
+
+    /** 去掉 Preparing 模板末尾的分号、逗号与空白，提取、索引与控制台记录的模板保持一致 */
+    public static String trimSql(String sql) {
+        int end = sql.length();
+        while (end > 0) {
+            char c = sql.charAt(end - 1);
+            if (c != ';' && c != ',' && !Character.isWhitespace(c)) break;
+            end--;
+        }
+        return sql.substring(0, end);
+    }
+}
@@ -0,0 +1,256 @@
+package wang.imold.mlf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的日志行扫描器：按固定大小的窗口映射文件，在字节层面查找换行，
+ * 只有疑似 MyBatis 日志的行才解码为字符，内存占用与文件大小无关。
+ */
+final class MlfMappedLineReader implements Closeable {
+
+    /** 每次映射的窗口大小 */
+    private static final int WINDOW_SIZE = 64 << 20;
+    /** 单行超过窗口时窗口最多扩大到该值，更长的行直接跳过 */
+    static final int MAX_LINE_BYTES = 256 << 20;
+
+    private static final byte[][] MARKERS = {
+            "==>".getBytes(StandardCharsets.US_ASCII),
+            "<==".getBytes(StandardCharsets.US_ASCII),
+            "Preparing:".getBytes(StandardCharsets.US_ASCII),
+            "Parameters:".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    interface LineVisitor {
+        /**
+         * @param line   已解码的行内容（不含换行符），调用返回后会被复用
+         * @param offset 行首在文件中的字节偏移
+         */
+        void visit(CharBuffer line, long offset) throws IOException;
+    }
+
+    interface NumberedLineVisitor {
+        /**
+         * @param line   已解码的行内容（不含换行符），调用返回后会被复用
+         * @param offset 行首在文件中的字节偏移
+         * @param number 行号（从 0 开始，从文件开头算起，被预筛选跳过的行也计入）
+         */
+        void visit(CharBuffer line, long offset, long number) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(8192);
+    private ByteBuffer lineBytes = ByteBuffer.allocate(8192);
+
+    MlfMappedLineReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 扫描行首位于 [from, to) 的所有 MyBatis 日志行。from 不在行首时从下一行开始；
+     * 超过 {@link #MAX_LINE_BYTES} 的行不可能是完整的 MyBatis 日志，跳过不扫描。
+     */
+    void scan(long from, long to, LineVisitor visitor) throws IOException {
+        scan(from, to, false, (line, offset, number) -> visitor.visit(line, offset));
+    }
+
+    /**
+     * 同 {@link #scan(long, long, LineVisitor)}，同时给出每行在整个文件中的行号；from 大于 0 时先数出之前的行数
+     */
+    void scanNumbered(long from, long to, NumberedLineVisitor visitor) throws IOException {
+        scan(from, to, true, visitor);
+    }
+
+    private void scan(long from, long to, boolean numbered, NumberedLineVisitor visitor) throws IOException {
+        long size = channel.size();
+        to = Math.min(to, size);
+        long pos = Math.max(0, from);
+        if (pos > 0 && pos < size && !isLineStart(pos)) {
+            pos = nextLineStart(pos, size);
+        }
+        long number = numbered ? countLines(pos) : -1;
+
+        int window = WINDOW_SIZE;
+        while (pos < to) {
+            long mapSize = Math.min(window, size - pos);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, mapSize);
+            int limit = (int) mapSize;
+            int lineStart = 0;
+            boolean progressed = false;
+            while (lineStart < limit && pos + lineStart < to) {
+                int nl = indexOf(buf, (byte) '\n', lineStart, limit);
+                if (nl == -1) {
+                    if (pos + limit < size) break; // 行跨越窗口，从行首重新映射
+                    nl = limit;
+                }
+                int lineEnd = nl > lineStart && buf.get(nl - 1) == '\r' ? nl - 1 : nl;
+                if (mayBeMyBatis(buf, lineStart, lineEnd)) {
+                    visitor.visit(decode(buf, lineStart, lineEnd), pos + lineStart, number);
+                }
+                if (numbered) number++;
+                lineStart = nl + 1;
+                progressed = true;
+            }
+            if (!progressed && lineStart == 0 && pos + limit < size) {
+                if (window < MAX_LINE_BYTES) {
+                    // 单行超过窗口大小，扩大窗口
+                    window = Math.min(MAX_LINE_BYTES, window << 1);
+                } else {
+                    pos = nextLineStart(pos + limit, size);
+                    if (numbered) number++;
+                    window = WINDOW_SIZE;
+                }
+                continue;
+            }
+            pos += Math.min(lineStart, limit);
+            window = WINDOW_SIZE;
+        }
+    }
+
+    /**
+     * 从 position 开始读满 dst，文件较短时读到末尾为止
+     */
+    void read(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining() && channel.read(dst, position + dst.position()) > 0) {
+            // 继续读取
+        }
+    }
+
+    /**
+     * 最后一个换行符之后的位置，即只包含完整行的长度；正在写入的日志末尾可能是半行
+     */
+    long completeLength() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buf.capacity());
+            buf.clear().limit((int) (end - start));
+            read(buf, start);
+            for (int i = buf.position() - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') return start + i + 1;
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * 读取行首位于 offset 的一整行（不含换行符），不做 MyBatis 预筛选；返回值在下次调用时会被复用
+     */
+    CharBuffer readLine(long offset) throws IOException {
+        ByteBuffer buf = lineBytes;
+        buf.clear();
+        int end = -1;
+        while (end == -1) {
+            if (!buf.hasRemaining()) {
+                if (buf.capacity() >= MAX_LINE_BYTES) throw new IOException("行长度超过 " + (MAX_LINE_BYTES >> 20) + " MB：" + offset);
+                ByteBuffer larger = ByteBuffer.allocate(buf.capacity() << 1);
+                buf.flip();
+                buf = lineBytes = larger.put(buf);
+            }
+            int from = buf.position();
+            int n = channel.read(buf, offset + from);
+            if (n <= 0) {
+                end = buf.position();
+                break;
+            }
+            end = indexOf(buf, (byte) '\n', from, buf.position());
+        }
+        if (end > 0 && buf.get(end - 1) == '\r') end--;
+        return decode(buf, 0, end);
+    }
+
+    /** [0, end) 中的换行符个数 */
+    private long countLines(long end) throws IOException {
+        long count = 0;
+        for (long pos = 0; pos < end; pos += WINDOW_SIZE) {
+            int limit = (int) Math.min(WINDOW_SIZE, end - pos);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, limit);
+            for (int i = 0; i < limit; i++) {
+                if (buf.get(i) == '\n') count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isLineStart(long pos) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, pos - 1);
+        return one.get(0) == '\n';
+    }
+
+    private long nextLineStart(long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private CharBuffer decode(ByteBuffer buf, int start, int end) {
+        ByteBuffer in = buf.duplicate();
+        in.limit(end).position(start);
+        int max = (int) ((end - start) * (double) decoder.maxCharsPerByte()) + 1;
+        if (chars.capacity() < max) chars = CharBuffer.allocate(max);
+        chars.clear();
+        decoder.reset();
+        decoder.decode(in, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars;
+    }
+
+    /** 字节层面的预筛选：行内包含 ==>、<==、Preparing: 或 Parameters: 才需要解码 */
+    private static boolean mayBeMyBatis(ByteBuffer buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b != '=' && b != '<' && b != 'P') continue;
+            for (byte[] marker : MARKERS) {
+                if (marker[0] == b && regionMatches(buf, i, end, marker)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(ByteBuffer buf, int pos, int end, byte[] word) {
+        if (end - pos < word.length) return false;
+        for (int i = 0; i < word.length; i++) {
+            if (buf.get(pos + i) != word[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
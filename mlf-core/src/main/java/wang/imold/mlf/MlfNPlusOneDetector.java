@@ -0,0 +1,203 @@
+package wang.imold.mlf;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * N+1 查询检测：同一线程上同一语句指纹连续重复执行（相邻两次间隔不超过 window 行）视为一次突发，
+ * 突发结束时执行次数达到 threshold 即告警。
+ * <p>
+ * 每个线程只保留窗口内仍活跃的突发，每个突发最多保留 {@link #MAX_SAMPLES} 组不同参数作为示例、
+ * 按哈希统计最多 {@link #DISTINCT_LIMIT} 组不同参数，因此可以流式处理任意长度的日志。非线程安全。
+ */
+public class MlfNPlusOneDetector {
+
+    /** 每个告警保留的参数示例数 */
+    public static final int MAX_SAMPLES = 20;
+    /** 不同参数组数的计数上限 */
+    public static final int DISTINCT_LIMIT = 4096;
+
+    private final int threshold;
+    private final long window;
+    private final Consumer<Alert> sink;
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+    private final Map<String, ThreadState> threads = new HashMap<>();
+    private long alerts;
+
+    /**
+     * @param threshold 一次突发中至少执行多少次才告警
+     * @param window    同一指纹相邻两次执行最多间隔的日志行数
+     * @param sink      接收告警，顺序为突发结束的顺序
+     */
+    public MlfNPlusOneDetector(int threshold, long window, Consumer<Alert> sink) {
+        if (threshold < 2) throw new IllegalArgumentException("阈值必须大于 1");
+        if (window < 1) throw new IllegalArgumentException("窗口必须大于 0");
+        this.threshold = threshold;
+        this.window = window;
+        this.sink = sink;
+    }
+
+    public void accept(MlfStatementRecord record) {
+        // BATCH 执行器的后续参数行是同一次批量执行，不算重复查询
+        if (record.getBatchIndex() > 0) return;
+        long line = record.getLine();
+        ThreadState state = threads.computeIfAbsent(record.getThread(), t -> new ThreadState());
+        if (line - state.lastSweep > window) {
+            expire(state, line);
+            state.lastSweep = line;
+        }
+
+        String key = fingerprint.of(record.getSql());
+        Burst burst = state.bursts.get(key);
+        if (burst != null && line - burst.lastLine > window) {
+            close(burst);
+            burst = null;
+        }
+        if (burst == null) {
+            burst = new Burst(record, key);
+            state.bursts.put(key, burst);
+        }
+        burst.add(record);
+    }
+
+    /** 输入结束，关闭所有仍活跃的突发 */
+    public void finish() {
+        for (ThreadState state : threads.values()) {
+            expire(state, Long.MAX_VALUE);
+        }
+        threads.clear();
+    }
+
+    /** 已输出的告警数 */
+    public long getAlerts() {
+        return alerts;
+    }
+
+    private void expire(ThreadState state, long line) {
+        Iterator<Burst> it = state.bursts.values().iterator();
+        while (it.hasNext()) {
+            Burst burst = it.next();
+            if (line - burst.lastLine > window) {
+                it.remove();
+                close(burst);
+            }
+        }
+    }
+
+    private void close(Burst burst) {
+        if (burst.count < threshold) return;
+        alerts++;
+        sink.accept(new Alert(burst));
+    }
+
+    private static final class ThreadState {
+        final Map<String, Burst> bursts = new HashMap<>();
+        long lastSweep;
+    }
+
+    private static final class Burst {
+        final MlfStatementRecord first;
+        final String fingerprint;
+        final Set<String> samples = new LinkedHashSet<>();
+        final Set<Integer> distinct = new HashSet<>();
+        long lastLine;
+        int count;
+
+        Burst(MlfStatementRecord first, String fingerprint) {
+            this.first = first;
+            this.fingerprint = fingerprint;
+        }
+
+        void add(MlfStatementRecord record) {
+            count++;
+            lastLine = record.getLine();
+            String parameters = record.getParameters() == null ? "" : record.getParameters();
+            if (distinct.size() < DISTINCT_LIMIT && distinct.add(parameters.hashCode()) && samples.size() < MAX_SAMPLES) {
+                samples.add(parameters);
+            }
+        }
+    }
+
+    /** 一次 N+1 突发 */
+    public static final class Alert {
+
+        private final String thread;
+        private final String logger;
+        private final String sql;
+        private final String fingerprint;
+        private final int count;
+        private final int distinct;
+        private final List<String> samples;
+        private final long firstLine;
+        private final long lastLine;
+
+        private Alert(Burst burst) {
+            this.thread = burst.first.getThread();
+            this.logger = burst.first.getLogger();
+            this.sql = burst.first.getSql();
+            this.fingerprint = burst.fingerprint;
+            this.count = burst.count;
+            this.distinct = burst.distinct.size();
+            this.samples = new ArrayList<>(burst.samples);
+            this.firstLine = burst.first.getLine();
+            this.lastLine = burst.lastLine;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public String getLogger() {
+            return logger;
+        }
+
+        /** 第一次执行时的 Preparing 模板 */
+        public String getSql() {
+            return sql;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /** 突发内的执行次数 */
+        public int getCount() {
+            return count;
+        }
+
+        /** 不同参数的组数，最多计到 {@link #DISTINCT_LIMIT} */
+        public int getDistinct() {
+            return distinct;
+        }
+
+        /** 最多 {@link #MAX_SAMPLES} 组不同参数的原文 */
+        public List<String> getSamples() {
+            return samples;
+        }
+
+        /** 第一次执行的 Preparing 行号（从 0 开始） */
+        public long getFirstLine() {
+            return firstLine;
+        }
+
+        /** 最后一次执行的 Preparing 行号（从 0 开始） */
+        public long getLastLine() {
+            return lastLine;
+        }
+
+        /** 告警注释头 + 参数示例 + 格式化后的模板 */
+        public String toText(MlfLogParser parser) {
+            StringBuilder sb = new StringBuilder("-- N+1：");
+            if (!thread.isEmpty()) sb.append('[').append(thread).append("] ");
+            if (!logger.isEmpty()) sb.append(logger).append(' ');
+            sb.append("执行 ").append(count).append(" 次，不同参数 ").append(distinct)
+                    .append(distinct >= DISTINCT_LIMIT ? "+" : "").append(" 组，第 ")
+                    .append(firstLine + 1).append(" - ").append(lastLine + 1).append(" 行\n");
+            for (String sample : samples) {
+                sb.append("--   ").append(sample.isEmpty() ? "（无参数）" : sample).append('\n');
+            }
+            if (distinct > samples.size()) sb.append("--   ...\n");
+            return sb.append(parser.formatRawSql(sql)).append(';').toString();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package wang.imold.mlf;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的参数缓冲区：所有参数值顺序存放在同一个 char 数组中，
+ * 每个参数只记录偏移、长度与类型标记，写入 SQL 时再按类型输出字面量，避免逐个创建字符串。
+ */
+public final class MlfParamBuffer {
+
+    /** 原样输出（数字、布尔、已带引号的值） */
+    public static final byte RAW = 0;
+    /** 输出时加单引号并转义 */
+    public static final byte QUOTED = 1;
+    /** SQL NULL */
+    public static final byte NULL = 2;
+
+    private char[] chars = new char[256];
+    private int used;
+    private int count;
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private byte[] kinds = new byte[16];
+
+    public void clear() {
+        used = 0;
+        count = 0;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public byte kind(int i) {
+        return kinds[i];
+    }
+
+    /** 参数值的原始文本（不含引号），仅供展示使用 */
+    public String value(int i) {
+        return new String(chars, starts[i], lengths[i]);
+    }
+
+    int start(int i) {
+        return starts[i];
+    }
+
+    int length(int i) {
+        return lengths[i];
+    }
+
+    /** 值区域中的第 pos 个字符，配合 {@link #start(int)} / {@link #length(int)} 逐字符读取参数值 */
+    char charAt(int pos) {
+        return chars[pos];
+    }
+
+    /** 所有参数值的字符总数，用于预估输出容量 */
+    public int charCount() {
+        return used;
+    }
+
+    public void add(CharSequence src, int start, int end, byte kind) {
+        if (count == kinds.length) {
+            int n = count << 1;
+            starts = Arrays.copyOf(starts, n);
+            lengths = Arrays.copyOf(lengths, n);
+            kinds = Arrays.copyOf(kinds, n);
+        }
+        int len = end - start;
+        if (used + len > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, used + len));
+        }
+        for (int i = start; i < end; i++) chars[used + i - start] = src.charAt(i);
+        starts[count] = used;
+        lengths[count] = len;
+        kinds[count] = kind;
+        used += len;
+        count++;
+    }
+
+    /** 以 SQL 字面量形式写出第 i 个参数 */
+    public void appendLiteral(StringBuilder sb, int i) {
+        switch (kinds[i]) {
+            case NULL:
+                sb.append("null");
+                break;
+            case QUOTED:
+                sb.append('\'');
+                int end = starts[i] + lengths[i];
+                for (int p = starts[i]; p < end; p++) {
+                    char c = chars[p];
+                    if (c == '\'') sb.append('\'');
+                    sb.append(c);
+                }
+                sb.append('\'');
+                break;
+            default:
+                sb.append(chars, starts[i], lengths[i]);
+        }
+    }
+}
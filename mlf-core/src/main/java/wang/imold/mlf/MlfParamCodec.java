@@ -0,0 +1,148 @@
+package wang.imold.mlf;
+
+import java.util.Arrays;
+
+/**
+ * 参数的紧凑二进制编码：参数个数 + 每个参数一个标记字节，整数按 zigzag 变长编码，
+ * 其余值按字符变长编码（ASCII 1 字节、常用汉字 3 字节以内）。
+ * <p>
+ * 编码结果写入可复用的内部缓冲区，调用方按 {@link #size()} 复制需要的部分。
+ */
+public final class MlfParamCodec {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_QUOTED = 1;
+    private static final byte TAG_RAW = 2;
+    private static final byte TAG_LONG = 3;
+
+    private byte[] buf = new byte[256];
+    private int size;
+
+    /** 编码全部参数，返回编码长度，结果在 {@link #buffer()} 的 [0, size) 中 */
+    public int encode(MlfParamBuffer params) {
+        size = 0;
+        int n = params.count();
+        writeVarLong(n);
+        for (int i = 0; i < n; i++) {
+            byte kind = params.kind(i);
+            int start = params.start(i);
+            int len = params.length(i);
+            if (kind == MlfParamBuffer.NULL) {
+                writeByte(TAG_NULL);
+            } else if (kind == MlfParamBuffer.RAW && isCanonicalLong(params, start, len)) {
+                writeByte(TAG_LONG);
+                long v = parseLong(params, start, len);
+                writeVarLong((v << 1) ^ (v >> 63));
+            } else {
+                writeByte(kind == MlfParamBuffer.QUOTED ? TAG_QUOTED : TAG_RAW);
+                writeVarLong(len);
+                for (int p = start, end = start + len; p < end; p++) writeVarLong(params.charAt(p));
+            }
+        }
+        return size;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** 编码结果的副本 */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * 把 src[from, ...) 中的一组参数解码到 out（先清空），scratch 用于拼接单个参数值；返回编码结束位置
+     */
+    public static int decode(byte[] src, int from, MlfParamBuffer out, StringBuilder scratch) {
+        out.clear();
+        int[] pos = {from};
+        int n = (int) readVarLong(src, pos);
+        for (int i = 0; i < n; i++) {
+            byte tag = src[pos[0]++];
+            scratch.setLength(0);
+            switch (tag) {
+                case TAG_NULL:
+                    out.add("null", 0, 4, MlfParamBuffer.NULL);
+                    break;
+                case TAG_LONG:
+                    long z = readVarLong(src, pos);
+                    scratch.append((z >>> 1) ^ -(z & 1));
+                    out.add(scratch, 0, scratch.length(), MlfParamBuffer.RAW);
+                    break;
+                default:
+                    int len = (int) readVarLong(src, pos);
+                    for (int k = 0; k < len; k++) scratch.append((char) readVarLong(src, pos));
+                    out.add(scratch, 0, len, tag == TAG_QUOTED ? MlfParamBuffer.QUOTED : MlfParamBuffer.RAW);
+            }
+        }
+        return pos[0];
+    }
+
+    /** 无符号变长整数，每字节 7 位，最高位表示后面还有字节 */
+    public static int writeVarLong(byte[] dst, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            dst[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        dst[pos++] = (byte) v;
+        return pos;
+    }
+
+    /** 读取 src[pos[0]] 开始的变长整数，并把 pos[0] 移到其后 */
+    public static long readVarLong(byte[] src, int[] pos) {
+        int p = pos[0];
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = src[p++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        pos[0] = p;
+        return result;
+    }
+
+    private void writeVarLong(long v) {
+        ensure(10);
+        size = writeVarLong(buf, size, v);
+    }
+
+    private void writeByte(byte b) {
+        ensure(1);
+        buf[size++] = b;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + extra));
+    }
+
+    /** 解码后能得到完全相同文本的整数：无前导零、无正号、不是 -0，且不会溢出 */
+    private static boolean isCanonicalLong(MlfParamBuffer params, int start, int len) {
+        int p = start;
+        int end = start + len;
+        if (p < end && params.charAt(p) == '-') p++;
+        int digits = end - p;
+        if (digits == 0 || digits > 18) return false;
+        if (params.charAt(p) == '0' && (digits > 1 || p > start)) return false;
+        for (; p < end; p++) {
+            char c = params.charAt(p);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static long parseLong(MlfParamBuffer params, int start, int len) {
+        int p = start;
+        boolean negative = params.charAt(p) == '-';
+        if (negative) p++;
+        long v = 0;
+        for (int end = start + len; p < end; p++) v = v * 10 + (params.charAt(p) - '0');
+        return negative ? -v : v;
+    }
+}
@@ -0,0 +1,234 @@
+package wang.imold.mlf;
+
+/**
+ * 手写的 Parameters 扫描器，按 MyBatis 的 {@code value(Type), value(Type), null} 语法线性解析，无正则、无回溯。
+ * <p>
+ * 参数值以 {@code (Type)} 作为结束标记，且其后必须是行尾，或 {@code ", "} 加下一项的开头（{@code null} 或 {@code value(Type)}），
+ * 因此 String 值中的逗号、括号、换行都能正确保留；{@code null} 只有独占一项时才是 SQL NULL。
+ * 不带类型的参数（如 {@code "1", 18, 0, 10}）按逗号拆分兜底。
+ */
+final class MlfParamScanner {
+
+    private static final String[] RAW_TYPES = {
+            "Integer", "Long", "Short", "Byte", "Double", "Float", "BigDecimal", "BigInteger",
+            "AtomicInteger", "AtomicLong", "Boolean"
+    };
+
+    private MlfParamScanner() {
+    }
+
+    /**
+     * 从 from（"Parameters:" 之后）开始扫描参数并写入 out，返回参数区的结束位置
+     */
+    static int scan(CharSequence text, int from, MlfParamBuffer out) {
+        int len = text.length();
+        int pos = skipBlanks(text, from);
+        boolean typed = false;
+        while (pos < len && !isLineEnd(text.charAt(pos))) {
+            if (isNullItem(text, pos)) {
+                out.add(text, pos, pos + 4, MlfParamBuffer.NULL);
+                pos += 4;
+            } else {
+                int typeStart = findTypeSuffix(text, pos);
+                if (typeStart == -1) {
+                    if (!typed) {
+                        out.clear();
+                        return scanUntyped(text, from, out);
+                    }
+                    // 无法识别的尾部，整体作为一个字符串参数
+                    int end = lineEnd(text, pos);
+                    out.add(text, pos, end, MlfParamBuffer.QUOTED);
+                    return end;
+                }
+                int typeEnd = indexOf(text, ')', typeStart);
+                out.add(text, pos, typeStart - 1, kindOfType(text, typeStart, typeEnd));
+                pos = typeEnd + 1;
+                typed = true;
+            }
+            if (pos + 1 < len && text.charAt(pos) == ',' && text.charAt(pos + 1) == ' ') {
+                pos += 2;
+            } else {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 查找参数值之后的 "(Type)"：')' 后是行尾，或 ", " 加下一项的开头。
+     * 返回类型名起始位置，找不到返回 -1。
+     */
+    private static int findTypeSuffix(CharSequence text, int from) {
+        int len = text.length();
+        int open = typeCandidate(text, from);
+        if (open == -1) return -1;
+        int after = indexOf(text, ')', open) + 1;
+        if (after >= len || text.charAt(after) != ',') return open + 1;
+        // 后面再没有 (Type) 也不是 null 时，这里的 "(Word), " 只是值的一部分，整行不是合法的带类型参数
+        return typeCandidate(text, after) != -1 || isNullItem(text, after + 2) ? open + 1 : -1;
+    }
+
+    /**
+     * 从 from 起第一个形如 "(Type)" 且其后为 ", " 或行尾的位置（'(' 的下标），找不到返回 -1
+     */
+    private static int typeCandidate(CharSequence text, int from) {
+        int len = text.length();
+        for (int i = from; i < len; i++) {
+            char ch = text.charAt(i);
+            // 值可以跨行，但不能越过下一条日志记录
+            if (ch == '\n' && isRecordLine(text, i + 1)) return -1;
+            if (ch != '(') continue;
+            int p = i + 1;
+            if (p >= len || !Character.isJavaIdentifierStart(text.charAt(p))) continue;
+            while (p < len && (Character.isJavaIdentifierPart(text.charAt(p)) || text.charAt(p) == '.')) p++;
+            if (p >= len || text.charAt(p) != ')') continue;
+            int after = p + 1;
+            if (after >= len || isLineEnd(text.charAt(after)) || isItemSeparator(text, after)
+                    || isBlankToLineEnd(text, after)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 不带类型的参数：按顶层逗号拆分到行尾 */
+    private static int scanUntyped(CharSequence text, int from, MlfParamBuffer out) {
+        int end = lineEnd(text, from);
+        int itemStart = from;
+        char quote = 0;
+        for (int i = from; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ',';
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ',' || i == end) {
+                addUntyped(text, itemStart, i, out);
+                itemStart = i + 1;
+            }
+        }
+        return end;
+    }
+
+    private static void addUntyped(CharSequence text, int start, int end, MlfParamBuffer out) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        if (start == end) return;
+        char first = text.charAt(start);
+        byte kind;
+        if (first == '\'' || first == '"' || isNumber(text, start, end)
+                || regionIs(text, start, end, "true") || regionIs(text, start, end, "false")) {
+            kind = MlfParamBuffer.RAW;
+        } else if (regionIs(text, start, end, "null")) {
+            kind = MlfParamBuffer.NULL;
+        } else {
+            kind = MlfParamBuffer.QUOTED;
+        }
+        out.add(text, start, end, kind);
+    }
+
+    /** 数值与布尔类型原样输出，其余（String、Date、Timestamp 等）加引号 */
+    private static byte kindOfType(CharSequence text, int start, int end) {
+        int dot = start;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '.') dot = i + 1;
+        }
+        for (String type : RAW_TYPES) {
+            if (type.length() == end - dot && regionMatches(text, dot, type)) return MlfParamBuffer.RAW;
+        }
+        return MlfParamBuffer.QUOTED;
+    }
+
+    /** 独占一项的 null：其后为行尾，或 ", " 加下一项的开头 */
+    private static boolean isNullItem(CharSequence text, int pos) {
+        int len = text.length();
+        if (pos + 4 > len || !regionIs(text, pos, pos + 4, "null")) return false;
+        int after = pos + 4;
+        if (after == len || isLineEnd(text.charAt(after)) || isBlankToLineEnd(text, after)) return true;
+        if (!isItemSeparator(text, after)) return false;
+        int next = after + 2;
+        return regionIs(text, next, Math.min(next + 4, len), "null") || typeCandidate(text, next) != -1;
+    }
+
+    private static boolean isItemSeparator(CharSequence text, int pos) {
+        return pos + 1 < text.length() && text.charAt(pos) == ',' && text.charAt(pos + 1) == ' ';
+    }
+
+    private static boolean isNumber(CharSequence text, int start, int end) {
+        int i = start;
+        if (text.charAt(i) == '-') i++;
+        int digits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !dot && digits > 0) {
+                dot = true;
+            } else {
+                return false;
+            }
+        }
+        return digits > 0 && text.charAt(end - 1) != '.';
+    }
+
+    private static boolean regionIs(CharSequence text, int start, int end, String word) {
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isRecordLine(CharSequence text, int pos) {
+        int end = lineEnd(text, pos);
+        for (int i = pos; i + 2 < end; i++) {
+            char c = text.charAt(i);
+            if ((c == '=' && text.charAt(i + 1) == '=' && text.charAt(i + 2) == '>')
+                    || (c == '<' && text.charAt(i + 1) == '=' && text.charAt(i + 2) == '=')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlankToLineEnd(CharSequence text, int pos) {
+        int len = text.length();
+        while (pos < len && !isLineEnd(text.charAt(pos))) {
+            if (!Character.isWhitespace(text.charAt(pos))) return false;
+            pos++;
+        }
+        return true;
+    }
+
+    private static int skipBlanks(CharSequence text, int pos) {
+        int len = text.length();
+        while (pos < len && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) pos++;
+        return pos;
+    }
+
+    private static int lineEnd(CharSequence text, int pos) {
+        int len = text.length();
+        while (pos < len && !isLineEnd(text.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        int len = text.length();
+        for (int i = from; i < len; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,128 @@
+package wang.imold.mlf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 结果窗口中的一条语句：标题（注释头）立即可用，正文在第一次展示时才格式化并缓存。
+ * <p>
+ * 成千上万条语句的结果只需保存各自的模板与参数原文，未被查看的语句不会被格式化。
+ */
+public final class MlfResultEntry {
+
+    /** IN / VALUES 列表超过该项数时默认折叠 */
+    public static final int FOLD_MIN_ITEMS = 20;
+
+    private final String title;
+    private Supplier<String> formatter;
+    private volatile String text;
+
+    private MlfResultEntry(String title, Supplier<String> formatter, String text) {
+        this.title = title;
+        this.formatter = formatter;
+        this.text = text;
+    }
+
+    /** 已格式化的结果 */
+    public static MlfResultEntry of(String title, String text) {
+        return new MlfResultEntry(title, null, text);
+    }
+
+    /** 第一次调用 {@link #getText()} 时才执行 formatter */
+    public static MlfResultEntry lazy(String title, Supplier<String> formatter) {
+        return new MlfResultEntry(title, formatter, null);
+    }
+
+    /** 每条记录一个条目，正文为带参数的格式化 SQL */
+    public static List<MlfResultEntry> ofRecords(List<MlfStatementRecord> records, MlfLogParser parser) {
+        List<MlfResultEntry> entries = new ArrayList<>(records.size());
+        for (MlfStatementRecord record : records) {
+            entries.add(lazy(record.header(), () -> parser.formatRecord(record) + ';'));
+        }
+        return entries;
+    }
+
+    /** 注释头，例如 {@code -- #3 [main] c.e.m.UserMapper.selectById  Total: 1} */
+    public String getTitle() {
+        return title;
+    }
+
+    /** 格式化后的正文，首次调用时格式化；格式化失败时不缓存，下次调用重试 */
+    public String getText() {
+        String result = text;
+        if (result == null) {
+            synchronized (this) {
+                result = text;
+                if (result == null) {
+                    result = formatter.get();
+                    text = result;
+                    formatter = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean isFormatted() {
+        return text != null;
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+
+    /** 行数，超过 max 时返回 max，不拆分字符串 */
+    public static int lineCount(CharSequence s, int max) {
+        int lines = 1;
+        for (int i = 0, len = s.length(); i < len && lines < max; i++) {
+            if (s.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * 格式化结果中需要折叠的长列表：IN (...) 与 VALUES (...) 中超过 {@link #FOLD_MIN_ITEMS} 项的括号内部。
+     * 每三个元素一组：起始位置、结束位置（不含括号）、项数
+     */
+    public static int[] longLists(CharSequence text) {
+        MlfSqlLexer lx = new MlfSqlLexer().reset(text);
+        int[] ranges = new int[0];
+        int count = 0;
+        int n = lx.count();
+        for (int i = 1; i < n; i++) {
+            if (lx.type(i) != MlfSqlLexer.LPAREN) continue;
+            int close = lx.match(i);
+            if (close < i || !isListKeyword(lx, i - 1)) continue;
+            int items = 1;
+            for (int k = i + 1; k < close; k++) {
+                byte type = lx.type(k);
+                if (type == MlfSqlLexer.COMMA) {
+                    items++;
+                } else if (type == MlfSqlLexer.LPAREN && lx.match(k) > k) {
+                    k = lx.match(k);
+                }
+            }
+            if (items <= FOLD_MIN_ITEMS) continue;
+            if (count + 3 > ranges.length) ranges = Arrays.copyOf(ranges, Math.max(6, ranges.length << 1));
+            ranges[count++] = lx.end(i);
+            ranges[count++] = lx.start(close);
+            ranges[count++] = items;
+            i = close;
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private static boolean isListKeyword(MlfSqlLexer lx, int i) {
+        if (lx.keyword(i) == MlfSqlLexer.KW_IN) return true;
+        if (lx.type(i) != MlfSqlLexer.WORD || lx.end(i) - lx.start(i) != 6) return false;
+        CharSequence src = lx.source();
+        String word = "VALUES";
+        for (int k = 0; k < 6; k++) {
+            if (MlfSqlLexer.toUpperAscii(src.charAt(lx.start(i) + k)) != word.charAt(k)) return false;
+        }
+        return true;
+    }
+}
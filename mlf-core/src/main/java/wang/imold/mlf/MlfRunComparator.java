@@ -0,0 +1,209 @@
+package wang.imold.mlf;
+
+import java.util.*;
+
+/**
+ * 比较两次运行（基线与候选，例如代码改动前后的集成测试日志）中各语句指纹的执行次数与行数，
+ * 找出新增、消失以及次数或行数变化超过阈值的语句，可作为本地性能门禁。
+ * <p>
+ * 两份日志各流式处理一遍，分别汇总到容量固定的 {@link MlfFingerprintReport} 中，内存占用与日志大小无关；
+ * 指纹与 {@code --report} 相同。指纹数超过容量时统计会有误差，{@link Result#isExact()} 为 false。
+ * <p>
+ * 非线程安全。
+ */
+public class MlfRunComparator {
+
+    /** 每份日志最多保留的指纹数 */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final int capacity;
+    private final MlfFingerprintReport baseline;
+    private final MlfFingerprintReport candidate;
+
+    public MlfRunComparator(int capacity) {
+        this.capacity = capacity;
+        this.baseline = new MlfFingerprintReport(capacity);
+        this.candidate = new MlfFingerprintReport(capacity);
+    }
+
+    public void acceptBaseline(MlfStatementRecord record) {
+        baseline.accept(record);
+    }
+
+    public void acceptCandidate(MlfStatementRecord record) {
+        candidate.accept(record);
+    }
+
+    /**
+     * 按指纹连接两份统计
+     *
+     * @param thresholdPercent 次数或行数相对基线的变化超过该百分比才报告
+     * @param minDelta         次数变化的绝对值至少为该值才报告，避免 1 次变 2 次这类噪声
+     * @param minRowsDelta     行数变化的绝对值至少为该值才报告，避免 0 行变 1 行这类噪声
+     */
+    public Result compare(double thresholdPercent, long minDelta, long minRowsDelta) {
+        Map<String, MlfFingerprintReport.Entry> base = new HashMap<>();
+        for (MlfFingerprintReport.Entry e : baseline.top(baseline.size())) base.put(e.getFingerprint(), e);
+
+        Result result = new Result(baseline.getStatements(), candidate.getStatements(),
+                baseline.size() < capacity && candidate.size() < capacity);
+        for (MlfFingerprintReport.Entry c : candidate.top(candidate.size())) {
+            MlfFingerprintReport.Entry b = base.remove(c.getFingerprint());
+            if (b == null) {
+                result.added.add(new Diff(null, c));
+                continue;
+            }
+            Diff diff = new Diff(b, c);
+            boolean countChanged = Math.abs(diff.countDelta()) >= minDelta
+                    && exceeds(diff.baseCount, diff.candidateCount, thresholdPercent);
+            boolean rowsChanged = Math.abs(diff.candidateRows - diff.baseRows) >= minRowsDelta
+                    && exceeds(diff.baseRows, diff.candidateRows, thresholdPercent);
+            if (!countChanged && !rowsChanged) continue;
+            if ((countChanged && diff.countDelta() > 0) || (rowsChanged && diff.candidateRows > diff.baseRows)) {
+                result.increased.add(diff);
+            } else {
+                result.decreased.add(diff);
+            }
+        }
+        for (MlfFingerprintReport.Entry b : base.values()) result.vanished.add(new Diff(b, null));
+
+        Comparator<Diff> byDelta = Comparator.comparingLong((Diff d) -> Math.abs(d.countDelta())).reversed()
+                .thenComparing(Comparator.comparingLong((Diff d) -> Math.abs(d.candidateRows - d.baseRows)).reversed());
+        result.added.sort(byDelta);
+        result.vanished.sort(byDelta);
+        result.increased.sort(byDelta);
+        result.decreased.sort(byDelta);
+        return result;
+    }
+
+    private static boolean exceeds(long base, long candidate, double thresholdPercent) {
+        if (base == candidate) return false;
+        if (base == 0) return true;
+        return Math.abs(candidate - base) * 100.0 / base > thresholdPercent;
+    }
+
+    /** 比较结果 */
+    public static final class Result {
+
+        private final long baseStatements;
+        private final long candidateStatements;
+        private final boolean exact;
+        private final List<Diff> added = new ArrayList<>();
+        private final List<Diff> vanished = new ArrayList<>();
+        private final List<Diff> increased = new ArrayList<>();
+        private final List<Diff> decreased = new ArrayList<>();
+
+        Result(long baseStatements, long candidateStatements, boolean exact) {
+            this.baseStatements = baseStatements;
+            this.candidateStatements = candidateStatements;
+            this.exact = exact;
+        }
+
+        /** 只在候选中出现的语句 */
+        public List<Diff> getAdded() {
+            return added;
+        }
+
+        /** 只在基线中出现的语句 */
+        public List<Diff> getVanished() {
+            return vanished;
+        }
+
+        /** 次数或行数增加超过阈值的语句 */
+        public List<Diff> getIncreased() {
+            return increased;
+        }
+
+        /** 次数或行数减少超过阈值的语句 */
+        public List<Diff> getDecreased() {
+            return decreased;
+        }
+
+        /** 两份日志的指纹数都未超过容量，次数与行数没有误差 */
+        public boolean isExact() {
+            return exact;
+        }
+
+        /** 出现了新语句，或已有语句的次数 / 行数增加超过阈值 */
+        public boolean isRegression() {
+            return !added.isEmpty() || !increased.isEmpty();
+        }
+
+        /** 命令行输出的文本报表 */
+        public String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("-- 基线 ").append(baseStatements).append(" 条语句，候选 ").append(candidateStatements)
+                    .append(" 条语句；新增 ").append(added.size()).append("，消失 ").append(vanished.size())
+                    .append("，增加 ").append(increased.size()).append("，减少 ").append(decreased.size()).append('\n');
+            if (!exact) sb.append("-- 指纹数超过统计容量，次数与行数可能有误差\n");
+            appendSection(sb, "新增语句", added);
+            appendSection(sb, "次数 / 行数增加", increased);
+            appendSection(sb, "消失语句", vanished);
+            appendSection(sb, "次数 / 行数减少", decreased);
+            return sb.toString();
+        }
+
+        private static void appendSection(StringBuilder sb, String title, List<Diff> diffs) {
+            if (diffs.isEmpty()) return;
+            sb.append('\n').append("-- ").append(title).append('\n');
+            sb.append(String.format("%10s %10s %10s %12s %12s  %-18s  %s%n",
+                    "基线次数", "候选次数", "次数变化", "基线行数", "候选行数", "指纹", "语句"));
+            for (Diff d : diffs) {
+                sb.append(String.format("%10d %10d %+10d %12d %12d  %-18s  %s%n",
+                        d.baseCount, d.candidateCount, d.countDelta(), d.baseRows, d.candidateRows,
+                        MlfSqlFingerprint.hex(d.hash), d.fingerprint));
+            }
+        }
+    }
+
+    /** 一个指纹在两次运行中的统计 */
+    public static final class Diff {
+
+        private final String fingerprint;
+        private final long hash;
+        private final long baseCount;
+        private final long candidateCount;
+        private final long baseRows;
+        private final long candidateRows;
+
+        Diff(MlfFingerprintReport.Entry base, MlfFingerprintReport.Entry candidate) {
+            MlfFingerprintReport.Entry any = candidate != null ? candidate : base;
+            this.fingerprint = any.getFingerprint();
+            this.hash = any.getHash();
+            this.baseCount = base == null ? 0 : base.getCount();
+            this.candidateCount = candidate == null ? 0 : candidate.getCount();
+            this.baseRows = base == null ? 0 : base.getRows() + base.getUpdates();
+            this.candidateRows = candidate == null ? 0 : candidate.getRows() + candidate.getUpdates();
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public long getBaseCount() {
+            return baseCount;
+        }
+
+        public long getCandidateCount() {
+            return candidateCount;
+        }
+
+        /** 基线中 Total 与 Updates 行数合计 */
+        public long getBaseRows() {
+            return baseRows;
+        }
+
+        /** 候选中 Total 与 Updates 行数合计 */
+        public long getCandidateRows() {
+            return candidateRows;
+        }
+
+        public long countDelta() {
+            return candidateCount - baseCount;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package wang.imold.mlf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL 指纹：把 Preparing 模板归一化为只反映语句结构的文本，用于按语句聚合统计。
+ * <ul>
+ *     <li>字符串、数字、? 统一替换为 ?，注释去掉</li>
+ *     <li>IN (...) 列表与 VALUES (...), (...) 多行只保留一份：IN (?+)、VALUES (...) ...</li>
+ *     <li>单词统一小写，token 之间的空白统一</li>
+ * </ul>
+ * 实例内部复用词法分析器，非线程安全。
+ */
+public final class MlfSqlFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** 模板到指纹的缓存上限，超出后整体清空 */
+    private static final int CACHE_LIMIT = 4096;
+
+    private final MlfSqlLexer lexer = new MlfSqlLexer();
+    private final StringBuilder sb = new StringBuilder(256);
+    private final Map<String, String> cache = new HashMap<>();
+
+    /** 同一模板通常重复出现，缓存其指纹避免重复分词 */
+    public String of(String sql) {
+        String key = cache.get(sql);
+        if (key == null) {
+            if (cache.size() == CACHE_LIMIT) cache.clear();
+            key = normalize(sql);
+            cache.put(sql, key);
+        }
+        return key;
+    }
+
+    /** 归一化后的指纹文本 */
+    public String normalize(CharSequence sql) {
+        MlfSqlLexer lx = lexer.reset(sql);
+        sb.setLength(0);
+        int n = lx.count();
+        byte prev = 0;
+        for (int i = 0; i < n; i++) {
+            byte type = lx.type(i);
+            if (type == MlfSqlLexer.LINE_COMMENT || type == MlfSqlLexer.BLOCK_COMMENT) continue;
+
+            if (type == MlfSqlLexer.LPAREN && lx.match(i) > i && prev == MlfSqlLexer.WORD) {
+                int kw = lx.keyword(previousCode(lx, i));
+                if (kw == MlfSqlLexer.KW_IN && isValueList(lx, i + 1, lx.match(i))) {
+                    sb.append(" (?+)");
+                    i = lx.match(i);
+                    prev = MlfSqlLexer.RPAREN;
+                    continue;
+                }
+            }
+            if (type == MlfSqlLexer.COMMA && prev == MlfSqlLexer.RPAREN && isValuesRow(lx, i)) {
+                // VALUES (...), (...) 只保留第一行
+                sb.append(" ...");
+                int j = i;
+                while (j + 1 < n && lx.type(j) == MlfSqlLexer.COMMA && lx.type(j + 1) == MlfSqlLexer.LPAREN
+                        && lx.match(j + 1) > j + 1) {
+                    j = lx.match(j + 1) + 1;
+                }
+                i = j - 1;
+                prev = MlfSqlLexer.RPAREN;
+                continue;
+            }
+
+            if (sb.length() > 0 && needsSpace(lx, prev, i)) sb.append(' ');
+            switch (type) {
+                case MlfSqlLexer.STRING:
+                case MlfSqlLexer.NUMBER:
+                case MlfSqlLexer.PLACEHOLDER:
+                    sb.append('?');
+                    break;
+                case MlfSqlLexer.WORD:
+                    appendWord(lx, i);
+                    break;
+                default:
+                    sb.append(lx.source(), lx.start(i), lx.end(i));
+            }
+            prev = type;
+        }
+        return sb.toString();
+    }
+
+    /** 指纹文本的 64 位 FNV-1a 哈希 */
+    public static long hash(CharSequence fingerprint) {
+        long h = FNV_OFFSET;
+        for (int i = 0, len = fingerprint.length(); i < len; i++) {
+            h = (h ^ fingerprint.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /** 形如 0x1a2b3c4d5e6f7a8b 的十六进制表示 */
+    public static String hex(long hash) {
+        String s = Long.toHexString(hash);
+        return "0x" + "0000000000000000".substring(s.length()) + s;
+    }
+
+    private void appendWord(MlfSqlLexer lx, int i) {
+        CharSequence src = lx.source();
+        for (int p = lx.start(i), e = lx.end(i); p < e; p++) {
+            char c = src.charAt(p);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+        }
+    }
+
+    private static boolean needsSpace(MlfSqlLexer lx, byte prev, int i) {
+        byte type = lx.type(i);
+        if (prev == MlfSqlLexer.LPAREN || type == MlfSqlLexer.RPAREN || type == MlfSqlLexer.COMMA) return false;
+        if (isDot(lx, i) || (prev == MlfSqlLexer.SYMBOL && isDot(lx, i - 1))) return false;
+        if (type != MlfSqlLexer.LPAREN || prev != MlfSqlLexer.WORD) return true;
+        // 函数调用、表名后的括号不加空格，IN / FROM / VALUES 等关键字后的括号保留空格
+        int word = previousCode(lx, i);
+        int kw = lx.keyword(word);
+        return (kw != MlfSqlLexer.KW_NONE && kw != MlfSqlLexer.KW_OTHER) || isWord(lx, word, "VALUES");
+    }
+
+    private static boolean isDot(MlfSqlLexer lx, int i) {
+        return lx.type(i) == MlfSqlLexer.SYMBOL && lx.end(i) - lx.start(i) == 1 && lx.source().charAt(lx.start(i)) == '.';
+    }
+
+    private static int previousCode(MlfSqlLexer lx, int i) {
+        int p = i - 1;
+        while (p >= 0 && (lx.type(p) == MlfSqlLexer.LINE_COMMENT || lx.type(p) == MlfSqlLexer.BLOCK_COMMENT)) p--;
+        return p;
+    }
+
+    /** [from, to) 中只有字面量、占位符、逗号与注释 */
+    private static boolean isValueList(MlfSqlLexer lx, int from, int to) {
+        if (from >= to) return false;
+        for (int i = from; i < to; i++) {
+            switch (lx.type(i)) {
+                case MlfSqlLexer.STRING:
+                case MlfSqlLexer.NUMBER:
+                case MlfSqlLexer.PLACEHOLDER:
+                case MlfSqlLexer.COMMA:
+                case MlfSqlLexer.LINE_COMMENT:
+                case MlfSqlLexer.BLOCK_COMMENT:
+                    break;
+                case MlfSqlLexer.WORD:
+                    // NULL、TRUE 等
+                    if (lx.keyword(i) == MlfSqlLexer.KW_OTHER || isWord(lx, i, "TRUE") || isWord(lx, i, "FALSE")) break;
+                    return false;
+                case MlfSqlLexer.SYMBOL:
+                    if (lx.end(i) - lx.start(i) == 1 && lx.source().charAt(lx.start(i)) == '-') break;
+                    return false;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /** comma 是 VALUES (...) 之后、紧跟下一行 (...) 的逗号 */
+    private static boolean isValuesRow(MlfSqlLexer lx, int comma) {
+        if (comma + 1 >= lx.count() || lx.type(comma + 1) != MlfSqlLexer.LPAREN) return false;
+        int open = lx.match(comma - 1);
+        if (open <= 0) return false;
+        int before = previousCode(lx, open);
+        return before >= 0 && isWord(lx, before, "VALUES");
+    }
+
+    private static boolean isWord(MlfSqlLexer lx, int i, String upper) {
+        if (lx.type(i) != MlfSqlLexer.WORD || lx.end(i) - lx.start(i) != upper.length()) return false;
+        CharSequence src = lx.source();
+        for (int k = 0; k < upper.length(); k++) {
+            if (MlfSqlLexer.toUpperAscii(src.charAt(lx.start(i) + k)) != upper.charAt(k)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,281 @@
+package wang.imold.mlf;
+
+import java.io.IOException;
+
+import static wang.imold.mlf.MlfSqlLexer.*;
+
+/**
+ * 基于 {@link MlfSqlLexer} token 流的 SQL 排版器。
+ * <p>
+ * 只在当前层级（括号深度为 0）识别 SELECT / FROM / WHERE 等子句，子查询按 token 区间递归下降，
+ * 结果经 {@link MlfSqlWriter} 直接写入输出，嵌套层级再深也不产生中间字符串。
+ */
+final class MlfSqlFormatter {
+
+    // 区段类型：普通 / SELECT 字段 / FROM（JOIN 换行）/ 条件子句（AND、OR 换行）
+    private static final int MODE_PLAIN = 0;
+    private static final int MODE_FIELD = 1;
+    private static final int MODE_FROM = 2;
+    private static final int MODE_CLAUSE = 3;
+
+    private final MlfSqlLexer lexer;
+    private final MlfFormatBudget budget = MlfFormatBudget.current();
+    private int steps;
+    private int maxLevel;
+
+    MlfSqlFormatter(MlfSqlLexer lexer) {
+        this.lexer = lexer;
+    }
+
+    void format(MlfSqlWriter out) throws IOException {
+        formatLevel(out, 0, lexer.count(), 0);
+    }
+
+    /** 上次 {@link #format} 中子查询的最大嵌套层数 */
+    int depth() {
+        return maxLevel / 2;
+    }
+
+    private void formatLevel(MlfSqlWriter out, int from, int to, int level) throws IOException {
+        if (level > maxLevel) maxLevel = level;
+        // 移除最外层包裹
+        if (to - from >= 2 && lexer.type(from) == LPAREN && lexer.match(from) == to - 1) {
+            from++;
+            to--;
+        }
+        int selectTok = findTopLevel(from, to, KW_SELECT);
+        if (selectTok == -1) {
+            out.indent(level);
+            writeRange(out, from, to, level, level, MODE_PLAIN);
+            return;
+        }
+
+        // WITH ... / INSERT INTO ... 等 SELECT 之前的部分
+        if (selectTok > from) {
+            out.indent(level);
+            writeRange(out, from, selectTok, level, level, MODE_PLAIN);
+            out.append('\n');
+        }
+
+        // 一次扫描定位当前层级的 FROM 与各子句起点
+        int fromTok = -1;
+        int firstClause = to;
+        for (int t = selectTok + 1; t < to; t++) {
+            if (lexer.type(t) == LPAREN && lexer.match(t) > t) {
+                t = lexer.match(t);
+                continue;
+            }
+            if (fromTok == -1 && lexer.keyword(t) == KW_FROM) {
+                fromTok = t;
+            } else if (clauseWidth(t, to) > 0) {
+                firstClause = t;
+                break;
+            }
+        }
+
+        // --- 1. SELECT ---
+        out.indent(level);
+        out.append("SELECT");
+        int selectEnd = fromTok != -1 ? fromTok : firstClause;
+        writeSelectFields(out, selectTok + 1, selectEnd, level);
+
+        // --- 2. FROM ---
+        if (fromTok != -1) {
+            out.newline(level);
+            out.append("FROM");
+            out.newline(level + 1);
+            writeRange(out, fromTok + 1, firstClause, level, level + 1, MODE_FROM);
+        }
+
+        // --- 3. WHERE / GROUP BY ... ---
+        int t = firstClause;
+        while (t < to) {
+            int width = clauseWidth(t, to);
+            int end = t + width;
+            while (end < to) {
+                if (lexer.type(end) == LPAREN && lexer.match(end) > end) {
+                    end = lexer.match(end) + 1;
+                    continue;
+                }
+                if (clauseWidth(end, to) > 0) break;
+                end++;
+            }
+            out.newline(level);
+            for (int k = t; k < t + width; k++) {
+                if (k > t) out.append(' ');
+                out.token(lexer, k);
+            }
+            out.newline(level + 1);
+            writeRange(out, t + width, end, level, level + 1, MODE_CLAUSE);
+            t = end;
+        }
+    }
+
+    // --- 字段处理逻辑 ---
+    private void writeSelectFields(MlfSqlWriter out, int from, int to, int level) throws IOException {
+        int code = nextFieldCode(from, to);
+        boolean first = true;
+        while (code != -1) {
+            int fieldEnd = nextTopLevelComma(code, to);
+            out.newline(level + 1);
+            writeRange(out, code, fieldEnd, level, level + 1, MODE_FIELD);
+
+            int nextCode = fieldEnd < to ? nextFieldCode(fieldEnd + 1, to) : -1;
+            if (nextCode != -1) out.append(',');
+            // 字段开头的注释归属上一个字段，第一个字段之前的注释归属第一个字段
+            if (first) appendComments(out, from, code);
+            appendComments(out, code, nextCode != -1 ? nextCode : to);
+            first = false;
+            code = nextCode;
+        }
+    }
+
+    /** 从 from 开始查找下一个含代码字段的首个代码 token，仅含注释的字段被跳过 */
+    private int nextFieldCode(int from, int to) {
+        int t = from;
+        while (t < to) {
+            int fieldEnd = nextTopLevelComma(t, to);
+            while (t < fieldEnd && lexer.type(t) == LINE_COMMENT) t++;
+            if (t < fieldEnd) return t;
+            t = fieldEnd + 1;
+        }
+        return -1;
+    }
+
+    /** 追加当前层级（括号外）的行注释 */
+    private void appendComments(MlfSqlWriter out, int from, int to) throws IOException {
+        for (int t = from; t < to; t++) {
+            if (lexer.type(t) == LPAREN && lexer.match(t) > t) {
+                t = lexer.match(t);
+            } else if (lexer.type(t) == LINE_COMMENT) {
+                out.append(' ');
+                out.token(lexer, t);
+            }
+        }
+    }
+
+    /**
+     * 按原始空白写出 token 区间：关键字大写，子查询递归展开，
+     * FROM 区段中 JOIN 换行，条件子句中 AND / OR 换行。
+     */
+    private void writeRange(MlfSqlWriter out, int from, int to, int level, int lineLevel, int mode) throws IOException {
+        int depth = 0;
+        boolean lineStart = true;
+        boolean forceSpace = false;
+        boolean inBetween = false;
+        for (int t = from; t < to; t++) {
+            if ((++steps & 1023) == 0) budget.checkpoint();
+            byte type = lexer.type(t);
+            if (type == LINE_COMMENT) {
+                // 字段的行注释由调用方写在逗号之后
+                if (mode == MODE_FIELD && depth == 0) continue;
+                // 行注释之后必须换行
+                if (!lineStart) out.append(' ');
+                out.token(lexer, t);
+                if (t + 1 < to) {
+                    out.newline(lineLevel);
+                    lineStart = true;
+                }
+                continue;
+            }
+            if (depth == 0 && mode == MODE_FROM && t > from && isJoinStart(t, to)) {
+                out.newline(lineLevel);
+                lineStart = true;
+            } else if (depth == 0 && mode == MODE_CLAUSE) {
+                int kw = lexer.keyword(t);
+                if (kw == KW_BETWEEN) {
+                    inBetween = true;
+                } else if (kw == KW_AND && inBetween) {
+                    inBetween = false;
+                } else if ((kw == KW_AND || kw == KW_OR) && t > from) {
+                    out.newline(lineLevel);
+                    out.token(lexer, t);
+                    forceSpace = true;
+                    lineStart = false;
+                    continue;
+                }
+            }
+
+            if (!lineStart && (forceSpace || lexer.spaceBefore(t))) out.append(' ');
+            forceSpace = false;
+            lineStart = false;
+
+            if (type == LPAREN) {
+                int close = lexer.match(t);
+                if (close > t && isSubQuery(t + 1, close)) {
+                    out.append("(\n");
+                    formatLevel(out, t + 1, close, level + 2);
+                    out.newline(level + 1);
+                    out.append(')');
+                    t = close;
+                    continue;
+                }
+                depth++;
+            } else if (type == RPAREN && depth > 0) {
+                depth--;
+            }
+            if (type == PLACEHOLDER) {
+                out.placeholder();
+            } else {
+                out.token(lexer, t);
+            }
+        }
+    }
+
+    private boolean isSubQuery(int from, int to) {
+        int t = from;
+        while (t < to && (lexer.type(t) == LINE_COMMENT || lexer.type(t) == BLOCK_COMMENT)) t++;
+        return t < to && lexer.keyword(t) == KW_SELECT;
+    }
+
+    private boolean isJoinStart(int t, int to) {
+        if (isJoinModifier(lexer.keyword(t - 1))) return false;
+        while (t < to && isJoinModifier(lexer.keyword(t))) t++;
+        return t < to && lexer.keyword(t) == KW_JOIN;
+    }
+
+    private static boolean isJoinModifier(int kw) {
+        return kw >= KW_LEFT && kw <= KW_CROSS;
+    }
+
+    /** 子句关键字占用的 token 数，非子句起点返回 0 */
+    private int clauseWidth(int t, int to) {
+        switch (lexer.keyword(t)) {
+            case KW_WHERE:
+            case KW_HAVING:
+            case KW_LIMIT:
+                return 1;
+            case KW_GROUP:
+            case KW_ORDER:
+            case KW_CONNECT:
+                return t + 1 < to && lexer.keyword(t + 1) == KW_BY ? 2 : 0;
+            case KW_START:
+                return t + 1 < to && lexer.keyword(t + 1) == KW_WITH ? 2 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private int findTopLevel(int from, int to, int keyword) {
+        for (int t = from; t < to; t++) {
+            if (lexer.type(t) == LPAREN && lexer.match(t) > t) {
+                t = lexer.match(t);
+            } else if (lexer.keyword(t) == keyword) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private int nextTopLevelComma(int from, int to) {
+        for (int t = from; t < to; t++) {
+            byte type = lexer.type(t);
+            if (type == LPAREN && lexer.match(t) > t && lexer.match(t) < to) {
+                t = lexer.match(t);
+            } else if (type == COMMA) {
+                return t;
+            }
+        }
+        return to;
+    }
+}
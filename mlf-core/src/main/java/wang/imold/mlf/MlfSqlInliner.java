@@ -0,0 +1,107 @@
+package wang.imold.mlf;
+
+/**
+ * 日志框架集成的公共逻辑：按线程暂存 MyBatis 的 Preparing 模板，遇到同一线程的 Parameters 时把参数填入模板，
+ * 输出一行可直接执行的 SQL，日志中不必再保留两条 DEBUG 行。
+ * <p>
+ * 只按线程名配对（MyBatis 在同一线程上先后输出 Preparing 与 Parameters），键直接使用日志事件中的线程名；
+ * 模板保留到同一线程的 Total / Updates 结果行，BATCH 执行器的每一条 Parameters 都能填充；
+ * 参数个数与模板的占位符个数不一致时（例如 Preparing 行被丢弃后拿到了旧模板）不填充，保留原始消息。
+ * 非 MyBatis 消息只检查开头的十几个字符，填充参数时复用线程内的缓冲区并直接写入调用方的 StringBuilder。线程安全。
+ */
+public final class MlfSqlInliner {
+
+    private static final String PREPARING = "Preparing: ";
+    private static final String PARAMETERS = "Parameters: ";
+    /** 结果行必须以 MyBatis 的 "<==" 开头，其他消息开头的 "Total: " 不算 */
+    private static final String RESULT = "<==";
+    private static final String TOTAL = "Total: ";
+    private static final String UPDATES = "Updates: ";
+    /** 标记必须出现在消息开头（"==>  Preparing: "），避免误判其他消息或 SQL 正文中的同名文本 */
+    private static final int MARK_LIMIT = 16;
+
+    /** 同时跟踪的线程数 */
+    public static final int DEFAULT_MAX_THREADS = 1024;
+    /** 每个线程暂存的 Preparing 数 */
+    public static final int DEFAULT_RING_SIZE = 4;
+
+    private static final MlfSqlInliner SHARED = new MlfSqlInliner(DEFAULT_MAX_THREADS, DEFAULT_RING_SIZE);
+
+    private final MlfSqlPairing pairing;
+    private final MlfLogParser parser = new MlfLogParser();
+
+    public MlfSqlInliner(int maxThreads, int ringSize) {
+        this.pairing = new MlfSqlPairing(maxThreads, ringSize);
+    }
+
+    /** 同一进程中过滤器与转换器共用的实例 */
+    public static MlfSqlInliner shared() {
+        return SHARED;
+    }
+
+    /** 消息是否为 Preparing 行 */
+    public static boolean isPreparing(String message) {
+        return markEnd(message, PREPARING) >= 0;
+    }
+
+    /** 消息是否为 Parameters 行 */
+    public static boolean isParameters(String message) {
+        return markEnd(message, PARAMETERS) >= 0;
+    }
+
+    /**
+     * 消息为 Preparing 行时暂存其中的模板并返回 true
+     */
+    public boolean preparing(String thread, String message) {
+        int from = markEnd(message, PREPARING);
+        if (from < 0) return false;
+        pairing.preparing(thread, message.substring(from).trim());
+        return true;
+    }
+
+    /**
+     * 消息为 Total / Updates 结果行时移除同一线程最近的模板并返回 true；嵌套查询的外层模板仍然保留
+     */
+    public boolean completed(String thread, String message) {
+        if (!message.startsWith(RESULT) || markEnd(message, TOTAL) < 0 && markEnd(message, UPDATES) < 0) return false;
+        pairing.complete(thread);
+        return true;
+    }
+
+    /**
+     * 消息为 Parameters 行且同一线程有暂存的模板、参数个数与占位符个数一致时，把可执行 SQL 追加到 out 并返回 true；
+     * 否则不写入任何内容
+     *
+     * @param pretty 为 true 时输出排版后的多行 SQL
+     */
+    public boolean appendExecutable(String thread, String message, boolean pretty, StringBuilder out) {
+        int from = markEnd(message, PARAMETERS);
+        if (from < 0) return false;
+        String sql = pairing.peek(thread);
+        if (sql == null) return false;
+        int mark = out.length();
+        try {
+            return parser.appendStatement(sql, message, from, pretty, out);
+        } catch (RuntimeException e) {
+            // 日志输出不能因为格式化失败而中断，退回原始消息
+            out.setLength(mark);
+            return false;
+        }
+    }
+
+    /** 当前暂存了 Preparing 的线程数 */
+    public int pendingThreads() {
+        return pairing.size();
+    }
+
+    /** 标记前只允许 MyBatis 的 "==>" / "<==" 前缀与空白，长消息不会被整体扫描 */
+    private static int markEnd(String message, String mark) {
+        int limit = Math.min(MARK_LIMIT, message.length() - mark.length());
+        for (int i = 0; i <= limit; i++) {
+            if (message.startsWith(mark, i)) return i + mark.length();
+            char c = message.charAt(i);
+            if (c != '=' && c != '>' && c != '<' && c != ' ' && c != '\t') return -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+package wang.imold.mlf;
+
+/**
+ * 格式化后的 SQL 模板：排版结果中保留 ? 占位符，并记录每个占位符在排版结果中的位置，
+ * 同一模板再次出现时只需把新参数拼接进去，无需重新解析和排版。
+ */
+public final class MlfSqlLayout {
+
+    private final String text;
+    private final int[] placeholders;
+
+    MlfSqlLayout(String text, int[] placeholders) {
+        this.text = text;
+        this.placeholders = placeholders;
+    }
+
+    /** 带 ? 占位符的排版结果 */
+    public String text() {
+        return text;
+    }
+
+    public int placeholderCount() {
+        return placeholders.length;
+    }
+
+    /** 缓存权重（近似字符数） */
+    int weight() {
+        return text.length() + placeholders.length * 2;
+    }
+
+    /**
+     * 依次用参数替换占位符，参数不足时保留 ?
+     */
+    public String splice(MlfParamBuffer params) {
+        if (params.count() == 0 || placeholders.length == 0) return text;
+        StringBuilder sb = new StringBuilder(text.length() + params.charCount() + (params.count() << 1));
+        splice(params, sb);
+        return sb.toString();
+    }
+
+    public void splice(MlfParamBuffer params, StringBuilder sb) {
+        int last = 0;
+        int n = Math.min(placeholders.length, params.count());
+        for (int i = 0; i < n; i++) {
+            int pos = placeholders[i];
+            sb.append(text, last, pos);
+            params.appendLiteral(sb, i);
+            last = pos + 1;
+        }
+        sb.append(text, last, text.length());
+    }
+}
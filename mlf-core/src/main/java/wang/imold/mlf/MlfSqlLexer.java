@@ -0,0 +1,322 @@
+package wang.imold.mlf;
+
+import java.util.Arrays;
+
+/**
+ * 单遍 SQL 词法分析器：一次扫描把 SQL 切成 token，偏移量存放在基本类型数组中，
+ * 关键字通过预计算的哈希表识别，后续所有格式化阶段都只读取这份 token 流。
+ * <p>
+ * 实例可通过 {@link #reset(CharSequence)} 重复使用，非线程安全。
+ */
+public final class MlfSqlLexer {
+
+    // token 类型
+    public static final byte WORD = 1;          // 标识符 / 关键字
+    public static final byte QUOTED = 2;        // "ident" / `ident`
+    public static final byte STRING = 3;        // 'literal'
+    public static final byte NUMBER = 4;
+    public static final byte LINE_COMMENT = 5;  // -- ...
+    public static final byte BLOCK_COMMENT = 6; // /* ... */
+    public static final byte LPAREN = 7;
+    public static final byte RPAREN = 8;
+    public static final byte COMMA = 9;
+    public static final byte PLACEHOLDER = 10;  // ?
+    public static final byte SYMBOL = 11;
+
+    // 关键字编号（0 表示非关键字）
+    public static final int KW_NONE = 0;
+    public static final int KW_SELECT = 1;
+    public static final int KW_FROM = 2;
+    public static final int KW_WHERE = 3;
+    public static final int KW_GROUP = 4;
+    public static final int KW_HAVING = 5;
+    public static final int KW_ORDER = 6;
+    public static final int KW_BY = 7;
+    public static final int KW_CONNECT = 8;
+    public static final int KW_START = 9;
+    public static final int KW_WITH = 10;
+    public static final int KW_LIMIT = 11;
+    public static final int KW_AND = 12;
+    public static final int KW_OR = 13;
+    public static final int KW_ON = 14;
+    public static final int KW_JOIN = 15;
+    public static final int KW_LEFT = 16;
+    public static final int KW_RIGHT = 17;
+    public static final int KW_INNER = 18;
+    public static final int KW_FULL = 19;
+    public static final int KW_OUTER = 20;
+    public static final int KW_CROSS = 21;
+    public static final int KW_BETWEEN = 22;
+    public static final int KW_IN = 23;
+    public static final int KW_OTHER = 24; // 仅需大写的函数/关键字
+
+    private static final String[] KEYWORDS = {
+            "SELECT", "FROM", "WHERE", "GROUP", "HAVING", "ORDER", "BY", "CONNECT", "START", "WITH",
+            "LIMIT", "AND", "OR", "ON", "JOIN", "LEFT", "RIGHT", "INNER", "FULL", "OUTER", "CROSS",
+            "BETWEEN", "IN",
+            // 需要大写的常用关键字和函数
+            "COUNT", "SUM", "AVG", "MIN", "MAX", "DECODE", "NVL", "TO_DATE", "TO_CHAR",
+            "EXISTS", "DISTINCT", "AS", "NULL", "IS", "LIKE", "NOT", "ASC", "DESC"
+    };
+
+    // 开放寻址哈希表：槽位存 KEYWORDS 下标 + 1
+    private static final int TABLE_MASK = 127;
+    private static final int[] KEYWORD_TABLE = new int[TABLE_MASK + 1];
+
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            String kw = KEYWORDS[i];
+            int slot = hash(kw, 0, kw.length()) & TABLE_MASK;
+            while (KEYWORD_TABLE[slot] != 0) slot = (slot + 1) & TABLE_MASK;
+            KEYWORD_TABLE[slot] = i + 1;
+        }
+    }
+
+    private CharSequence src = "";
+    private int count;
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] keywords = new int[64];
+    private int[] matches = new int[64];
+    private boolean[] spaceBefore = new boolean[64];
+    private int[] parenStack = new int[16];
+
+    public MlfSqlLexer reset(CharSequence sql) {
+        return reset(sql, MlfFormatBudget.current());
+    }
+
+    /** 按指定预算分词，不能退化的阶段传入 {@link MlfFormatBudget#UNLIMITED} */
+    MlfSqlLexer reset(CharSequence sql, MlfFormatBudget budget) {
+        this.src = sql;
+        this.count = 0;
+        tokenize(budget);
+        return this;
+    }
+
+    public CharSequence source() {
+        return src;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public byte type(int i) {
+        return types[i];
+    }
+
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int end(int i) {
+        return ends[i];
+    }
+
+    /** 关键字编号，非关键字为 {@link #KW_NONE} */
+    public int keyword(int i) {
+        return keywords[i];
+    }
+
+    /** 括号 token 对应的另一半下标，不匹配时为 -1 */
+    public int match(int i) {
+        return matches[i];
+    }
+
+    public boolean spaceBefore(int i) {
+        return spaceBefore[i];
+    }
+
+    private void tokenize(MlfFormatBudget budget) {
+        CharSequence s = src;
+        int len = s.length();
+        int depth = 0;
+        boolean space = false;
+        int i = 0;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            int start = i;
+            byte type;
+            if (c == '-' && i + 1 < len && s.charAt(i + 1) == '-') {
+                type = LINE_COMMENT;
+                while (i < len && s.charAt(i) != '\n' && s.charAt(i) != '\r') i++;
+            } else if (c == '/' && i + 1 < len && s.charAt(i + 1) == '*') {
+                type = BLOCK_COMMENT;
+                i += 2;
+                while (i < len && !(s.charAt(i) == '*' && i + 1 < len && s.charAt(i + 1) == '/')) i++;
+                i = Math.min(len, i + 2);
+            } else if (c == '\'') {
+                type = STRING;
+                i = skipQuoted(s, i, '\'');
+            } else if (c == '"' || c == '`') {
+                type = QUOTED;
+                i = skipQuoted(s, i, c);
+            } else if (isDigit(c) || (c == '.' && i + 1 < len && isDigit(s.charAt(i + 1)))) {
+                type = NUMBER;
+                i = skipNumber(s, i);
+            } else if (isWordChar(c)) {
+                type = WORD;
+                while (i < len && isWordChar(s.charAt(i))) i++;
+            } else if (c == '(') {
+                type = LPAREN;
+                i++;
+            } else if (c == ')') {
+                type = RPAREN;
+                i++;
+            } else if (c == ',') {
+                type = COMMA;
+                i++;
+            } else if (c == '?') {
+                type = PLACEHOLDER;
+                i++;
+            } else {
+                type = SYMBOL;
+                i++;
+                if (i < len && isTwoCharOperator(c, s.charAt(i))) i++;
+            }
+
+            int t = add(type, start, i, space);
+            space = false;
+            if ((t & 1023) == 1023) budget.checkpoint();
+            if (type == WORD && (t == 0 || !isDotBefore(t))) {
+                keywords[t] = lookupKeyword(s, start, i);
+            } else if (type == LPAREN) {
+                if (depth == parenStack.length) parenStack = grow(parenStack);
+                parenStack[depth++] = t;
+            } else if (type == RPAREN && depth > 0) {
+                int open = parenStack[--depth];
+                matches[open] = t;
+                matches[t] = open;
+            }
+        }
+    }
+
+    private boolean isDotBefore(int t) {
+        return types[t - 1] == SYMBOL && !spaceBefore[t]
+                && ends[t - 1] - starts[t - 1] == 1 && src.charAt(starts[t - 1]) == '.';
+    }
+
+    private int add(byte type, int start, int end, boolean space) {
+        if (count == types.length) {
+            int n = count << 1;
+            types = Arrays.copyOf(types, n);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            keywords = Arrays.copyOf(keywords, n);
+            matches = Arrays.copyOf(matches, n);
+            spaceBefore = Arrays.copyOf(spaceBefore, n);
+        }
+        int t = count++;
+        types[t] = type;
+        starts[t] = start;
+        ends[t] = end;
+        keywords[t] = KW_NONE;
+        matches[t] = -1;
+        spaceBefore[t] = space;
+        return t;
+    }
+
+    private static int skipQuoted(CharSequence s, int i, char quote) {
+        int len = s.length();
+        i++;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c == '\\' && quote != '`' && i + 1 < len) {
+                i += 2;
+            } else if (c == quote) {
+                // '' 转义
+                if (i + 1 < len && s.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return len;
+    }
+
+    private static int skipNumber(CharSequence s, int i) {
+        int len = s.length();
+        while (i < len) {
+            char c = s.charAt(i);
+            if (isDigit(c) || c == '.') {
+                i++;
+            } else if ((c == 'e' || c == 'E') && i + 1 < len
+                    && (isDigit(s.charAt(i + 1)) || ((s.charAt(i + 1) == '-' || s.charAt(i + 1) == '+')
+                    && i + 2 < len && isDigit(s.charAt(i + 2))))) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        // 形如 1abc 的标识符按单词处理
+        while (i < len && isWordChar(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isTwoCharOperator(char a, char b) {
+        switch (a) {
+            case '<': return b == '=' || b == '>';
+            case '>': case '!': return b == '=';
+            case '|': return b == '|';
+            case ':': return b == ':' || b == '=';
+            default: return false;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isWordChar(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c)
+                    || c == '_' || c == '$' || c == '#' || c == '@';
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    static char toUpperAscii(char c) {
+        return (c >= 'a' && c <= 'z') ? (char) (c - 32) : c;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = h * 31 + toUpperAscii(s.charAt(i));
+        return h ^ (h >>> 7);
+    }
+
+    private static int lookupKeyword(CharSequence s, int start, int end) {
+        int len = end - start;
+        if (len < 2 || len > 8) return KW_NONE;
+        int slot = hash(s, start, end) & TABLE_MASK;
+        int idx;
+        while ((idx = KEYWORD_TABLE[slot]) != 0) {
+            String kw = KEYWORDS[idx - 1];
+            if (kw.length() == len && equalsIgnoreCaseAscii(kw, s, start)) {
+                return idx <= KW_IN ? idx : KW_OTHER;
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return KW_NONE;
+    }
+
+    private static boolean equalsIgnoreCaseAscii(String kw, CharSequence s, int start) {
+        for (int i = 0; i < kw.length(); i++) {
+            if (kw.charAt(i) != toUpperAscii(s.charAt(start + i))) return false;
+        }
+        return true;
+    }
+
+    private static int[] grow(int[] a) {
+        return Arrays.copyOf(a, a.length << 1);
+    }
+}
@@ -0,0 +1,92 @@
+package wang.imold.mlf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 逐行到达的日志中，为 Parameters 找到同一「线程名 + Mapper 日志名」下最近的 Preparing 模板。
+ * <p>
+ * 模板在 Parameters 之后仍然保留，BATCH / REUSE 执行器一条 Preparing 之后的多条 Parameters 都能配对；
+ * 直到同一键的下一条 Preparing 顶替它，或 Total / Updates 表示这条语句已执行完。
+ * <p>
+ * 每个键只保留一个容量为 ringSize 的环形缓冲，键的数量不超过 maxKeys（最久未使用的先淘汰），
+ * 因此不会因为只有 Preparing、没有 Parameters 的语句而无限增长。线程安全。
+ */
+public final class MlfSqlPairing {
+
+    private final int ringSize;
+    private final Map<String, Ring> rings;
+
+    public MlfSqlPairing(int maxKeys, int ringSize) {
+        if (maxKeys < 1 || ringSize < 1) throw new IllegalArgumentException("容量必须大于 0");
+        this.ringSize = ringSize;
+        this.rings = new LinkedHashMap<String, Ring>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /** 记录 key 下的一条 Preparing 模板，缓冲已满时覆盖最旧的一条 */
+    public synchronized void preparing(String key, String sql) {
+        Ring ring = rings.get(key);
+        if (ring == null) {
+            ring = new Ring(ringSize);
+            rings.put(key, ring);
+        }
+        ring.push(sql);
+    }
+
+    /** key 下最近的一条 Preparing 模板，不移除；没有时返回 null */
+    public synchronized String peek(String key) {
+        Ring ring = rings.get(key);
+        return ring == null ? null : ring.peek();
+    }
+
+    /** key 下最近的语句已执行完（Total / Updates），移除它的模板 */
+    public synchronized void complete(String key) {
+        Ring ring = rings.get(key);
+        if (ring == null) return;
+        ring.pop();
+        if (ring.size == 0) rings.remove(key);
+    }
+
+    /** 当前缓存的键数 */
+    public synchronized int size() {
+        return rings.size();
+    }
+
+    public synchronized void clear() {
+        rings.clear();
+    }
+
+    private static final class Ring {
+        final String[] items;
+        int head;
+        int size;
+
+        Ring(int capacity) {
+            items = new String[capacity];
+        }
+
+        void push(String sql) {
+            items[head] = sql;
+            head = (head + 1) % items.length;
+            if (size < items.length) size++;
+        }
+
+        String peek() {
+            return size == 0 ? null : items[(head - 1 + items.length) % items.length];
+        }
+
+        String pop() {
+            if (size == 0) return null;
+            head = (head - 1 + items.length) % items.length;
+            String sql = items[head];
+            items[head] = null;
+            size--;
+            return sql;
+        }
+    }
+}
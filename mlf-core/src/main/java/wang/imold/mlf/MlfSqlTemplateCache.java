@@ -0,0 +1,94 @@
+package wang.imold.mlf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 以原始 Preparing 模板为键的排版结果缓存，按权重（字符数）做 LRU 淘汰，并统计命中/未命中次数。
+ */
+public final class MlfSqlTemplateCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, MlfSqlLayout> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long weight;
+
+    public MlfSqlTemplateCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * 查找模板的排版结果，未命中时用 loader 计算后放入缓存。
+     * loader 在锁外执行，多个线程同时未命中同一模板时可能重复计算，但结果一致。
+     */
+    public MlfSqlLayout get(String template, Function<String, MlfSqlLayout> loader) {
+        MlfSqlLayout layout;
+        synchronized (this) {
+            layout = entries.get(template);
+        }
+        if (layout != null) {
+            hits.increment();
+            return layout;
+        }
+        misses.increment();
+        layout = loader.apply(template);
+        long entryWeight = weightOf(template, layout);
+        // 单个模板超过总容量的 1/8 时不缓存，避免冲掉所有常用模板
+        if (entryWeight <= maxWeight >> 3) put(template, layout, entryWeight);
+        return layout;
+    }
+
+    private synchronized void put(String template, MlfSqlLayout layout, long entryWeight) {
+        MlfSqlLayout old = entries.put(template, layout);
+        weight += entryWeight;
+        if (old != null) weight -= weightOf(template, old);
+        Iterator<Map.Entry<String, MlfSqlLayout>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<String, MlfSqlLayout> eldest = it.next();
+            weight -= weightOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static long weightOf(String template, MlfSqlLayout layout) {
+        return template.length() + layout.weight();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    @Override
+    public String toString() {
+        long h = hitCount(), m = missCount();
+        return String.format("模板缓存：%d 条，命中 %d，未命中 %d，命中率 %.1f%%",
+                size(), h, m, h + m == 0 ? 0.0 : h * 100.0 / (h + m));
+    }
+}
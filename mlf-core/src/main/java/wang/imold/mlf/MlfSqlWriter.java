@@ -0,0 +1,73 @@
+package wang.imold.mlf;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 带缩进能力的输出器：所有格式化结果直接写入目标 {@link Appendable}，每个字符只写一次，
+ * 并记录已写出的字符数与每个 ? 占位符的输出位置。
+ */
+final class MlfSqlWriter {
+
+    private static final String INDENT = "    ";
+
+    private final Appendable out;
+    private int length;
+    private int[] placeholders = new int[8];
+    private int placeholderCount;
+
+    MlfSqlWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /** 已写出的字符数 */
+    int length() {
+        return length;
+    }
+
+    /** 所有 ? 占位符在输出中的位置 */
+    int[] placeholders() {
+        return Arrays.copyOf(placeholders, placeholderCount);
+    }
+
+    void indent(int level) throws IOException {
+        for (int i = 0; i < level; i++) out.append(INDENT);
+        length += level * INDENT.length();
+    }
+
+    /** 换行并缩进到指定层级 */
+    void newline(int level) throws IOException {
+        out.append('\n');
+        length++;
+        indent(level);
+    }
+
+    void append(char c) throws IOException {
+        out.append(c);
+        length++;
+    }
+
+    void append(String s) throws IOException {
+        out.append(s);
+        length += s.length();
+    }
+
+    /** 写出 ? 占位符并记录其位置 */
+    void placeholder() throws IOException {
+        if (placeholderCount == placeholders.length) placeholders = Arrays.copyOf(placeholders, placeholderCount << 1);
+        placeholders[placeholderCount++] = length;
+        append('?');
+    }
+
+    /** 写出 token，关键字统一大写 */
+    void token(MlfSqlLexer lexer, int i) throws IOException {
+        CharSequence src = lexer.source();
+        int s = lexer.start(i), e = lexer.end(i);
+        if (lexer.keyword(i) != MlfSqlLexer.KW_NONE) {
+            for (int p = s; p < e; p++) out.append(MlfSqlLexer.toUpperAscii(src.charAt(p)));
+        } else {
+            out.append(src, s, e);
+        }
+        length += e - s;
+    }
+}
@@ -0,0 +1,148 @@
+package wang.imold.mlf;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 格式化流水线各阶段的累计计数与耗时，全局共享、线程安全。
+ * <p>
+ * 阶段：{@link #EXTRACT} 从日志文本中提取 Preparing 模板，{@link #PARAMETERS} 解析 Parameters 原文，
+ * {@link #LAYOUT} 对模板做词法分析与分层排版（关键字大写在同一遍中完成，模板缓存命中时不经过此阶段），
+ * {@link #SPLICE} 把参数填入占位符。
+ * <p>
+ * mlf-core 以 Java 8 为目标，不直接依赖 jdk.jfr；运行在 Java 11+ 上的宿主（如 IDE 插件）
+ * 通过 {@link #setListener} 把每次阶段记录转为 JFR 事件。
+ */
+public final class MlfStageStats {
+
+    public static final int EXTRACT = 0;
+    public static final int PARAMETERS = 1;
+    public static final int LAYOUT = 2;
+    public static final int SPLICE = 3;
+
+    private static final String[] NAMES = {"提取模板", "解析参数", "排版模板", "填充参数"};
+
+    private static final LongAdder[] COUNTS = adders();
+    private static final LongAdder[] NANOS = adders();
+    private static final LongAdder[] CHARS = adders();
+    private static final LongAdder[] PARAMS = adders();
+    private static final LongAccumulator[] MAX_NANOS = accumulators();
+    private static final LongAccumulator[] MAX_DEPTH = accumulators();
+
+    private static volatile Listener listener;
+
+    /** 阶段开始与结束时回调，在执行格式化的线程上调用，应尽量轻量 */
+    public interface Listener {
+        /**
+         * 阶段开始，例如开始计时一个 JFR 事件
+         *
+         * @param start 本次执行的 {@link System#nanoTime()}，结束时原样传给 {@link #stage}，可用来配对
+         */
+        default void begin(int stage, long start) {
+        }
+
+        /**
+         * 阶段结束
+         *
+         * @param stage      阶段，见 {@link #EXTRACT} 等常量
+         * @param start      与 {@link #begin} 收到的相同；阶段开始后才设置的监听器不会收到对应的 begin
+         * @param nanos      耗时（纳秒）
+         * @param inputChars 输入字符数
+         * @param paramCount 参数个数
+         * @param depth      子查询嵌套层数，只有 {@link #LAYOUT} 阶段有意义
+         */
+        void stage(int stage, long start, long nanos, int inputChars, int paramCount, int depth);
+    }
+
+    private MlfStageStats() {
+    }
+
+    public static void setListener(Listener l) {
+        listener = l;
+    }
+
+    public static int stageCount() {
+        return NAMES.length;
+    }
+
+    public static String name(int stage) {
+        return NAMES[stage];
+    }
+
+    /**
+     * 开始一次阶段执行，返回开始时间，结束时传给 {@link #record}
+     */
+    static long begin(int stage) {
+        long start = System.nanoTime();
+        Listener l = listener;
+        if (l != null) l.begin(stage, start);
+        return start;
+    }
+
+    /**
+     * 记录一次阶段执行
+     *
+     * @param start {@link #begin} 返回的开始时间
+     */
+    static void record(int stage, long start, int inputChars, int paramCount, int depth) {
+        long nanos = System.nanoTime() - start;
+        COUNTS[stage].increment();
+        NANOS[stage].add(nanos);
+        CHARS[stage].add(inputChars);
+        PARAMS[stage].add(paramCount);
+        MAX_NANOS[stage].accumulate(nanos);
+        if (depth > 0) MAX_DEPTH[stage].accumulate(depth);
+        Listener l = listener;
+        if (l != null) l.stage(stage, start, nanos, inputChars, paramCount, depth);
+    }
+
+    public static long count(int stage) {
+        return COUNTS[stage].sum();
+    }
+
+    public static long totalNanos(int stage) {
+        return NANOS[stage].sum();
+    }
+
+    public static long maxNanos(int stage) {
+        return MAX_NANOS[stage].get();
+    }
+
+    public static void reset() {
+        for (int i = 0; i < NAMES.length; i++) {
+            COUNTS[i].reset();
+            NANOS[i].reset();
+            CHARS[i].reset();
+            PARAMS[i].reset();
+            MAX_NANOS[i].reset();
+            MAX_DEPTH[i].reset();
+        }
+    }
+
+    /** 每个阶段一行：次数、总耗时、平均 / 最大耗时、平均输入字符数与参数个数 */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            long n = COUNTS[i].sum();
+            long nanos = NANOS[i].sum();
+            sb.append(String.format("%s：%d 次，共 %.1f ms，平均 %.1f µs，最大 %.1f µs，平均 %d 字符 / %d 个参数",
+                    NAMES[i], n, nanos / 1e6, n == 0 ? 0.0 : nanos / 1e3 / n, MAX_NANOS[i].get() / 1e3,
+                    n == 0 ? 0 : CHARS[i].sum() / n, n == 0 ? 0 : PARAMS[i].sum() / n));
+            if (i == LAYOUT) sb.append("，最深嵌套 ").append(MAX_DEPTH[i].get()).append(" 层");
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] a = new LongAdder[NAMES.length];
+        for (int i = 0; i < a.length; i++) a[i] = new LongAdder();
+        return a;
+    }
+
+    private static LongAccumulator[] accumulators() {
+        LongAccumulator[] a = new LongAccumulator[NAMES.length];
+        for (int i = 0; i < a.length; i++) a[i] = new LongAccumulator(Math::max, 0);
+        return a;
+    }
+}
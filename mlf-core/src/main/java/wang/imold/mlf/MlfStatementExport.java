@@ -0,0 +1,204 @@
+package wang.imold.mlf;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 提取出的语句的紧凑导出格式，交给其他工具或同事离线分析，读回时再格式化。
+ * <p>
+ * 文件以 {@code MLFX} 与 1 字节标志（bit0 = Deflate 压缩）开头，之后是一个个数据块，每块最多
+ * {@value #BLOCK_STATEMENTS} 条语句。块的内容是一帧 {@link MlfFrameCodec}：SQL 模板、线程名与
+ * Mapper 日志名按字典在整个文件中只写一次，时间为差值，参数按 {@link MlfParamCodec} 类型化变长编码。
+ * 压缩时每块为 4 字节原始长度 + 4 字节压缩后长度 + Deflate 数据，解压后同样是一帧。
+ */
+public final class MlfStatementExport {
+
+    public static final byte[] MAGIC = {'M', 'L', 'F', 'X'};
+
+    private static final int FLAG_DEFLATE = 1;
+
+    /** 每块最多的语句数 */
+    private static final int BLOCK_STATEMENTS = 4096;
+    /** 编码后超过该字节数时提前结束当前块 */
+    private static final int BLOCK_BYTES = 1 << 20;
+
+    private MlfStatementExport() {
+    }
+
+    /** 写出方，非线程安全 */
+    public static final class Writer implements Closeable {
+
+        private final OutputStream out;
+        private final MlfFrameCodec.Encoder encoder = new MlfFrameCodec.Encoder();
+        private final MlfParamBuffer params = new MlfParamBuffer();
+        private final Deflater deflater;
+        private final Bytes frame;
+        private byte[] compressed;
+        private boolean blockStarted;
+        private boolean finished;
+        private long count;
+
+        /**
+         * @param compress 是否按块 Deflate 压缩
+         */
+        public Writer(OutputStream out, boolean compress) throws IOException {
+            this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 1 << 16);
+            this.deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+            this.frame = compress ? new Bytes() : null;
+            this.compressed = compress ? new byte[8192] : null;
+            this.out.write(MAGIC);
+            this.out.write(compress ? FLAG_DEFLATE : 0);
+        }
+
+        /** 追加一条从日志中提取的语句 */
+        public void add(MlfStatementRecord record) throws IOException {
+            if (finished) throw new IllegalStateException("导出已结束");
+            params.clear();
+            if (record.getParameters() != null) MlfParamScanner.scan(record.getParameters(), 0, params);
+            long time = toMillis(record.getStartTime());
+            if (!blockStarted) {
+                encoder.begin(time);
+                blockStarted = true;
+            }
+            int rows = record.getUpdates() >= 0 ? record.getUpdates() : record.getTotal();
+            encoder.add(record.getSql(), record.getThread(), record.getLogger(), time, record.getLatencyMicros(),
+                    rows, params);
+            count++;
+            if (encoder.count() >= BLOCK_STATEMENTS || encoder.size() >= BLOCK_BYTES) flush();
+        }
+
+        /** 已写出的语句数 */
+        public long count() {
+            return count;
+        }
+
+        /** 写出最后一块并刷新输出流，之后不能再追加；不关闭输出流 */
+        public void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            flush();
+            out.flush();
+        }
+
+        private void flush() throws IOException {
+            if (!blockStarted) return;
+            blockStarted = false;
+            if (deflater == null) {
+                encoder.writeTo(out);
+            } else {
+                frame.reset();
+                encoder.writeTo(frame);
+                deflater.reset();
+                deflater.setInput(frame.buffer(), 0, frame.size());
+                deflater.finish();
+                int n = 0;
+                while (!deflater.finished()) {
+                    if (n == compressed.length) compressed = Arrays.copyOf(compressed, n << 1);
+                    n += deflater.deflate(compressed, n, compressed.length - n);
+                }
+                writeInt(frame.size());
+                writeInt(n);
+                out.write(compressed, 0, n);
+            }
+        }
+
+        private void writeInt(int v) throws IOException {
+            out.write(v >>> 24);
+            out.write(v >>> 16);
+            out.write(v >>> 8);
+            out.write(v);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                if (deflater != null) deflater.end();
+                out.close();
+            }
+        }
+    }
+
+    /** 读取方，非线程安全 */
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final MlfFrameCodec.Decoder decoder = new MlfFrameCodec.Decoder();
+        private final Inflater inflater;
+        private byte[] compressed;
+        private byte[] frame;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 1 << 16));
+            byte[] magic = new byte[MAGIC.length];
+            this.in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("不是 MyBatis 语句导出文件");
+            int flags = this.in.readUnsignedByte();
+            this.inflater = (flags & FLAG_DEFLATE) != 0 ? new Inflater() : null;
+        }
+
+        /** 读取下一块语句，文件结束时返回 null */
+        public List<MlfCapturedStatement> read() throws IOException {
+            if (inflater == null) return decoder.read(in);
+            int rawLength;
+            try {
+                rawLength = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            int length = in.readInt();
+            if (rawLength < 4 || rawLength > MlfFrameCodec.MAX_FRAME_BYTES + 4
+                    || length < 0 || length > MlfFrameCodec.MAX_FRAME_BYTES) {
+                throw new IOException("数据块长度异常：" + rawLength + " / " + length);
+            }
+            if (compressed == null || compressed.length < length) compressed = new byte[Math.max(length, 8192)];
+            if (frame == null || frame.length < rawLength) frame = new byte[Math.max(rawLength, 8192)];
+            in.readFully(compressed, 0, length);
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                if (inflater.inflate(frame, 0, rawLength) != rawLength || !inflater.finished()) {
+                    throw new IOException("数据块解压后长度不符");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("数据块已损坏", e);
+            }
+            return decoder.read(new DataInputStream(new ByteArrayInputStream(frame, 0, rawLength)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null) inflater.end();
+            in.close();
+        }
+    }
+
+    /**
+     * 日志时间戳（按 UTC 计算的墙上时间，微秒）转为本地时区的纪元毫秒，
+     * 使 {@link MlfCapturedStatement#header()} 显示与日志相同的时刻；没有时间戳时为 -1
+     */
+    static long toMillis(long micros) {
+        if (micros < 0) return -1;
+        long millis = micros / 1000;
+        long local = millis - TimeZone.getDefault().getOffset(millis);
+        // 只有时间没有日期、且落在时区偏移之内时，挪到下一天以保持非负
+        return local < 0 && micros < MlfTimestampParser.DAY_MICROS ? local + MlfTimestampParser.DAY_MICROS / 1000 : local;
+    }
+
+    /** 可直接取出内部数组的字节缓冲 */
+    private static final class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(8192);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package wang.imold.mlf;
+
+import java.util.*;
+
+/**
+ * 会话内执行过的语句历史，按内存上限保留最近的记录，可按表名 / 列名检索。
+ * <p>
+ * 每个 Preparing 模板只保存一份，记录本身只占模板编号、时间、行数与 {@link MlfParamCodec} 编码后的参数。
+ * 记录按块顺序存放，超出内存上限时整块淘汰最早的记录，模板在不再被引用时一并释放。
+ * 模板中的表名与列名建立倒排索引，检索时先求出匹配的模板集合，再只扫描包含这些模板的块。
+ */
+public final class MlfStatementHistory {
+
+    /** 每块记录数 */
+    private static final int BLOCK_SIZE = 4096;
+    /** 每条记录除参数外的固定开销：模板编号、时间、Total、Updates、参数结束位置 */
+    private static final int RECORD_BYTES = 4 + 8 + 4 + 4 + 4;
+    /** 每个模板除字符外的估算开销（字符串、映射表项、Template 对象） */
+    private static final int TEMPLATE_OVERHEAD = 160;
+    /** 每个索引词除字符外的估算开销（字符串、映射表项、posting 列表） */
+    private static final int TOKEN_OVERHEAD = 128;
+    /** 每块除数组内容外的估算开销（对象头、数组头、BitSet） */
+    private static final int BLOCK_OVERHEAD = 256;
+
+    /** 不建索引的 SQL 关键字 */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "insert", "into", "values", "value", "update", "set", "delete", "replace", "merge", "using",
+            "union", "all", "case", "when", "then", "else", "end", "offset", "fetch", "next", "rows", "only",
+            "for", "true", "false", "if", "duplicate", "key", "returning", "interval"));
+
+    private final long maxBytes;
+    private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+    private final Map<String, Integer> templateIds = new HashMap<>();
+    private final List<Template> templates = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private final Map<String, IntList> index = new HashMap<>();
+    private final MlfParamCodec codec = new MlfParamCodec();
+    private final MlfParamBuffer params = new MlfParamBuffer();
+    private final MlfSqlLexer lexer = new MlfSqlLexer();
+    private long templateBytes;
+    private long indexBytes;
+    private long blockBytes;
+    private long lastTime;
+    private long added;
+
+    /** @param maxBytes 估算内存上限（字节），至少保留最近一块记录 */
+    public MlfStatementHistory(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** 记录一条语句，time 为捕获时间（毫秒） */
+    public void add(MlfStatementRecord record, long time) {
+        add(record.getSql(), record.getParameters(), time, record.getTotal(), record.getUpdates());
+    }
+
+    /**
+     * 记录一条语句
+     *
+     * @param parameters "Parameters:" 之后的原文，可为 null
+     * @param time       捕获时间（毫秒），早于上一条时按上一条计，保证块内时间有序
+     */
+    public synchronized void add(String sql, String parameters, long time, int total, int updates) {
+        params.clear();
+        if (parameters != null) MlfParamScanner.scan(parameters, 0, params);
+        int size = codec.encode(params);
+        append(sql, codec.buffer(), size, time, total, updates);
+    }
+
+    /** 记录一条由拦截器捕获的语句，参数已按 {@link MlfParamCodec} 编码 */
+    public synchronized void add(MlfCapturedStatement statement) {
+        byte[] encoded = statement.getEncodedParams();
+        boolean query = statement.isQuery();
+        append(statement.getSql(), encoded, encoded.length, statement.getTime(),
+                query ? statement.getRows() : -1, query ? -1 : statement.getRows());
+    }
+
+    private void append(String sql, byte[] encoded, int size, long time, int total, int updates) {
+        Block block = blocks.peekLast();
+        if (block == null || block.count == BLOCK_SIZE) {
+            block = new Block();
+            blocks.addLast(block);
+            blockBytes += block.bytes();
+        }
+        int id = intern(sql);
+        templates.get(id).references++;
+        lastTime = Math.max(lastTime, time);
+        blockBytes += block.add(id, lastTime, total, updates, encoded, size);
+        added++;
+        evict();
+    }
+
+    /**
+     * 检索最近的记录，按时间从新到旧返回
+     *
+     * @param query 空格分隔的表名 / 列名（不区分大小写，全部满足），以 * 结尾表示前缀匹配；为空时返回全部
+     * @param since 只返回该时间（毫秒）之后的记录，0 表示不限
+     * @param limit 最多返回的条数
+     */
+    public synchronized List<Hit> search(String query, long since, int limit) {
+        BitSet matched = matchTemplates(query);
+        List<Hit> hits = new ArrayList<>(Math.min(limit, 256));
+        if (matched != null && matched.isEmpty()) return hits;
+
+        Iterator<Block> it = blocks.descendingIterator();
+        while (it.hasNext() && hits.size() < limit) {
+            Block block = it.next();
+            if (block.count == 0 || block.times[block.count - 1] < since) break;
+            if (matched != null && !matched.intersects(block.present)) continue;
+            for (int i = block.count - 1; i >= 0 && hits.size() < limit; i--) {
+                if (block.times[i] < since) break;
+                int id = block.templates[i];
+                if (matched != null && !matched.get(id)) continue;
+                int start = i == 0 ? 0 : block.paramEnds[i - 1];
+                hits.add(new Hit(templates.get(id).sql, block.times[i], block.totals[i], block.updates[i],
+                        Arrays.copyOfRange(block.params, start, block.paramEnds[i])));
+            }
+        }
+        return hits;
+    }
+
+    /** 当前保留的记录数 */
+    public synchronized int size() {
+        int n = 0;
+        for (Block block : blocks) n += block.count;
+        return n;
+    }
+
+    /** 累计记录过的语句数（含已淘汰的） */
+    public synchronized long addedCount() {
+        return added;
+    }
+
+    public synchronized int templateCount() {
+        return templateIds.size();
+    }
+
+    /** 估算占用的内存（字节）：记录块（含模板位图）、模板字符串与倒排索引 */
+    public synchronized long memoryBytes() {
+        return templateBytes + indexBytes + blockBytes;
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        templateIds.clear();
+        templates.clear();
+        freeIds.clear();
+        index.clear();
+        templateBytes = 0;
+        indexBytes = 0;
+        blockBytes = 0;
+        lastTime = 0;
+        added = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "语句历史：" + size() + " 条记录, " + templateIds.size() + " 个模板, 约 "
+                + (memoryBytes() >> 10) + " KB / " + (maxBytes >> 10) + " KB";
+    }
+
+    private int intern(String sql) {
+        Integer existing = templateIds.get(sql);
+        if (existing != null) return existing;
+
+        String[] tokens = tokens(sql);
+        Template template = new Template(sql, tokens);
+        int id;
+        if (freeIds.isEmpty()) {
+            id = templates.size();
+            templates.add(template);
+        } else {
+            id = freeIds.pollFirst();
+            templates.set(id, template);
+        }
+        templateIds.put(sql, id);
+        for (String token : tokens) {
+            IntList ids = index.get(token);
+            if (ids == null) {
+                ids = new IntList(token);
+                index.put(token, ids);
+                indexBytes += TOKEN_OVERHEAD + 2L * token.length();
+            }
+            ids.add(id);
+        }
+        templateBytes += template.bytes();
+        return id;
+    }
+
+    /** 超出上限时整块淘汰最早的记录，至少保留最新一块 */
+    private void evict() {
+        while (memoryBytes() > maxBytes && blocks.size() > 1) {
+            Block block = blocks.pollFirst();
+            blockBytes -= block.bytes();
+            for (int i = 0; i < block.count; i++) {
+                int id = block.templates[i];
+                Template template = templates.get(id);
+                if (--template.references == 0) release(id, template);
+            }
+        }
+    }
+
+    private void release(int id, Template template) {
+        templateIds.remove(template.sql);
+        for (String token : template.tokens) {
+            IntList ids = index.get(token);
+            if (ids != null && ids.remove(id) && ids.size == 0) {
+                index.remove(token);
+                indexBytes -= TOKEN_OVERHEAD + 2L * token.length();
+            }
+        }
+        templates.set(id, null);
+        freeIds.addLast(id);
+        templateBytes -= template.bytes();
+    }
+
+    /** 查询词对应的模板集合，查询为空时返回 null 表示不过滤 */
+    private BitSet matchTemplates(String query) {
+        BitSet result = null;
+        for (String term : query.trim().toLowerCase(Locale.ROOT).split("[\\s,]+")) {
+            term = stripQuotes(term);
+            if (term.isEmpty() || term.equals("*")) continue;
+            BitSet ids = new BitSet();
+            if (term.endsWith("*")) {
+                String prefix = term.substring(0, term.length() - 1);
+                for (Map.Entry<String, IntList> e : index.entrySet()) {
+                    if (e.getKey().startsWith(prefix)) e.getValue().addTo(ids);
+                }
+            } else {
+                IntList list = index.get(term);
+                if (list != null) list.addTo(ids);
+            }
+            if (result == null) {
+                result = ids;
+            } else {
+                result.and(ids);
+            }
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    /** 模板中的表名与列名（小写、去掉引号），已去重 */
+    private String[] tokens(String sql) {
+        MlfSqlLexer lx = lexer.reset(sql);
+        Set<String> tokens = new LinkedHashSet<>();
+        try {
+            for (int i = 0, n = lx.count(); i < n; i++) {
+                byte type = lx.type(i);
+                if (type != MlfSqlLexer.WORD && type != MlfSqlLexer.QUOTED) continue;
+                if (type == MlfSqlLexer.WORD && isStructure(lx, i)) continue;
+                String token = stripQuotes(sql.substring(lx.start(i), lx.end(i)).toLowerCase(Locale.ROOT));
+                if (token.isEmpty() || STOP_WORDS.contains(token)) continue;
+                // 与已有索引项共用同一个字符串
+                IntList existing = index.get(token);
+                tokens.add(existing != null ? existing.key : token);
+            }
+        } finally {
+            lexer.reset("");
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * 关键字是否用作 SQL 结构：ORDER / GROUP / CONNECT 后跟 BY、START 后跟 WITH、LEFT 等后跟 JOIN / OUTER 时才是结构，
+     * 否则按列名（start、order、left 等）建索引；后跟括号的 LEFT(...) 等函数名不建索引
+     */
+    private static boolean isStructure(MlfSqlLexer lx, int i) {
+        int next = nextCode(lx, i);
+        switch (lx.keyword(i)) {
+            case MlfSqlLexer.KW_NONE:
+                return false;
+            case MlfSqlLexer.KW_ORDER:
+            case MlfSqlLexer.KW_GROUP:
+            case MlfSqlLexer.KW_CONNECT:
+                return next >= 0 && lx.keyword(next) == MlfSqlLexer.KW_BY;
+            case MlfSqlLexer.KW_START:
+                return next >= 0 && lx.keyword(next) == MlfSqlLexer.KW_WITH;
+            case MlfSqlLexer.KW_LEFT:
+            case MlfSqlLexer.KW_RIGHT:
+            case MlfSqlLexer.KW_FULL:
+            case MlfSqlLexer.KW_INNER:
+            case MlfSqlLexer.KW_CROSS:
+            case MlfSqlLexer.KW_OUTER:
+                return next >= 0 && (lx.type(next) == MlfSqlLexer.LPAREN
+                        || lx.keyword(next) == MlfSqlLexer.KW_JOIN || lx.keyword(next) == MlfSqlLexer.KW_OUTER);
+            default:
+                return true;
+        }
+    }
+
+    /** i 之后第一个非注释记号，没有时返回 -1 */
+    private static int nextCode(MlfSqlLexer lx, int i) {
+        for (int j = i + 1, n = lx.count(); j < n; j++) {
+            byte type = lx.type(j);
+            if (type != MlfSqlLexer.LINE_COMMENT && type != MlfSqlLexer.BLOCK_COMMENT) return j;
+        }
+        return -1;
+    }
+
+    private static String stripQuotes(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && (s.charAt(start) == '`' || s.charAt(start) == '"')) start++;
+        while (end > start && (s.charAt(end - 1) == '`' || s.charAt(end - 1) == '"')) end--;
+        return s.substring(start, end);
+    }
+
+    /** 一条检索结果，参数保持编码形式，格式化时才解码 */
+    public static final class Hit {
+        private final String sql;
+        private final long time;
+        private final int total;
+        private final int updates;
+        private final byte[] encodedParams;
+
+        Hit(String sql, long time, int total, int updates, byte[] encodedParams) {
+            this.sql = sql;
+            this.time = time;
+            this.total = total;
+            this.updates = updates;
+            this.encodedParams = encodedParams;
+        }
+
+        /** 带 ? 占位符的 SQL 模板 */
+        public String getSql() {
+            return sql;
+        }
+
+        /** 捕获时间（毫秒） */
+        public long getTime() {
+            return time;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getUpdates() {
+            return updates;
+        }
+
+        /** 解码参数并格式化为可执行 SQL */
+        public String format(MlfLogParser parser) {
+            MlfParamBuffer params = new MlfParamBuffer();
+            MlfParamCodec.decode(encodedParams, 0, params, new StringBuilder());
+            return parser.formatStatement(sql, params);
+        }
+    }
+
+    private static final class Template {
+        final String sql;
+        final String[] tokens;
+        int references;
+
+        Template(String sql, String[] tokens) {
+            this.sql = sql;
+            this.tokens = tokens;
+        }
+
+        /** 模板字符串、词数组，以及在各 posting 列表中占的一项 */
+        long bytes() {
+            return TEMPLATE_OVERHEAD + 2L * sql.length() + 12L * tokens.length;
+        }
+    }
+
+    /** 一块记录：定长数组 + 共用的参数字节区 */
+    private static final class Block {
+        final int[] templates = new int[BLOCK_SIZE];
+        final long[] times = new long[BLOCK_SIZE];
+        final int[] totals = new int[BLOCK_SIZE];
+        final int[] updates = new int[BLOCK_SIZE];
+        final int[] paramEnds = new int[BLOCK_SIZE];
+        final BitSet present = new BitSet();
+        byte[] params = new byte[1024];
+        int used;
+        int count;
+
+        /** 估算占用的字节数：定长数组、参数字节区与模板位图 */
+        long bytes() {
+            return BLOCK_OVERHEAD + (long) RECORD_BYTES * BLOCK_SIZE + params.length + present.size() / 8;
+        }
+
+        /** 追加一条记录，返回参数字节区与模板位图扩容增加的字节数 */
+        long add(int template, long time, int total, int updateCount, byte[] src, int len) {
+            long grown = -present.size() / 8;
+            if (used + len > params.length) {
+                int n = Math.max(params.length << 1, used + len);
+                grown += n - params.length;
+                params = Arrays.copyOf(params, n);
+            }
+            System.arraycopy(src, 0, params, used, len);
+            used += len;
+            templates[count] = template;
+            times[count] = time;
+            totals[count] = total;
+            updates[count] = updateCount;
+            paramEnds[count] = used;
+            present.set(template);
+            grown += present.size() / 8;
+            count++;
+            return grown;
+        }
+    }
+
+    /** 倒排索引的 posting 列表，key 为索引词本身，供模板共用 */
+    private static final class IntList {
+        final String key;
+        int[] values = new int[4];
+        int size;
+
+        IntList(String key) {
+            this.key = key;
+        }
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size << 1);
+            values[size++] = v;
+        }
+
+        boolean remove(int v) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == v) {
+                    values[i] = values[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) set.set(values[i]);
+        }
+    }
+}
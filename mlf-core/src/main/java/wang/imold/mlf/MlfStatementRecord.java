@@ -0,0 +1,135 @@
+package wang.imold.mlf;
+
+/**
+ * 从日志中提取出的一条语句：Preparing 模板、Parameters 原文、Total / Updates 结果以及行首时间戳
+ */
+public class MlfStatementRecord {
+
+    private final long sequence;
+    private final long offset;
+    private final long line;
+    private final String thread;
+    private final String logger;
+    private final String sql;
+    private String parameters;
+    private long parametersOffset = -1;
+    private int total = -1;
+    private int updates = -1;
+    private long startTime = -1;
+    private long endTime = -1;
+    private int batchIndex;
+
+    MlfStatementRecord(long sequence, long offset, long line, String thread, String logger, String sql) {
+        this.sequence = sequence;
+        this.offset = offset;
+        this.line = line;
+        this.thread = thread;
+        this.logger = logger;
+        this.sql = sql;
+    }
+
+    /** 按 Preparing 出现顺序递增的序号 */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Preparing 行在输入中的起始位置 */
+    public long getOffset() {
+        return offset;
+    }
+
+    /** Preparing 行的行号（从 0 开始） */
+    public long getLine() {
+        return line;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
+    /** 带 ? 占位符的 SQL 模板 */
+    public String getSql() {
+        return sql;
+    }
+
+    /** "Parameters:" 之后的原文，没有参数行时为 null */
+    public String getParameters() {
+        return parameters;
+    }
+
+    public long getParametersOffset() {
+        return parametersOffset;
+    }
+
+    /** "Total:" 行数，未出现时为 -1 */
+    public int getTotal() {
+        return total;
+    }
+
+    /** "Updates:" 行数，未出现时为 -1 */
+    public int getUpdates() {
+        return updates;
+    }
+
+    /** 同一 Preparing 下第几个 Parameters（BATCH 执行器），从 0 开始 */
+    public int getBatchIndex() {
+        return batchIndex;
+    }
+
+    void setBatchIndex(int batchIndex) {
+        this.batchIndex = batchIndex;
+    }
+
+    /** Preparing 行的时间戳（微秒），没有时为 -1 */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** Total / Updates 行的时间戳（微秒），没有时为 -1 */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /** Preparing 到 Total / Updates 的耗时（微秒），无法计算时为 -1 */
+    public long getLatencyMicros() {
+        return MlfTimestampParser.elapsed(startTime, endTime);
+    }
+
+    void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    void setParameters(String parameters, long offset) {
+        this.parameters = parameters;
+        this.parametersOffset = offset;
+    }
+
+    void setTotal(int total) {
+        this.total = total;
+    }
+
+    void setUpdates(int updates) {
+        this.updates = updates;
+    }
+
+    /** 结果窗口中每条语句前的注释头 */
+    public String header() {
+        StringBuilder sb = new StringBuilder("-- #").append(sequence + 1);
+        if (!thread.isEmpty()) sb.append(" [").append(thread).append(']');
+        if (!logger.isEmpty()) sb.append(' ').append(logger);
+        if (batchIndex > 0) sb.append("  批量第 ").append(batchIndex + 1).append(" 条");
+        if (total >= 0) sb.append("  Total: ").append(total);
+        if (updates >= 0) sb.append("  Updates: ").append(updates);
+        long latency = getLatencyMicros();
+        if (latency >= 0) sb.append("  耗时: ").append(MlfLatencyHistogram.formatMillis(latency)).append(" ms");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package wang.imold.mlf;
+
+/**
+ * 日志行首时间戳的定长解析，不分配对象、不依赖 java.time。
+ * <p>
+ * 支持 Logback / Log4j 的常见输出（小数秒 1 - 9 位，分隔符为 . 或 ,，时区后缀忽略）：
+ * <pre>
+ * 2025-11-27 15:51:44.123
+ * 2025-11-27T15:51:44.123456+08:00
+ * 2025/11/27 15:51:44,123
+ * 15:51:44.123
+ * </pre>
+ * 结果为微秒；带日期时是按 UTC 计算的纪元微秒，只有时间时是当天的微秒数（小于 {@link #DAY_MICROS}）。
+ * 只用于计算同一日志内的时间差。
+ */
+final class MlfTimestampParser {
+
+    static final long DAY_MICROS = 86_400_000_000L;
+
+    /** 时间戳前允许出现的非数字前缀长度，例如 "[" 或 "DEBUG " */
+    private static final int MAX_LEADING = 16;
+
+    private MlfTimestampParser() {
+    }
+
+    /**
+     * 解析 [from, end) 开头的时间戳，无法识别时返回 -1
+     */
+    static long parse(CharSequence s, int from, int end) {
+        int p = from;
+        int limit = Math.min(end, from + MAX_LEADING);
+        while (p < limit && !isDigit(s.charAt(p))) p++;
+        if (p == limit) return -1;
+
+        long days = 0;
+        boolean date = false;
+        if (p + 10 <= end && digits(s, p, 4) >= 0 && isDateSeparator(s.charAt(p + 4))) {
+            char sep = s.charAt(p + 4);
+            int year = digits(s, p, 4);
+            int month = digits(s, p + 5, 2);
+            int day = digits(s, p + 8, 2);
+            if (s.charAt(p + 7) != sep || month < 1 || month > 12 || day < 1 || day > 31) return -1;
+            days = daysFromCivil(year, month, day);
+            date = true;
+            p += 10;
+            if (p >= end || (s.charAt(p) != ' ' && s.charAt(p) != 'T')) return -1;
+            p++;
+        }
+
+        if (p + 8 > end || s.charAt(p + 2) != ':' || s.charAt(p + 5) != ':') return -1;
+        int hour = digits(s, p, 2);
+        int minute = digits(s, p + 3, 2);
+        int second = digits(s, p + 6, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) return -1;
+        p += 8;
+
+        long micros = 0;
+        if (p < end && (s.charAt(p) == '.' || s.charAt(p) == ',')) {
+            p++;
+            int n = 0;
+            while (p < end && isDigit(s.charAt(p))) {
+                if (n < 6) micros = micros * 10 + (s.charAt(p) - '0');
+                n++;
+                p++;
+            }
+            if (n == 0) return -1;
+            for (; n < 6; n++) micros *= 10;
+        }
+
+        long time = ((hour * 60L + minute) * 60L + second) * 1_000_000L + micros;
+        return date ? days * DAY_MICROS + time : time;
+    }
+
+    /** 两个时间戳之差（微秒），只有时间的格式跨越午夜时按次日处理；任一无效时返回 -1 */
+    static long elapsed(long start, long end) {
+        if (start < 0 || end < 0) return -1;
+        long d = end - start;
+        if (d < 0 && start < DAY_MICROS && end < DAY_MICROS) d += DAY_MICROS;
+        return d < 0 ? -1 : d;
+    }
+
+    /** 固定位数的十进制数，含非数字时返回 -1 */
+    private static int digits(CharSequence s, int p, int n) {
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(p + i);
+            if (!isDigit(c)) return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    /** 公历日期到 1970-01-01 的天数（Howard Hinnant 的 days_from_civil） */
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    private static boolean isDateSeparator(char c) {
+        return c == '-' || c == '/';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
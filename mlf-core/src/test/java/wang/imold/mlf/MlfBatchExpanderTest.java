@@ -0,0 +1,58 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfBatchExpanderTest {
+
+    private static final String INSERT_ORDER = "INSERT INTO orders (user_id, status) VALUES (?, ?)";
+
+    @Test
+    void mergesValuesRows() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "==>  Preparing: " + INSERT_ORDER);
+        for (int i = 1; i <= 5; i++) line(sb, "exec-1", "==> Parameters: " + i + "(Long), NEW(String)");
+
+        StringBuilder out = new StringBuilder();
+        MlfBatchExpander expander = expand(sb, out, 2);
+        assertEquals(3, expander.getStatements());
+        assertTrue(out.toString().contains("VALUES\n    (1, 'NEW'),\n    (2, 'NEW');"), out.toString());
+        assertTrue(out.toString().contains("(5, 'NEW');"), out.toString());
+    }
+
+    @Test
+    void heldGroupIsWrittenBeforeLaterStatementOnSameThread() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "==>  Preparing: " + INSERT_ORDER);
+        line(sb, "exec-1", "==> Parameters: 1(Long), NEW(String)");
+        line(sb, "exec-1", "==> Parameters: 2(Long), NEW(String)");
+        // 另一个 Mapper 的语句不能合并
+        line(sb, "exec-1", "c.e.m.OrderMapper.count", "==>  Preparing: SELECT COUNT(*) FROM orders WHERE user_id = ?");
+        line(sb, "exec-1", "c.e.m.OrderMapper.count", "==> Parameters: 1(Long)");
+        line(sb, "exec-1", "c.e.m.OrderMapper.count", "<==      Total: 1");
+
+        StringBuilder out = new StringBuilder();
+        assertEquals(2, expand(sb, out, 100).getStatements());
+        int insert = out.indexOf("(2, 'NEW');");
+        int select = out.indexOf("user_id = 1;");
+        assertTrue(insert >= 0 && select > insert, out.toString());
+    }
+
+    private static MlfBatchExpander expand(CharSequence log, StringBuilder out, int maxRows) {
+        MlfBatchExpander expander = new MlfBatchExpander(out, maxRows);
+        MlfLogRecordExtractor.extractAll(log).forEach(expander::accept);
+        expander.finish();
+        return expander;
+    }
+
+    private static void line(StringBuilder sb, String thread, String message) {
+        line(sb, thread, "c.e.m.OrderMapper.insert", message);
+    }
+
+    private static void line(StringBuilder sb, String thread, String logger, String message) {
+        sb.append("2025-11-27 15:51:44.123 DEBUG 1 --- [").append(thread).append("] ").append(logger).append(" : ")
+                .append(message).append('\n');
+    }
+}
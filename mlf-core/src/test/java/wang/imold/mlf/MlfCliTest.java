@@ -0,0 +1,54 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfCliTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void formatsLogToOutput() throws IOException {
+        Path log = log();
+        Path out = dir.resolve("out.sql");
+        assertEquals(0, MlfCli.run(new String[]{"-o", out.toString(), log.toString()}));
+        String text = new String(Files.readAllBytes(out), StandardCharsets.UTF_8);
+        assertTrue(text.contains("id = 7;"), text);
+    }
+
+    @Test
+    void rejectsConflictingModes() throws IOException {
+        String log = log().toString();
+        assertEquals(2, MlfCli.run(new String[]{"--report", "10", "--latency", "10", log}));
+        assertEquals(2, MlfCli.run(new String[]{"--collapse-batch", "--n-plus-one", "5", log}));
+        assertEquals(2, MlfCli.run(new String[]{"--index", "--export", dir.resolve("a.mlfx").toString(), log}));
+        assertEquals(2, MlfCli.run(new String[]{"--compare", log, "--thread", "main", log}));
+    }
+
+    @Test
+    void rejectsRangeWhereUnsupported() throws IOException {
+        String log = log().toString();
+        assertEquals(2, MlfCli.run(new String[]{"--index", "--from", "10", log}));
+        assertEquals(2, MlfCli.run(new String[]{"--thread", "main", "--to", "10", log}));
+        assertEquals(2, MlfCli.run(new String[]{"--import", "--from", "10", log}));
+        assertEquals(0, MlfCli.run(new String[]{"--report", "10", "--from", "0", "-o", dir.resolve("r.txt").toString(), log}));
+    }
+
+    private Path log() throws IOException {
+        Path log = dir.resolve("app.log");
+        String text = "2025-11-27 15:51:44.123 DEBUG 1 --- [main] c.e.m.UserMapper.selectById : ==>  Preparing: SELECT * FROM user WHERE id = ?\n"
+                + "2025-11-27 15:51:44.123 DEBUG 1 --- [main] c.e.m.UserMapper.selectById : ==> Parameters: 7(Long)\n"
+                + "2025-11-27 15:51:44.125 DEBUG 1 --- [main] c.e.m.UserMapper.selectById : <==      Total: 1\n";
+        Files.write(log, text.getBytes(StandardCharsets.UTF_8));
+        return log;
+    }
+}
@@ -0,0 +1,102 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfFingerprintReportTest {
+
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+
+    @Test
+    void literalsAndPlaceholdersAreNormalized() {
+        assertEquals("select id, name from user where id = ? and name = ?",
+                fingerprint.normalize("SELECT id,  name FROM user\n WHERE id = 42 AND name = 'Tom'"));
+        assertEquals(fingerprint.normalize("select * from t where a = ? -- note\n and b = 1.5"),
+                fingerprint.normalize("select * from t /* hint */ where a = 'x' and b = ?"));
+        assertNotEquals(fingerprint.normalize("select a from t"), fingerprint.normalize("select b from t"));
+    }
+
+    @Test
+    void inListsAndValuesRowsCollapse() {
+        String in = fingerprint.normalize("select * from t where id in (?, ?, ?) and type = ?");
+        assertEquals("select * from t where id in (?+) and type = ?", in);
+        assertEquals(in, fingerprint.normalize("select * from t where id in (1) and type = 'a'"));
+        // 子查询不是值列表
+        assertEquals("select * from t where id in (select id from u)",
+                fingerprint.normalize("select * from t where id in (select id from u)"));
+
+        String values = fingerprint.normalize("insert into t (a, b) values (?, ?), (?, ?), (?, ?)");
+        assertEquals("insert into t(a, b) values (?, ?) ...", values);
+        assertEquals(values, fingerprint.normalize("INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y')"));
+    }
+
+    @Test
+    void hashIsStableHex() {
+        String text = fingerprint.normalize("select * from t where id = ?");
+        assertEquals(MlfSqlFingerprint.hash(text), MlfSqlFingerprint.hash(fingerprint.normalize("SELECT * FROM t WHERE id = 7")));
+        String hex = MlfSqlFingerprint.hex(MlfSqlFingerprint.hash(text));
+        assertEquals(18, hex.length());
+        assertTrue(hex.startsWith("0x"));
+        assertEquals("0x0000000000000001", MlfSqlFingerprint.hex(1));
+    }
+
+    @Test
+    void aggregatesCountsAndRows() {
+        MlfFingerprintReport report = new MlfFingerprintReport(16);
+        for (int i = 0; i < 5; i++) report.add("select * from user where id = " + i, 1, -1);
+        for (int i = 0; i < 3; i++) report.add("update orders set status = ? where id = ?", -1, 2);
+        report.add("select * from orders where id in (1, 2, 3)", 3, -1);
+
+        assertEquals(9, report.getStatements());
+        assertEquals(3, report.size());
+        List<MlfFingerprintReport.Entry> top = report.top(10);
+        assertEquals(3, top.size());
+
+        MlfFingerprintReport.Entry first = top.get(0);
+        assertEquals("select * from user where id = ?", first.getFingerprint());
+        assertEquals(5, first.getCount());
+        assertEquals(0, first.getError());
+        assertEquals(5, first.getRows());
+        // 示例为指纹第一次进入统计时的模板
+        assertEquals("select * from user where id = 0", first.getSample());
+        assertEquals(1.0, first.getAverageRows());
+
+        MlfFingerprintReport.Entry second = top.get(1);
+        assertEquals(3, second.getCount());
+        assertEquals(6, second.getUpdates());
+        assertEquals(0, second.getRows());
+        assertEquals(1, report.top(1).size());
+
+        String text = report.toText(2);
+        assertTrue(text.startsWith("-- 共 9 条语句，3 个指纹，按执行次数展示前 2 个\n"), text);
+        assertTrue(text.contains(MlfSqlFingerprint.hex(first.getHash())), text);
+        assertFalse(text.contains("in (?+)"), text);
+    }
+
+    @Test
+    void heavyHittersSurviveEviction() {
+        MlfFingerprintReport report = new MlfFingerprintReport(4);
+        for (int i = 0; i < 1000; i++) {
+            report.add("select * from hot where id = ?", 1, -1);
+            report.add("select * from t" + i + " where id = ?", 1, -1);
+        }
+        assertEquals(2000, report.getStatements());
+        assertEquals(4, report.size());
+        MlfFingerprintReport.Entry hot = report.top(1).get(0);
+        assertEquals("select * from hot where id = ?", hot.getFingerprint());
+        // 热点语句从第一次起一直在表中，次数精确
+        assertEquals(1000, hot.getCount());
+        assertEquals(0, hot.getError());
+        // 其他条目的次数不少于真实次数，误差不超过上界
+        for (MlfFingerprintReport.Entry e : report.top(4).subList(1, 4)) {
+            assertTrue(e.getCount() - e.getError() <= 1, e.getFingerprint());
+            assertTrue(e.getError() <= report.getStatements() / 4, e.getFingerprint());
+        }
+    }
+}
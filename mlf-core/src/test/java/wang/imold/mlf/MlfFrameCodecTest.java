@@ -0,0 +1,149 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfFrameCodecTest {
+
+    private static final String SELECT_USER = "SELECT id, name FROM user WHERE id = ? AND name = ?";
+    private static final String UPDATE_ORDER = "UPDATE orders SET status = ? WHERE id = ?";
+
+    private final MlfFrameCodec.Encoder encoder = new MlfFrameCodec.Encoder();
+    private final MlfFrameCodec.Decoder decoder = new MlfFrameCodec.Decoder();
+    private final MlfLogParser parser = new MlfLogParser();
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MlfFrameCodec.MAGIC);
+        encoder.begin(1_700_000_000_000L);
+        encoder.add(SELECT_USER, "exec-1", "c.e.m.UserMapper.select", 1_700_000_000_005L, 1234, 1,
+                params("7", MlfParamBuffer.RAW, "Tom, Jr.", MlfParamBuffer.QUOTED));
+        // 时间可以早于上一条
+        encoder.add(UPDATE_ORDER, "exec-2", "c.e.m.OrderMapper.update", 1_699_999_999_990L, -1, -1,
+                params("null", MlfParamBuffer.NULL, "9", MlfParamBuffer.RAW));
+        assertEquals(2, encoder.count());
+        encoder.writeTo(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        decoder.readHeader(in);
+        List<MlfCapturedStatement> statements = decoder.read(in);
+        assertEquals(2, statements.size());
+
+        MlfCapturedStatement select = statements.get(0);
+        assertEquals(SELECT_USER, select.getSql());
+        assertEquals("exec-1", select.getThread());
+        assertEquals("c.e.m.UserMapper.select", select.getStatementId());
+        assertEquals(1_700_000_000_005L, select.getTime());
+        assertEquals(1234, select.getElapsedMicros());
+        assertEquals(1, select.getRows());
+        assertTrue(select.isQuery());
+        assertEquals(parser.formatStatement(SELECT_USER, "7(Long), Tom, Jr.(String)"), select.format(parser));
+
+        MlfCapturedStatement update = statements.get(1);
+        assertEquals(1_699_999_999_990L, update.getTime());
+        assertEquals(-1, update.getElapsedMicros());
+        assertEquals(-1, update.getRows());
+        assertFalse(update.isQuery());
+        assertEquals(parser.formatStatement(UPDATE_ORDER, "null, 9(Long)"), update.format(parser));
+
+        assertNull(decoder.read(in));
+    }
+
+    @Test
+    void repeatedStringsAreSentOnce() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] sizes = new int[2];
+        for (int f = 0; f < 2; f++) {
+            encoder.begin(0);
+            for (int i = 0; i < 100; i++) {
+                encoder.add(SELECT_USER, "exec-1", "c.e.m.UserMapper.select", i, 10, 1,
+                        params(String.valueOf(i), MlfParamBuffer.RAW, "Tom", MlfParamBuffer.QUOTED));
+            }
+            sizes[f] = encoder.size();
+            encoder.writeTo(out);
+        }
+        // 第二帧只有字典引用
+        assertTrue(sizes[1] < sizes[0] - SELECT_USER.length(), Arrays.toString(sizes));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (int f = 0; f < 2; f++) {
+            List<MlfCapturedStatement> statements = decoder.read(in);
+            assertEquals(100, statements.size());
+            assertEquals(SELECT_USER, statements.get(99).getSql());
+            assertEquals(99, statements.get(99).getTime());
+        }
+        assertNull(decoder.read(in));
+    }
+
+    @Test
+    void emptyFrame() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.begin(42);
+        encoder.writeTo(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(0, decoder.read(in).size());
+    }
+
+    @Test
+    void rejectsOtherStreams() {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{'M', 'L', 'F', 'X'}));
+        assertThrows(IOException.class, () -> decoder.readHeader(in));
+    }
+
+    @Test
+    void rejectsOversizedAndTruncatedFrames() throws IOException {
+        byte[] huge = {0x7F, 0, 0, 0};
+        assertThrows(IOException.class, () -> decoder.read(new DataInputStream(new ByteArrayInputStream(huge))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.begin(0);
+        encoder.add(SELECT_USER, "exec-1", "c.e.m.UserMapper.select", 0, 1, 1,
+                params("1", MlfParamBuffer.RAW, "a", MlfParamBuffer.QUOTED));
+        encoder.writeTo(out);
+        byte[] frame = out.toByteArray();
+        // 声明的长度大于实际内容
+        byte[] truncated = Arrays.copyOf(frame, frame.length - 2);
+        assertThrows(IOException.class, () -> decoder.read(new DataInputStream(new ByteArrayInputStream(truncated))));
+    }
+
+    @Test
+    void rejectsCountsBeyondFrame() {
+        // 标志、基准时间 0、语句数 2^28 - 1
+        assertThrows(IOException.class, () -> decoder.read(frame(0, 0, 0xFF, 0xFF, 0xFF, 0x7F)));
+        // 语句数为负数
+        assertThrows(IOException.class, () -> decoder.read(frame(0, 0,
+                0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01)));
+        // 一条语句，SQL 为长度 1000000 的新字符串
+        assertThrows(IOException.class, () -> decoder.read(frame(0, 0, 1, 0, 0xC0, 0x84, 0x3D, 'a')));
+    }
+
+    private static DataInputStream frame(int... bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DataOutputStream(out).writeInt(bytes.length);
+        for (int b : bytes) out.write(b);
+        return new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static MlfParamBuffer params(Object... valueAndKind) {
+        MlfParamBuffer params = new MlfParamBuffer();
+        for (int i = 0; i < valueAndKind.length; i += 2) {
+            String value = (String) valueAndKind[i];
+            params.add(value, 0, value.length(), (Byte) valueAndKind[i + 1]);
+        }
+        return params;
+    }
+}
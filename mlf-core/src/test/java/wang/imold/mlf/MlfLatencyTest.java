@@ -0,0 +1,154 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfLatencyTest {
+
+    @Test
+    void parsesCommonTimestampLayouts() {
+        long micros = (15 * 3600 + 51 * 60 + 44) * 1_000_000L + 123_000;
+        long date = 20419 * MlfTimestampParser.DAY_MICROS;
+        assertEquals(date + micros, parse("2025-11-27 15:51:44.123 DEBUG 1 --- [main] c.e.M : ==>"));
+        assertEquals(date + micros + 456, parse("2025-11-27T15:51:44.123456+08:00 [main]"));
+        assertEquals(date + micros, parse("2025/11/27 15:51:44,123 [main]"));
+        // 超过微秒的位数截断
+        assertEquals(date + micros + 456, parse("[2025-11-27 15:51:44.123456789] DEBUG"));
+        assertEquals(micros, parse("15:51:44.123 [main] DEBUG"));
+        assertEquals(micros - 123_000, parse("DEBUG 15:51:44 [main]"));
+        assertEquals(0, parse("1970-01-01 00:00:00"));
+    }
+
+    @Test
+    void rejectsMalformedTimestamps() {
+        assertEquals(-1, parse("[main] DEBUG c.e.M : ==>  Preparing: select 1"));
+        assertEquals(-1, parse("2025-13-27 15:51:44.123"));
+        assertEquals(-1, parse("2025-11-27 25:51:44.123"));
+        assertEquals(-1, parse("2025-11-27 15:51"));
+        assertEquals(-1, parse("2025-11-27 15:51:44."));
+        assertEquals(-1, parse(""));
+    }
+
+    @Test
+    void elapsedCrossesMidnightOnlyWithoutDate() {
+        long beforeMidnight = parse("23:59:59.900");
+        long afterMidnight = parse("00:00:00.100");
+        assertEquals(200_000, MlfTimestampParser.elapsed(beforeMidnight, afterMidnight));
+        assertEquals(200_000, MlfTimestampParser.elapsed(parse("2025-11-27 23:59:59.900"), parse("2025-11-28 00:00:00.100")));
+        assertEquals(-1, MlfTimestampParser.elapsed(parse("2025-11-28 00:00:00.100"), parse("2025-11-27 23:59:59.900")));
+        assertEquals(-1, MlfTimestampParser.elapsed(-1, afterMidnight));
+    }
+
+    @Test
+    void histogramPercentilesWithinRelativeError() {
+        MlfLatencyHistogram h = new MlfLatencyHistogram();
+        assertEquals(-1, h.percentile(50));
+        assertEquals(-1, h.getMax());
+        for (int i = 1; i <= 10000; i++) h.record(i * 100L);
+        h.record(-1);
+
+        assertEquals(10000, h.getCount());
+        assertEquals(1_000_000, h.getMax());
+        assertEquals(500_050, h.getMean());
+        assertWithin(500_000, h.percentile(50));
+        assertWithin(990_000, h.percentile(99));
+        assertEquals(1_000_000, h.percentile(100));
+        assertWithin(100, h.percentile(0));
+    }
+
+    @Test
+    void histogramSmallValuesAreExactAndMergeAddsUp() {
+        MlfLatencyHistogram h = new MlfLatencyHistogram();
+        for (int i = 0; i < 16; i++) h.record(i);
+        assertEquals(7, h.percentile(50));
+        assertEquals(15, h.percentile(100));
+
+        MlfLatencyHistogram huge = new MlfLatencyHistogram();
+        huge.record(Long.MAX_VALUE);
+        assertEquals(1, huge.getCount());
+
+        h.merge(huge);
+        assertEquals(17, h.getCount());
+        assertEquals(Long.MAX_VALUE, h.getMax());
+    }
+
+    @Test
+    void formatsMillis() {
+        assertEquals("0.007", MlfLatencyHistogram.formatMillis(7));
+        assertEquals("12.345", MlfLatencyHistogram.formatMillis(12_345));
+        assertEquals("1000.050", MlfLatencyHistogram.formatMillis(1_000_050));
+        assertEquals("-", MlfLatencyHistogram.formatMillis(-1));
+    }
+
+    @Test
+    void recordsCarryLatencyAndAnalyzerRanksByP99() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            statement(sb, "exec-1", "SELECT * FROM user WHERE id = ?", "==> Parameters: " + i + "(Long)", "<==      Total: 1",
+                    "15:51:44.100", "15:51:44.10" + i);
+        }
+        statement(sb, "exec-2", "UPDATE orders SET status = ? WHERE id = ?", "==> Parameters: PAID(String), 1(Long)",
+                "<==    Updates: 1", "15:51:44.100", "15:51:44.350");
+        // 没有结束行的语句无法计算耗时
+        line(sb, "15:51:45.000", "exec-3", "==>  Preparing: SELECT 1");
+
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(sb);
+        assertEquals(12, records.size());
+        assertEquals(9_000, records.get(9).getLatencyMicros());
+        assertEquals(250_000, records.get(10).getLatencyMicros());
+        assertEquals(-1, records.get(11).getLatencyMicros());
+        assertTrue(records.get(10).header().endsWith("Updates: 1  耗时: 250.000 ms"), records.get(10).header());
+
+        MlfLatencyAnalyzer analyzer = new MlfLatencyAnalyzer(16);
+        records.forEach(analyzer::accept);
+        assertEquals(12, analyzer.getStatements());
+        assertEquals(1, analyzer.getUnmatched());
+        assertEquals(11, analyzer.getOverall().getCount());
+        List<MlfLatencyAnalyzer.Stat> top = analyzer.top(10);
+        assertEquals(2, top.size());
+        assertEquals("update orders set status = ? where id = ?", top.get(0).getFingerprint());
+        assertEquals(250_000, top.get(0).getHistogram().getMax());
+        assertEquals(10, top.get(1).getHistogram().getCount());
+        assertEquals(9_000, top.get(1).getHistogram().percentile(99));
+    }
+
+    @Test
+    void analyzerFoldsFingerprintsBeyondCapacity() {
+        MlfLatencyAnalyzer analyzer = new MlfLatencyAnalyzer(1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            statement(sb, "exec-1", "SELECT * FROM t" + i, "==> Parameters: ", "<==      Total: 0",
+                    "15:51:44.000", "15:51:44.00" + (i + 1));
+        }
+        MlfLogRecordExtractor.extractAll(sb).forEach(analyzer::accept);
+        List<MlfLatencyAnalyzer.Stat> top = analyzer.top(10);
+        assertEquals(2, top.size());
+        assertEquals("select * from t0", top.get(0).getFingerprint());
+        assertEquals(1, top.get(0).getHistogram().getCount());
+        assertEquals(4, top.get(1).getHistogram().getCount());
+        assertTrue(analyzer.toText(10).contains("（其他语句）"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, expected + " ≈ " + actual);
+    }
+
+    private static long parse(String s) {
+        return MlfTimestampParser.parse(s, 0, s.length());
+    }
+
+    private static void statement(StringBuilder sb, String thread, String sql, String parameters, String result,
+                                  String start, String end) {
+        line(sb, start, thread, "==>  Preparing: " + sql);
+        line(sb, start, thread, parameters);
+        line(sb, end, thread, result);
+    }
+
+    private static void line(StringBuilder sb, String time, String thread, String message) {
+        sb.append(time).append(" [").append(thread).append("] DEBUG c.e.m.Mapper.call - ").append(message).append('\n');
+    }
+}
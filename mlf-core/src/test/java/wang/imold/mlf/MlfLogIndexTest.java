@@ -0,0 +1,217 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfLogIndexTest {
+
+    private static final String SELECT_USER = "SELECT id, name FROM user WHERE id = ?";
+    private static final String UPDATE_ORDER = "UPDATE orders SET status = ? WHERE id = ?";
+
+    @TempDir
+    Path dir;
+
+    private final MlfSqlFingerprint fingerprint = new MlfSqlFingerprint();
+
+    @Test
+    void indexesAndFindsByFingerprintAndThread() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String thread = i % 2 == 0 ? "exec-1" : "exec-2";
+            if (i % 4 < 2) {
+                query(sb, thread, SELECT_USER, i + "(Long)", 1);
+            } else {
+                update(sb, thread, UPDATE_ORDER, "PAID(String), " + i + "(Long)", 1);
+            }
+            sb.append("2025-11-27 15:51:44.200 INFO 1 --- [").append(thread).append("] c.e.Service : done ").append(i).append('\n');
+        }
+        write(log, sb);
+
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(100, index.update());
+            assertEquals(100, index.size());
+            assertEquals(Files.size(log), index.indexedLength());
+            assertEquals(100, index.find(0, null).length);
+
+            long[] selects = index.find(hash(SELECT_USER), null);
+            assertEquals(50, selects.length);
+            List<MlfStatementRecord> records = read(index, selects);
+            assertEquals(SELECT_USER, records.get(0).getSql());
+            assertEquals("0(Long)", records.get(0).getParameters());
+            assertEquals(1, records.get(0).getTotal());
+            assertEquals("exec-2", records.get(1).getThread());
+            assertEquals("1(Long)", records.get(1).getParameters());
+
+            long[] updates = index.find(hash(UPDATE_ORDER), "exec-1");
+            assertEquals(25, updates.length);
+            for (MlfStatementRecord r : read(index, updates)) {
+                assertEquals("exec-1", r.getThread());
+                assertEquals(1, r.getUpdates());
+            }
+            assertEquals(0, index.find(0, "missing").length);
+        }
+    }
+
+    @Test
+    void updateIndexesOnlyAppendedLinesAndResumesOpenStatements() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        query(sb, "exec-1", SELECT_USER, "1(Long)", 1);
+        // 扫描结束时只有 Preparing，Parameters 与 Total 在之后追加
+        line(sb, "exec-2", "==>  Preparing: " + UPDATE_ORDER);
+        write(log, sb);
+
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(2, index.update());
+            assertEquals(0, index.update());
+        }
+
+        sb.setLength(0);
+        line(sb, "exec-2", "==> Parameters: PAID(String), 7(Long)");
+        line(sb, "exec-2", "<==    Updates: 1");
+        query(sb, "exec-1", SELECT_USER, "2(Long)", 0);
+        // 半行不索引
+        sb.append("2025-11-27 15:51:45.000 DEBUG 1 --- [exec-3] c.e.m.UserMapper.selectById : ==>  Prep");
+        append(log, sb);
+
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(2, index.size());
+            assertEquals(1, index.update());
+            assertEquals(3, index.size());
+            assertTrue(index.indexedLength() < Files.size(log));
+
+            List<MlfStatementRecord> updates = read(index, index.find(hash(UPDATE_ORDER), null));
+            assertEquals(1, updates.size());
+            assertEquals("PAID(String), 7(Long)", updates.get(0).getParameters());
+            assertEquals(1, updates.get(0).getUpdates());
+            assertEquals(2, index.find(hash(SELECT_USER), "exec-1").length);
+        }
+    }
+
+    @Test
+    void reopenedIndexIsReusedWithoutRescanning() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) query(sb, "exec-1", SELECT_USER, i + "(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            index.update();
+        }
+        assertTrue(Files.exists(MlfLogIndex.fileFor(log)));
+
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(10, index.size());
+            assertEquals(0, index.update());
+            assertEquals("9(Long)", read(index, index.find(hash(SELECT_USER), "exec-1")).get(9).getParameters());
+        }
+    }
+
+    @Test
+    void rebuildsWhenLogIsRotated() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) query(sb, "exec-1", SELECT_USER, i + "(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            index.update();
+        }
+
+        // 新日志比旧索引长，但开头内容不同
+        sb.setLength(0);
+        for (int i = 0; i < 20; i++) update(sb, "exec-9", UPDATE_ORDER, "NEW(String), " + i + "(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(0, index.size());
+            assertEquals(20, index.update());
+            assertEquals(0, index.find(hash(SELECT_USER), null).length);
+            assertEquals(20, index.find(0, "exec-9").length);
+        }
+    }
+
+    @Test
+    void rebuildsWhenLogIsTruncated() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) query(sb, "exec-1", SELECT_USER, i + "(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            index.update();
+        }
+
+        sb.setLength(0);
+        query(sb, "exec-1", SELECT_USER, "0(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(1, index.update());
+            assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void rebuildsWhenIndexIsCorrupt() throws IOException {
+        Path log = dir.resolve("app.log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) query(sb, "exec-1", SELECT_USER, i + "(Long)", 1);
+        write(log, sb);
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            index.update();
+        }
+
+        Path file = MlfLogIndex.fileFor(log);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        try (MlfLogIndex index = MlfLogIndex.open(log)) {
+            assertEquals(0, index.size());
+            assertEquals(10, index.update());
+            assertEquals(10, index.find(hash(SELECT_USER), "exec-1").length);
+        }
+    }
+
+    private long hash(String sql) {
+        return MlfSqlFingerprint.hash(fingerprint.of(sql));
+    }
+
+    private static List<MlfStatementRecord> read(MlfLogIndex index, long[] indexes) throws IOException {
+        List<MlfStatementRecord> records = new ArrayList<>();
+        index.read(indexes, records::add);
+        return records;
+    }
+
+    private static void query(StringBuilder sb, String thread, String sql, String parameters, int total) {
+        line(sb, thread, "==>  Preparing: " + sql);
+        line(sb, thread, "==> Parameters: " + parameters);
+        line(sb, thread, "<==      Total: " + total);
+    }
+
+    private static void update(StringBuilder sb, String thread, String sql, String parameters, int updates) {
+        line(sb, thread, "==>  Preparing: " + sql);
+        line(sb, thread, "==> Parameters: " + parameters);
+        line(sb, thread, "<==    Updates: " + updates);
+    }
+
+    private static void line(StringBuilder sb, String thread, String message) {
+        sb.append("2025-11-27 15:51:44.123 DEBUG 1 --- [").append(thread).append("] c.e.m.Mapper.call : ")
+                .append(message).append('\n');
+    }
+
+    private static void write(Path log, CharSequence text) throws IOException {
+        Files.write(log, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void append(Path log, CharSequence text) throws IOException {
+        Files.write(log, text.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
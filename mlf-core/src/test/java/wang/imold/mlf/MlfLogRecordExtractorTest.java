@@ -0,0 +1,157 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfLogRecordExtractorTest {
+
+    private static final String SELECT_USER = "SELECT id, name FROM user WHERE id = ?";
+    private static final String SELECT_ORDER = "SELECT id FROM orders WHERE user_id = ?";
+    private static final String UPDATE_ORDER = "UPDATE orders SET status = ? WHERE id = ?";
+
+    @Test
+    void parsesSpringBootLine() {
+        MlfLogLine line = new MlfLogLine();
+        String text = "2025-11-27 15:51:44.123 DEBUG 1 --- [nio-8080-exec-1] c.e.m.UserMapper.selectById"
+                + "     : ==>  Preparing: " + SELECT_USER + " ";
+        assertTrue(line.parse(text, 0, text.length()));
+        assertEquals(MlfLogLine.PREPARING, line.kind);
+        assertEquals("nio-8080-exec-1", line.thread());
+        assertEquals("c.e.m.UserMapper.selectById", line.logger());
+        assertEquals(SELECT_USER, line.payload());
+    }
+
+    @Test
+    void parsesLog4jLineAndCounts() {
+        MlfLogLine line = new MlfLogLine();
+        String text = "[http-nio-8080-exec-2] DEBUG c.e.m.UserMapper.selectById - <==      Total: 12";
+        assertTrue(line.parse(text, 0, text.length()));
+        assertEquals(MlfLogLine.TOTAL, line.kind);
+        assertEquals("http-nio-8080-exec-2", line.thread());
+        assertEquals("c.e.m.UserMapper.selectById", line.logger());
+        assertEquals(12, line.count());
+
+        text = "2025-11-27 15:51:44.123 [main] INFO c.e.Service - done";
+        assertFalse(line.parse(text, 0, text.length()));
+    }
+
+    @Test
+    void pairsInterleavedThreads() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "==>  Preparing: " + SELECT_USER);
+        line(sb, "exec-2", "c.e.m.OrderMapper.update", "==>  Preparing: " + UPDATE_ORDER);
+        line(sb, "exec-2", "c.e.m.OrderMapper.update", "==> Parameters: PAID(String), 7(Long)");
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "==> Parameters: 1(Long)");
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "<==      Total: 1");
+        line(sb, "exec-2", "c.e.m.OrderMapper.update", "<==    Updates: 2");
+
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(sb);
+        assertEquals(2, records.size());
+        MlfStatementRecord select = records.get(0);
+        assertEquals("exec-1", select.getThread());
+        assertEquals("c.e.m.UserMapper.selectById", select.getLogger());
+        assertEquals(SELECT_USER, select.getSql());
+        assertEquals("1(Long)", select.getParameters());
+        assertEquals(1, select.getTotal());
+        assertEquals(-1, select.getUpdates());
+        assertEquals(0, select.getLine());
+        assertEquals(0, select.getOffset());
+
+        MlfStatementRecord update = records.get(1);
+        assertEquals("exec-2", update.getThread());
+        assertEquals(UPDATE_ORDER, update.getSql());
+        assertEquals("PAID(String), 7(Long)", update.getParameters());
+        assertEquals(-1, update.getTotal());
+        assertEquals(2, update.getUpdates());
+        assertEquals(1, update.getLine());
+        assertEquals(sb.indexOf("\n") + 1, update.getOffset());
+    }
+
+    @Test
+    void pairsNestedMappersOnSameThread() {
+        // 同一线程上外层查询的结果处理中触发了嵌套查询，按 Mapper 日志名区分
+        StringBuilder sb = new StringBuilder();
+        line(sb, "main", "c.e.m.UserMapper.selectAll", "==>  Preparing: SELECT id, name FROM user");
+        line(sb, "main", "c.e.m.UserMapper.selectAll", "==> Parameters: ");
+        line(sb, "main", "c.e.m.OrderMapper.selectByUser", "==>  Preparing: " + SELECT_ORDER);
+        line(sb, "main", "c.e.m.OrderMapper.selectByUser", "==> Parameters: 1(Long)");
+        line(sb, "main", "c.e.m.OrderMapper.selectByUser", "<==      Total: 3");
+        line(sb, "main", "c.e.m.UserMapper.selectAll", "<==      Total: 1");
+
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(sb);
+        assertEquals(2, records.size());
+        assertEquals("SELECT id, name FROM user", records.get(0).getSql());
+        assertEquals("", records.get(0).getParameters());
+        assertEquals(1, records.get(0).getTotal());
+        assertEquals(SELECT_ORDER, records.get(1).getSql());
+        assertEquals("1(Long)", records.get(1).getParameters());
+        assertEquals(3, records.get(1).getTotal());
+    }
+
+    @Test
+    void eachBatchParametersLineIsOneRecord() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "c.e.m.OrderMapper.update", "==>  Preparing: " + UPDATE_ORDER);
+        line(sb, "exec-1", "c.e.m.OrderMapper.update", "==> Parameters: PAID(String), 1(Long)");
+        line(sb, "exec-1", "c.e.m.OrderMapper.update", "==> Parameters: PAID(String), 2(Long)");
+        line(sb, "exec-1", "c.e.m.OrderMapper.update", "==> Parameters: SENT(String), 3(Long)");
+
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(sb);
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(UPDATE_ORDER, records.get(i).getSql());
+            assertEquals(i, records.get(i).getSequence());
+            assertEquals(0, records.get(i).getLine());
+            assertEquals(-1, records.get(i).getUpdates());
+        }
+        assertEquals("PAID(String), 1(Long)", records.get(0).getParameters());
+        assertEquals("SENT(String), 3(Long)", records.get(2).getParameters());
+    }
+
+    @Test
+    void sinkReceivesCompletionOrderAndUnfinishedRecordsLast() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "==>  Preparing: " + SELECT_USER);
+        line(sb, "exec-2", "c.e.m.OrderMapper.selectByUser", "==>  Preparing: " + SELECT_ORDER);
+        line(sb, "exec-2", "c.e.m.OrderMapper.selectByUser", "==> Parameters: 1(Long)");
+        line(sb, "exec-2", "c.e.m.OrderMapper.selectByUser", "<==      Total: 0");
+        // 没有 Total 的语句被同一线程的下一条 Preparing 顶替
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "==>  Preparing: " + SELECT_USER + ";");
+        line(sb, "exec-1", "c.e.m.UserMapper.selectById", "==> Parameters: 2(Long)");
+        // 没有对应 Preparing 的行被忽略
+        line(sb, "exec-3", "c.e.m.UserMapper.selectById", "==> Parameters: 3(Long)");
+        line(sb, "exec-3", "c.e.m.UserMapper.selectById", "<==      Total: 1");
+
+        List<MlfStatementRecord> records = new ArrayList<>();
+        MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(records::add);
+        int start = 0;
+        for (int end = sb.indexOf("\n"); end != -1; start = end + 1, end = sb.indexOf("\n", start)) {
+            extractor.accept(sb, start, end, start);
+        }
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).getSequence());
+        assertEquals(0, records.get(1).getSequence());
+        assertNull(records.get(1).getParameters());
+        assertEquals(-1, records.get(1).getTotal());
+
+        extractor.finish();
+        assertEquals(3, records.size());
+        MlfStatementRecord last = records.get(2);
+        assertEquals(2, last.getSequence());
+        assertEquals(SELECT_USER, last.getSql());
+        assertEquals("2(Long)", last.getParameters());
+        assertEquals(4, last.getLine());
+    }
+
+    private static void line(StringBuilder sb, String thread, String logger, String message) {
+        sb.append("2025-11-27 15:51:44.123 DEBUG 1 --- [").append(thread).append("] ").append(logger).append(" : ")
+                .append(message).append('\n');
+    }
+}
@@ -0,0 +1,127 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfNPlusOneDetectorTest {
+
+    private static final String SELECT_ORDERS = "SELECT id FROM orders WHERE user_id = ?";
+    private static final String SELECT_USERS = "SELECT id FROM user";
+
+    private final List<MlfNPlusOneDetector.Alert> alerts = new ArrayList<>();
+
+    @Test
+    void reportsBurstOnOneThread() {
+        StringBuilder sb = new StringBuilder();
+        query(sb, "exec-1", SELECT_USERS, "");
+        for (int i = 1; i <= 12; i++) query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+        query(sb, "exec-1", SELECT_USERS, "");
+
+        MlfNPlusOneDetector detector = detect(sb, 10, 50);
+        assertEquals(1, detector.getAlerts());
+        MlfNPlusOneDetector.Alert alert = alerts.get(0);
+        assertEquals("exec-1", alert.getThread());
+        assertEquals("c.e.m.Mapper.call", alert.getLogger());
+        assertEquals(SELECT_ORDERS, alert.getSql());
+        assertEquals("select id from orders where user_id = ?", alert.getFingerprint());
+        assertEquals(12, alert.getCount());
+        assertEquals(12, alert.getDistinct());
+        assertEquals("1(Long)", alert.getSamples().get(0));
+        assertEquals(3, alert.getFirstLine());
+        assertEquals(36, alert.getLastLine());
+
+        String text = alert.toText(new MlfLogParser());
+        assertTrue(text.startsWith("-- N+1：[exec-1] c.e.m.Mapper.call 执行 12 次，不同参数 12 组，第 4 - 37 行\n"), text);
+        assertTrue(text.contains("--   12(Long)\n"), text);
+        assertTrue(text.endsWith(";"), text);
+    }
+
+    @Test
+    void belowThresholdIsQuiet() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 9; i++) query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+        assertEquals(0, detect(sb, 10, 50).getAlerts());
+    }
+
+    @Test
+    void threadsAreCountedSeparately() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+            query(sb, "exec-2", SELECT_ORDERS, i + "(Long)");
+        }
+        assertEquals(0, detect(sb, 10, 50).getAlerts());
+
+        alerts.clear();
+        assertEquals(2, detect(sb, 5, 50).getAlerts());
+        assertEquals(6, alerts.get(0).getCount());
+        assertEquals(6, alerts.get(1).getCount());
+    }
+
+    @Test
+    void gapLongerThanWindowSplitsBurst() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5; i++) query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+        for (int i = 0; i < 20; i++) {
+            sb.append("2025-11-27 15:51:44.123 INFO 1 --- [exec-1] c.e.Service : step ").append(i).append('\n');
+        }
+        for (int i = 0; i < 5; i++) query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+
+        assertEquals(0, detect(sb, 8, 10).getAlerts());
+        alerts.clear();
+        assertEquals(1, detect(sb, 8, 30).getAlerts());
+        assertEquals(10, alerts.get(0).getCount());
+        // 参数重复，只保留不同的示例
+        assertEquals(5, alerts.get(0).getDistinct());
+        assertEquals(5, alerts.get(0).getSamples().size());
+    }
+
+    @Test
+    void samplesAreCapped() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) query(sb, "exec-1", SELECT_ORDERS, i + "(Long)");
+        detect(sb, 10, 50);
+        MlfNPlusOneDetector.Alert alert = alerts.get(0);
+        assertEquals(100, alert.getDistinct());
+        assertEquals(MlfNPlusOneDetector.MAX_SAMPLES, alert.getSamples().size());
+        assertTrue(alert.toText(new MlfLogParser()).contains("--   ...\n"));
+    }
+
+    @Test
+    void batchParametersAreNotRepeatedQueries() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "exec-1", "==>  Preparing: INSERT INTO orders (user_id) VALUES (?)");
+        for (int i = 0; i < 20; i++) line(sb, "exec-1", "==> Parameters: " + i + "(Long)");
+        assertEquals(0, detect(sb, 10, 50).getAlerts());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new MlfNPlusOneDetector(1, 10, alerts::add));
+        assertThrows(IllegalArgumentException.class, () -> new MlfNPlusOneDetector(2, 0, alerts::add));
+    }
+
+    private MlfNPlusOneDetector detect(CharSequence log, int threshold, long window) {
+        MlfNPlusOneDetector detector = new MlfNPlusOneDetector(threshold, window, alerts::add);
+        MlfLogRecordExtractor.extractAll(log).forEach(detector::accept);
+        detector.finish();
+        return detector;
+    }
+
+    private static void query(StringBuilder sb, String thread, String sql, String parameters) {
+        line(sb, thread, "==>  Preparing: " + sql);
+        line(sb, thread, "==> Parameters: " + parameters);
+        line(sb, thread, "<==      Total: 1");
+    }
+
+    private static void line(StringBuilder sb, String thread, String message) {
+        sb.append("2025-11-27 15:51:44.123 DEBUG 1 --- [").append(thread).append("] c.e.m.Mapper.call : ")
+                .append(message).append('\n');
+    }
+}
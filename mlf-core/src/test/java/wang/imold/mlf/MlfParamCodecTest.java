@@ -0,0 +1,110 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MlfParamCodecTest {
+
+    private final MlfParamCodec codec = new MlfParamCodec();
+
+    @Test
+    void roundTripKeepsTextAndKind() {
+        MlfParamBuffer params = new MlfParamBuffer();
+        add(params, MlfParamBuffer.RAW, "0", "1", "-42", "9223372036854775807", "-9223372036854775808");
+        // 不是规范整数，按原文编码
+        add(params, MlfParamBuffer.RAW, "007", "+5", "-0", "9223372036854775808", "3.14", "true");
+        add(params, MlfParamBuffer.QUOTED, "", "123", "中文, (ok)", "it's\nmulti-line", "😀");
+        add(params, MlfParamBuffer.NULL, "null");
+
+        assertRoundTrip(params);
+    }
+
+    @Test
+    void emptyParameters() {
+        MlfParamBuffer params = new MlfParamBuffer();
+        assertEquals(1, codec.encode(params));
+        assertRoundTrip(params);
+    }
+
+    @Test
+    void integersAreSmallerThanText() {
+        MlfParamBuffer params = new MlfParamBuffer();
+        add(params, MlfParamBuffer.RAW, "1234567890");
+        // 个数 + 标记 + 5 字节 zigzag 变长整数
+        assertEquals(7, codec.encode(params));
+    }
+
+    @Test
+    void decodesFromOffsetAndReturnsEnd() {
+        MlfParamBuffer first = new MlfParamBuffer();
+        add(first, MlfParamBuffer.QUOTED, "a", "b");
+        MlfParamBuffer second = new MlfParamBuffer();
+        add(second, MlfParamBuffer.RAW, "7");
+        add(second, MlfParamBuffer.NULL, "null");
+
+        byte[] a = encode(first);
+        byte[] b = encode(second);
+        byte[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+
+        MlfParamBuffer out = new MlfParamBuffer();
+        StringBuilder scratch = new StringBuilder();
+        int end = MlfParamCodec.decode(joined, 0, out, scratch);
+        assertEquals(a.length, end);
+        assertEquals(describe(first), describe(out));
+        assertEquals(joined.length, MlfParamCodec.decode(joined, end, out, scratch));
+        assertEquals(describe(second), describe(out));
+    }
+
+    @Test
+    void encoderIsReusable() {
+        MlfParamBuffer large = new MlfParamBuffer();
+        for (int i = 0; i < 1000; i++) add(large, MlfParamBuffer.QUOTED, "value-" + i);
+        MlfParamBuffer small = new MlfParamBuffer();
+        add(small, MlfParamBuffer.RAW, "1");
+
+        byte[] expected = encode(small);
+        encode(large);
+        assertArrayEquals(expected, encode(small));
+    }
+
+    @Test
+    void varLongRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        byte[] buf = new byte[10 * values.length];
+        int pos = 0;
+        for (long v : values) pos = MlfParamCodec.writeVarLong(buf, pos, v);
+        int[] read = {0};
+        for (long v : values) assertEquals(v, MlfParamCodec.readVarLong(buf, read));
+        assertEquals(pos, read[0]);
+    }
+
+    private void assertRoundTrip(MlfParamBuffer params) {
+        byte[] encoded = encode(params);
+        MlfParamBuffer out = new MlfParamBuffer();
+        assertEquals(encoded.length, MlfParamCodec.decode(encoded, 0, out, new StringBuilder()));
+        assertEquals(describe(params), describe(out));
+    }
+
+    private byte[] encode(MlfParamBuffer params) {
+        int size = codec.encode(params);
+        assertEquals(size, codec.size());
+        return codec.toByteArray();
+    }
+
+    private static void add(MlfParamBuffer params, byte kind, String... values) {
+        for (String v : values) params.add(v, 0, v.length(), kind);
+    }
+
+    private static String describe(MlfParamBuffer params) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < params.count(); i++) {
+            sb.append(params.kind(i)).append(':').append(params.value(i)).append('\u0000');
+        }
+        return sb.toString();
+    }
+}
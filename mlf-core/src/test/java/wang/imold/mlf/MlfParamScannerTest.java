@@ -0,0 +1,96 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MlfParamScannerTest {
+
+    private final MlfParamBuffer params = new MlfParamBuffer();
+
+    @Test
+    void typedValues() {
+        assertScan("1(Integer), foo(String), 2024-01-01 10:00:00.0(Timestamp), true(Boolean)",
+                "R:1", "Q:foo", "Q:2024-01-01 10:00:00.0", "R:true");
+    }
+
+    @Test
+    void stringsKeepCommasAndParentheses() {
+        assertScan("Tom, Jr.(String), a, b (c)(String), f(x) y(String), 1(Integer)",
+                "Q:Tom, Jr.", "Q:a, b (c)", "Q:f(x) y", "R:1");
+    }
+
+    @Test
+    void unknownSuffixInsideValue() {
+        assertScan("x(String), foo(Word), bar", "Q:x", "Q:foo(Word), bar");
+    }
+
+    @Test
+    void nullOnlyWhenWholeItem() {
+        assertScan("null, 1(Integer), null", "N:null", "R:1", "N:null");
+        assertScan("null,x(String)", "Q:null,x");
+        assertScan("nullable(String), null", "Q:nullable", "N:null");
+        assertScan("null, foo(String)", "N:null", "Q:foo");
+    }
+
+    @Test
+    void untypedValuesAreSplitByComma() {
+        assertScan("1, 'a', null", "R:1", "R:'a'", "N:null");
+    }
+
+    @Test
+    void emptyParameters() {
+        assertScan("");
+        assertScan("   ");
+    }
+
+    @Test
+    void stopsAtLineEnd() {
+        String text = "==> Parameters: 1(Integer), a(String)\n==>  Preparing: select 1";
+        int from = text.indexOf(':') + 1;
+        int end = MlfParamScanner.scan(text, from, params);
+        assertEquals(text.indexOf('\n'), end);
+        assertEquals(2, params.count());
+        assertEquals("a", params.value(1));
+    }
+
+    @Test
+    void hugeInList() {
+        int n = 50000;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(i).append(i % 2 == 0 ? "(Long)" : "(String)");
+        }
+        assertEquals(sb.length(), MlfParamScanner.scan(sb, 0, params));
+        assertEquals(n, params.count());
+        assertEquals(MlfParamBuffer.RAW, params.kind(n - 2));
+        assertEquals("49998", params.value(n - 2));
+        assertEquals(MlfParamBuffer.QUOTED, params.kind(n - 1));
+        assertEquals("49999", params.value(n - 1));
+    }
+
+    @Test
+    void splicesIntoPlaceholders() {
+        MlfLogParser parser = new MlfLogParser();
+        assertEquals("update t set note = 'it''s (ok)', flag = '?' where id = 7",
+                parser.inlineStatement("update t set note = ?, flag = '?' where id = ?", "it's (ok)(String), 7(Long)"));
+        assertEquals("select * from t where a = null and b = ?",
+                parser.inlineStatement("select * from t where a = ? and b = ?", "null"));
+        // 注释与带引号的标识符中的 ? 不是占位符
+        assertEquals("select /* it's ? */ a from t where id = 7",
+                parser.inlineStatement("select /* it's ? */ a from t where id = ?", "7(Long)"));
+        assertEquals("select \"a?b\", `c?` from t where id = 7 -- ?",
+                parser.inlineStatement("select \"a?b\", `c?` from t where id = ? -- ?", "7(Long)"));
+    }
+
+    private void assertScan(String text, String... expected) {
+        params.clear();
+        MlfParamScanner.scan(text, 0, params);
+        String[] actual = new String[params.count()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = "RQN".charAt(params.kind(i)) + ":" + params.value(i);
+        }
+        assertEquals(String.join(" | ", expected), String.join(" | ", actual));
+    }
+}
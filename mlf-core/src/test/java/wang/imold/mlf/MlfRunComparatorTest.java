@@ -0,0 +1,155 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfRunComparatorTest {
+
+    private static final String SELECT_USER = "SELECT id, name FROM user WHERE id = ?";
+    private static final String SELECT_ORDERS = "SELECT id FROM orders WHERE user_id = ?";
+    private static final String UPDATE_ORDER = "UPDATE orders SET status = ? WHERE id = ?";
+    private static final String DELETE_CART = "DELETE FROM cart WHERE user_id = ?";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void classifiesAddedVanishedIncreasedAndDecreased() {
+        MlfRunComparator comparator = new MlfRunComparator(16);
+        repeat(comparator, true, SELECT_USER, 10, 1);
+        repeat(comparator, true, SELECT_ORDERS, 10, 5);
+        repeat(comparator, true, DELETE_CART, 1, 1);
+        repeat(comparator, true, UPDATE_ORDER, 10, 1);
+
+        repeat(comparator, false, SELECT_USER, 10, 1);
+        repeat(comparator, false, SELECT_ORDERS, 50, 5);
+        repeat(comparator, false, UPDATE_ORDER, 5, 1);
+        repeat(comparator, false, "SELECT * FROM coupon WHERE user_id = ?", 2, 0);
+
+        MlfRunComparator.Result result = comparator.compare(10, 1, 10);
+        assertTrue(result.isExact());
+        assertTrue(result.isRegression());
+
+        assertEquals(1, result.getAdded().size());
+        assertEquals("select * from coupon where user_id = ?", result.getAdded().get(0).getFingerprint());
+        assertEquals(0, result.getAdded().get(0).getBaseCount());
+        assertEquals(2, result.getAdded().get(0).getCandidateCount());
+
+        assertEquals(1, result.getVanished().size());
+        assertEquals("delete from cart where user_id = ?", result.getVanished().get(0).getFingerprint());
+
+        assertEquals(1, result.getIncreased().size());
+        MlfRunComparator.Diff increased = result.getIncreased().get(0);
+        assertEquals("select id from orders where user_id = ?", increased.getFingerprint());
+        assertEquals(40, increased.countDelta());
+        assertEquals(50, increased.getBaseRows());
+        assertEquals(250, increased.getCandidateRows());
+
+        assertEquals(1, result.getDecreased().size());
+        assertEquals(-5, result.getDecreased().get(0).countDelta());
+
+        String text = result.toText();
+        assertTrue(text.startsWith("-- 基线 31 条语句，候选 67 条语句；新增 1，消失 1，增加 1，减少 1\n"), text);
+        assertTrue(text.contains("+40"), text);
+    }
+
+    @Test
+    void smallChangesAreNoise() {
+        MlfRunComparator comparator = new MlfRunComparator(16);
+        repeat(comparator, true, SELECT_USER, 100, 1);
+        repeat(comparator, false, SELECT_USER, 105, 1);
+        repeat(comparator, true, SELECT_ORDERS, 1, 0);
+        repeat(comparator, false, SELECT_ORDERS, 1, 5);
+
+        // 次数变化 5%、行数从 0 变 5 都低于阈值
+        MlfRunComparator.Result result = comparator.compare(10, 1, 10);
+        assertFalse(result.isRegression());
+        assertTrue(result.getIncreased().isEmpty());
+
+        // 次数变化 5 次但低于最小绝对变化
+        result = comparator.compare(1, 10, 10);
+        assertFalse(result.isRegression());
+
+        result = comparator.compare(1, 1, 5);
+        assertEquals(2, result.getIncreased().size());
+    }
+
+    @Test
+    void capacityOverflowIsNotExact() {
+        MlfRunComparator comparator = new MlfRunComparator(2);
+        for (int i = 0; i < 5; i++) repeat(comparator, true, "SELECT * FROM t" + i, 1, 0);
+        assertFalse(comparator.compare(10, 1, 10).isExact());
+        assertTrue(comparator.compare(10, 1, 10).toText().contains("指纹数超过统计容量"));
+    }
+
+    @Test
+    void cliExitCodeReflectsRegression() throws IOException {
+        Path baseline = dir.resolve("baseline.log");
+        Path same = dir.resolve("same.log");
+        Path worse = dir.resolve("worse.log");
+        Path report = dir.resolve("report.txt");
+        write(baseline, log(SELECT_USER, 10));
+        write(same, log(SELECT_USER, 10));
+        write(worse, log(SELECT_USER, 10) + log(SELECT_ORDERS, 20));
+
+        assertEquals(0, MlfCli.run(new String[]{"--compare", baseline.toString(), "-o", report.toString(), same.toString()}));
+        assertTrue(read(report).startsWith("-- 基线 10 条语句，候选 10 条语句；新增 0，消失 0，增加 0，减少 0\n"));
+
+        assertEquals(MlfCli.EXIT_REGRESSION,
+                MlfCli.run(new String[]{"--compare", baseline.toString(), "-o", report.toString(), worse.toString()}));
+        assertTrue(read(report).contains("-- 新增语句\n"));
+
+        // 反过来只有消失的语句，不算回归
+        assertEquals(0, MlfCli.run(new String[]{"--compare", worse.toString(), "-o", report.toString(), baseline.toString()}));
+
+        assertEquals(2, MlfCli.run(new String[]{"--compare", dir.resolve("missing.log").toString(), same.toString()}));
+    }
+
+    private static void repeat(MlfRunComparator comparator, boolean baseline, String sql, int times, int rows) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            boolean update = sql.startsWith("UPDATE") || sql.startsWith("DELETE");
+            line(sb, "==>  Preparing: " + sql);
+            line(sb, "==> Parameters: " + i + "(Long)");
+            line(sb, (update ? "<==    Updates: " : "<==      Total: ") + rows);
+        }
+        for (MlfStatementRecord record : MlfLogRecordExtractor.extractAll(sb)) {
+            if (baseline) {
+                comparator.acceptBaseline(record);
+            } else {
+                comparator.acceptCandidate(record);
+            }
+        }
+    }
+
+    private static String log(String sql, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            line(sb, "==>  Preparing: " + sql);
+            line(sb, "==> Parameters: " + i + "(Long)");
+            line(sb, "<==      Total: 1");
+        }
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String message) {
+        sb.append("2025-11-27 15:51:44.123 DEBUG 1 --- [exec-1] c.e.m.Mapper.call : ").append(message).append('\n');
+    }
+
+    private static void write(Path path, String text) throws IOException {
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
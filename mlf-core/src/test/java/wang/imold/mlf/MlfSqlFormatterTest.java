@@ -0,0 +1,270 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 排版结果的黄金输出。除 {@link #differsFromRegexFormatterWhereIntended()} 外，
+ * 期望值均与改写前基于正则与子查询占位符的格式化器逐字节一致。
+ */
+class MlfSqlFormatterTest {
+
+    private final MlfLogParser parser = new MlfLogParser();
+
+    @Test
+    void simpleSelect() {
+        assertFormat("select id, name from user where id = ?",
+                "SELECT",
+                "    id,",
+                "    name",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    id = ?");
+    }
+
+    @Test
+    void whitespaceAndLineBreaksAreNormalized() {
+        assertFormat("SELECT  id ,\n  name\nFROM   user\nWHERE  id = ?",
+                "SELECT",
+                "    id,",
+                "    name",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    id = ?");
+    }
+
+    @Test
+    void subqueriesInFromAndWhere() {
+        assertFormat("select * from (select id, name from user where status = ?) t"
+                        + " where t.id in (select user_id from orders where amount > ?)",
+                "SELECT",
+                "    *",
+                "FROM",
+                "    (",
+                "        SELECT",
+                "            id,",
+                "            name",
+                "        FROM",
+                "            user",
+                "        WHERE",
+                "            status = ?",
+                "    ) t",
+                "WHERE",
+                "    t.id IN (",
+                "        SELECT",
+                "            user_id",
+                "        FROM",
+                "            orders",
+                "        WHERE",
+                "            amount > ?",
+                "    )");
+    }
+
+    @Test
+    void nestedSubqueries() {
+        assertFormat("select a.id from a where exists (select 1 from b where b.a_id = a.id"
+                        + " and b.c in (select c.id from c where c.x = (select max(x) from d)))",
+                "SELECT",
+                "    a.id",
+                "FROM",
+                "    a",
+                "WHERE",
+                "    EXISTS (",
+                "        SELECT",
+                "            1",
+                "        FROM",
+                "            b",
+                "        WHERE",
+                "            b.a_id = a.id",
+                "            AND b.c IN (",
+                "                SELECT",
+                "                    c.id",
+                "                FROM",
+                "                    c",
+                "                WHERE",
+                "                    c.x = (",
+                "                        SELECT",
+                "                            MAX(x)",
+                "                        FROM",
+                "                            d",
+                "                    )",
+                "            )",
+                "    )");
+    }
+
+    @Test
+    void fifteenLevelsOfNesting() {
+        int depth = 15;
+        StringBuilder sql = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sql.append("select id from t").append(i).append(" where id in (");
+            String indent = indent(2 * i);
+            expected.append(indent).append("SELECT\n")
+                    .append(indent).append("    id\n")
+                    .append(indent).append("FROM\n")
+                    .append(indent).append("    t").append(i).append('\n')
+                    .append(indent).append("WHERE\n")
+                    .append(indent).append("    id IN (\n");
+        }
+        sql.append("select 1 from dual");
+        String innermost = indent(2 * depth);
+        expected.append(innermost).append("SELECT\n")
+                .append(innermost).append("    1\n")
+                .append(innermost).append("FROM\n")
+                .append(innermost).append("    dual");
+        for (int i = depth - 1; i >= 0; i--) {
+            sql.append(')');
+            expected.append('\n').append(indent(2 * i + 1)).append(')');
+        }
+        assertEquals(expected.toString(), parser.formatRawSql(sql.toString()));
+    }
+
+    @Test
+    void fieldCommentsFollowTheirField() {
+        assertFormat("select id, -- 主键\n name -- 名称\n from user where id = ?",
+                "SELECT",
+                "    id, -- 主键",
+                "    name -- 名称",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    id = ?");
+    }
+
+    @Test
+    void keywordsInsideStringLiteralsAreKept() {
+        assertFormat("select id from user where name = 'select from where' and remark like ?",
+                "SELECT",
+                "    id",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    name = 'select from where'",
+                "    AND remark LIKE ?");
+    }
+
+    @Test
+    void functionsAndModifiersAreUppercased() {
+        assertFormat("select distinct name from user where deleted is not null order by name asc",
+                "SELECT",
+                "    DISTINCT name",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    deleted IS NOT NULL",
+                "ORDER BY",
+                "    name ASC");
+    }
+
+    @Test
+    void outerParenthesesAreRemoved() {
+        assertFormat("(select id from user where id = ?)",
+                "SELECT",
+                "    id",
+                "FROM",
+                "    user",
+                "WHERE",
+                "    id = ?");
+    }
+
+    @Test
+    void statementsWithoutSelectAreKeptOnOneLine() {
+        assertFormat("insert into user (id, name, status) values (?, ?, ?)",
+                "insert into user (id, name, status) values (?, ?, ?)");
+    }
+
+    @Test
+    void formatsMybatisLog() {
+        String log = "==>  Preparing: select * from t where a in (?, ?, ?) and b = ?\n"
+                + "==> Parameters: 1(Integer), 2(Integer), 3(Integer), x(String)";
+        assertEquals(lines(
+                "SELECT",
+                "    *",
+                "FROM",
+                "    t",
+                "WHERE",
+                "    a IN (1, 2, 3)",
+                "    AND b = 'x'"), parser.formatMybatisLog(log));
+        assertNull(parser.formatMybatisLog("==> Parameters: 1(Long)"));
+    }
+
+    @Test
+    void formatToWritesTheSameTextAsFormatRawSql() throws IOException {
+        String sql = "select u.id from user u where u.id in (select user_id from orders where amount > ?)";
+        StringBuilder out = new StringBuilder("-- ");
+        parser.formatTo(sql, out);
+        assertEquals("-- " + parser.formatRawSql(sql), out.toString());
+    }
+
+    @Test
+    void budgetIsCheckedForEveryStatement() throws InterruptedException {
+        String sql = "select id from user where id = ?";
+        MlfFormatBudget canceled = MlfFormatBudget.of(1, 0, () -> true);
+        assertThrows(MlfFormatBudget.CanceledException.class,
+                () -> canceled.call(() -> parser.formatStatement(sql, "1(Long)")));
+
+        MlfFormatBudget expired = MlfFormatBudget.of(1, 0, () -> false);
+        Thread.sleep(5);
+        assertEquals("select id from user where id = 1", expired.call(() -> parser.formatStatement(sql, "1(Long)")));
+        assertTrue(expired.isExceeded());
+
+        MlfFormatBudget ample = MlfFormatBudget.of(60_000, 0, () -> false);
+        assertTrue(ample.call(() -> parser.formatStatement(sql, "1(Long)")).startsWith("SELECT\n"));
+        assertFalse(ample.isExceeded());
+    }
+
+    /**
+     * 与旧格式化器有意不同之处：JOIN 修饰词与 LIMIT 按关键字处理、BETWEEN ... AND 不拆行、行尾不留空格，
+     * 关键字在整条语句中统一大写
+     */
+    @Test
+    void differsFromRegexFormatterWhereIntended() {
+        assertFormat("select u.id, u.name as user_name, count(o.id) cnt from user u left join orders o on o.user_id = u.id"
+                        + " where u.status = ? and o.created_at between ? and ? group by u.id, u.name"
+                        + " having count(o.id) > ? order by cnt desc limit ?",
+                "SELECT",
+                "    u.id,",
+                "    u.name AS user_name,",
+                "    COUNT(o.id) cnt",
+                "FROM",
+                "    user u",
+                "    LEFT JOIN orders o ON o.user_id = u.id",
+                "WHERE",
+                "    u.status = ?",
+                "    AND o.created_at BETWEEN ? AND ?",
+                "GROUP BY",
+                "    u.id, u.name",
+                "HAVING",
+                "    COUNT(o.id) > ?",
+                "ORDER BY",
+                "    cnt DESC",
+                "LIMIT",
+                "    ?");
+        assertFormat("delete from orders where user_id = ? or status = ?",
+                "delete FROM orders WHERE user_id = ? OR status = ?");
+    }
+
+    private void assertFormat(String sql, String... expected) {
+        assertEquals(lines(expected), parser.formatRawSql(sql));
+    }
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines);
+    }
+
+    private static String indent(int level) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < level; i++) sb.append("    ");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfSqlInlinerTest {
+
+    private final MlfSqlInliner inliner = new MlfSqlInliner(16, 4);
+
+    @Test
+    void batchParametersReuseTemplateUntilResult() {
+        assertTrue(inliner.preparing("exec-1", "==>  Preparing: UPDATE t SET a = ? WHERE id = ?"));
+        assertEquals("UPDATE t SET a = 'x' WHERE id = 1", executable("exec-1", "==> Parameters: x(String), 1(Long)"));
+        assertEquals("UPDATE t SET a = 'y' WHERE id = 2", executable("exec-1", "==> Parameters: y(String), 2(Long)"));
+        assertTrue(inliner.completed("exec-1", "<==    Updates: 2"));
+        assertEquals(0, inliner.pendingThreads());
+        assertFalse(inliner.appendExecutable("exec-1", "==> Parameters: z(String), 3(Long)", false, new StringBuilder()));
+    }
+
+    @Test
+    void nestedQueryKeepsOuterTemplate() {
+        inliner.preparing("main", "==>  Preparing: SELECT * FROM user WHERE id = ?");
+        inliner.preparing("main", "==>  Preparing: SELECT * FROM orders WHERE user_id = ? AND status = ?");
+        assertEquals("SELECT * FROM orders WHERE user_id = 1 AND status = 'PAID'",
+                executable("main", "==> Parameters: 1(Long), PAID(String)"));
+        assertTrue(inliner.completed("main", "<==      Total: 3"));
+        assertEquals("SELECT * FROM user WHERE id = 1", executable("main", "==> Parameters: 1(Long)"));
+        assertFalse(inliner.completed("main", "Total: 3 rows"));
+    }
+
+    @Test
+    void mismatchedParameterCountKeepsRawMessage() {
+        // 新语句的 Preparing 行丢失时，Parameters 不能填入上一条语句的模板
+        inliner.preparing("exec-1", "==>  Preparing: SELECT * FROM user WHERE id = ?");
+        StringBuilder out = new StringBuilder("prefix ");
+        assertFalse(inliner.appendExecutable("exec-1", "==> Parameters: 1(Long), 2(Long)", false, out));
+        assertFalse(inliner.appendExecutable("exec-1", "==> Parameters: 1(Long), 2(Long)", true, out));
+        assertEquals("prefix ", out.toString());
+    }
+
+    private String executable(String thread, String message) {
+        StringBuilder out = new StringBuilder();
+        assertTrue(inliner.appendExecutable(thread, message, false, out), message);
+        return out.toString();
+    }
+}
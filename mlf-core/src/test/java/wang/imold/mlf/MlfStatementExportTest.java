@@ -0,0 +1,132 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfStatementExportTest {
+
+    private final MlfLogParser parser = new MlfLogParser();
+
+    @Test
+    void plainRoundTrip() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    void compressedRoundTrip() throws IOException {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    void compressionShrinksRepetitiveStatements() throws IOException {
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(log(5000));
+        assertTrue(export(records, true).length < export(records, false).length / 2);
+    }
+
+    @Test
+    void emptyExport() throws IOException {
+        for (boolean compress : new boolean[]{false, true}) {
+            byte[] bytes = export(new ArrayList<>(), compress);
+            assertEquals(MlfStatementExport.MAGIC.length + 1, bytes.length);
+            try (MlfStatementExport.Reader reader = new MlfStatementExport.Reader(new ByteArrayInputStream(bytes))) {
+                assertNull(reader.read());
+            }
+        }
+    }
+
+    @Test
+    void finishKeepsStreamOpenAndRejectsMoreStatements() throws IOException {
+        MlfStatementRecord record = MlfLogRecordExtractor.extractAll(log(1)).get(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MlfStatementExport.Writer writer = new MlfStatementExport.Writer(out, false);
+        writer.add(record);
+        writer.finish();
+        int size = out.size();
+        out.write('x');
+        assertEquals(size + 1, out.size());
+        assertEquals(1, writer.count());
+        assertThrows(IllegalStateException.class, () -> writer.add(record));
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        byte[] bytes = {'M', 'L', 'F', 'I', 0};
+        assertThrows(IOException.class, () -> new MlfStatementExport.Reader(new ByteArrayInputStream(bytes)));
+    }
+
+    private void assertRoundTrip(boolean compress) throws IOException {
+        // 超过一块（4096 条）
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(log(10000));
+        assertEquals(10000, records.size());
+        byte[] bytes = export(records, compress);
+
+        List<MlfCapturedStatement> statements = new ArrayList<>();
+        try (MlfStatementExport.Reader reader = new MlfStatementExport.Reader(new ByteArrayInputStream(bytes))) {
+            List<MlfCapturedStatement> block;
+            while ((block = reader.read()) != null) statements.addAll(block);
+        }
+        assertEquals(records.size(), statements.size());
+        for (int i = 0; i < records.size(); i++) {
+            MlfStatementRecord r = records.get(i);
+            MlfCapturedStatement s = statements.get(i);
+            assertEquals(r.getSql(), s.getSql());
+            assertEquals(r.getThread(), s.getThread());
+            assertEquals(r.getLogger(), s.getStatementId());
+            assertEquals(MlfStatementExport.toMillis(r.getStartTime()), s.getTime());
+            assertEquals(r.getLatencyMicros(), s.getElapsedMicros());
+            assertEquals(r.getUpdates() >= 0 ? r.getUpdates() : r.getTotal(), s.getRows());
+            assertEquals(parser.formatStatement(r.getSql(), r.getParameters()), s.format(parser));
+        }
+        assertTrue(statements.get(0).format(parser).contains("status = 'PAID, 含逗号'"));
+        assertTrue(statements.get(1).format(parser).contains("id = -499"));
+    }
+
+    private static byte[] export(List<MlfStatementRecord> records, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MlfStatementExport.Writer writer = new MlfStatementExport.Writer(out, compress)) {
+            for (MlfStatementRecord record : records) writer.add(record);
+            assertEquals(records.size(), writer.count());
+        }
+        return out.toByteArray();
+    }
+
+    /** n 条语句，两个线程、查询与更新交替，参数包含字符串、整数、小数与 null */
+    private static String log(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            String thread = "exec-" + (i % 2 + 1);
+            int millis = i % 1000;
+            String start = String.format("2025-11-27 15:%02d:%02d.%03d", i / 60000 % 60, i / 1000 % 60, millis);
+            String end = String.format("2025-11-27 15:%02d:%02d.%03d", i / 60000 % 60, i / 1000 % 60, Math.min(999, millis + 3));
+            if (i % 3 == 0) {
+                line(sb, start, thread, "c.e.m.OrderMapper.update",
+                        "==>  Preparing: UPDATE orders SET status = ?, amount = ? WHERE id = ?");
+                line(sb, start, thread, "c.e.m.OrderMapper.update",
+                        "==> Parameters: PAID, 含逗号(String), " + i + ".50(BigDecimal), " + i + "(Long)");
+                line(sb, end, thread, "c.e.m.OrderMapper.update", "<==    Updates: 1");
+            } else {
+                line(sb, start, thread, "c.e.m.UserMapper.selectById",
+                        "==>  Preparing: SELECT id, name FROM user WHERE id = ? AND deleted_at IS ?");
+                line(sb, start, thread, "c.e.m.UserMapper.selectById",
+                        "==> Parameters: " + (i - 500) + "(Integer), null");
+                line(sb, end, thread, "c.e.m.UserMapper.selectById", "<==      Total: " + (i % 5));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String time, String thread, String logger, String message) {
+        sb.append(time).append(" DEBUG 1 --- [").append(thread).append("] ").append(logger).append(" : ")
+                .append(message).append('\n');
+    }
+}
@@ -0,0 +1,111 @@
+package wang.imold.mlf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MlfStatementHistoryTest {
+
+    private static final String SELECT_ITEMS = "select id, qty from order_item where order_id = ?";
+    private static final String SELECT_ORDER = "select id, user_id from orders where id = ?";
+    private static final String UPDATE_USER = "update `user` set name = ? where id = ?";
+
+    private final MlfStatementHistory history = new MlfStatementHistory(64L << 20);
+    private final MlfLogParser parser = new MlfLogParser();
+
+    @Test
+    void searchesByTableAndColumnNewestFirst() {
+        history.add(SELECT_ITEMS, "1(Long)", 1000, 2, -1);
+        history.add(SELECT_ORDER, "5(Long)", 2000, 1, -1);
+        history.add(SELECT_ITEMS, "7(Long)", 3000, 3, -1);
+        history.add(UPDATE_USER, "Tom(String), 9(Long)", 4000, -1, 1);
+
+        List<MlfStatementHistory.Hit> hits = history.search("ORDER_ITEM", 0, 10);
+        assertEquals(2, hits.size());
+        assertEquals(3000, hits.get(0).getTime());
+        assertEquals(3, hits.get(0).getTotal());
+        assertEquals(SELECT_ITEMS, hits.get(0).getSql());
+        assertEquals(1000, hits.get(1).getTime());
+
+        assertEquals(1, history.search("user", 0, 10).size());
+        assertEquals(1, history.search("id user_id", 0, 10).size());
+        assertEquals(3, history.search("order*", 0, 10).size());
+        assertEquals(0, history.search("order_item name", 0, 10).size());
+        assertEquals(0, history.search("missing", 0, 10).size());
+        assertEquals(4, history.search("", 0, 10).size());
+    }
+
+    @Test
+    void keywordsAreNotIndexed() {
+        history.add(UPDATE_USER, "Tom(String), 9(Long)", 1000, -1, 1);
+        assertEquals(0, history.search("update", 0, 10).size());
+        assertEquals(0, history.search("where", 0, 10).size());
+        assertEquals(1, history.search("name", 0, 10).size());
+
+        // 与关键字同名的列仍然可以检索，作为结构的 ORDER BY、LEFT JOIN 不建索引
+        history.add("select id, start, `order` from task t left join job j on j.id = t.job_id"
+                + " where t.left > ? order by start", "1(Integer)", 2000, 1, -1);
+        assertEquals(1, history.search("start", 0, 10).size());
+        assertEquals(1, history.search("order left", 0, 10).size());
+        assertEquals(0, history.search("by", 0, 10).size());
+        assertEquals(0, history.search("join", 0, 10).size());
+        assertEquals(0, history.search("where", 0, 10).size());
+    }
+
+    @Test
+    void sinceAndLimit() {
+        for (int i = 1; i <= 10; i++) history.add(SELECT_ITEMS, i + "(Long)", i * 1000L, 1, -1);
+        List<MlfStatementHistory.Hit> hits = history.search("order_item", 7000, 10);
+        assertEquals(4, hits.size());
+        assertEquals(10000, hits.get(0).getTime());
+        assertEquals(7000, hits.get(3).getTime());
+        assertEquals(2, history.search("order_item", 0, 2).size());
+    }
+
+    @Test
+    void timeNeverGoesBackwards() {
+        history.add(SELECT_ITEMS, "1(Long)", 5000, 1, -1);
+        history.add(SELECT_ITEMS, "2(Long)", 4000, 1, -1);
+        assertEquals(5000, history.search("", 0, 1).get(0).getTime());
+    }
+
+    @Test
+    void hitFormatsWithDecodedParameters() {
+        history.add(UPDATE_USER, "Tom, Jr.(String), 9(Long)", 1000, -1, 1);
+        MlfStatementHistory.Hit hit = history.search("user", 0, 1).get(0);
+        assertEquals(1, hit.getUpdates());
+        assertEquals(parser.formatStatement(UPDATE_USER, "Tom, Jr.(String), 9(Long)"), hit.format(parser));
+    }
+
+    @Test
+    void evictsOldestBlocksBeyondMemoryCap() {
+        MlfStatementHistory small = new MlfStatementHistory(2 << 20);
+        int n = 300_000;
+        for (int i = 0; i < n; i++) {
+            small.add("select * from t" + (i % 500) + " where id = ?", i + "(Long)", i, 1, -1);
+        }
+        assertEquals(n, small.addedCount());
+        assertTrue(small.size() < n, "最早的记录应被淘汰");
+        assertTrue(small.memoryBytes() <= 2 << 20, small.toString());
+        // 保留的是最新的记录
+        assertEquals(n - 1, small.search("", 0, 1).get(0).getTime());
+        assertEquals(10, small.search("t499", 0, 10).size());
+    }
+
+    @Test
+    void clearResetsEverything() {
+        history.add(SELECT_ITEMS, "1(Long)", 5000, 1, -1);
+        history.clear();
+        assertEquals(0, history.size());
+        assertEquals(0, history.templateCount());
+        assertEquals(0, history.addedCount());
+        assertEquals(0, history.memoryBytes());
+        assertEquals(0, history.search("order_item", 0, 10).size());
+
+        history.add(SELECT_ITEMS, "1(Long)", 1000, 1, -1);
+        assertEquals(1000, history.search("order_item", 0, 1).get(0).getTime());
+    }
+}
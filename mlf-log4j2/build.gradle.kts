@@ -0,0 +1,22 @@
+plugins {
+    `java-library`
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    api(project(":mlf-core"))
+    // 由使用方的应用提供；注解处理器生成 Log4j2Plugins.dat，配置中无需再声明 packages
+    compileOnly("org.apache.logging.log4j:log4j-core:2.23.1")
+    annotationProcessor("org.apache.logging.log4j:log4j-core:2.23.1")
+}
+
+tasks.withType<JavaCompile> {
+    options.release.set(8)
+    options.encoding = "UTF-8"
+}
@@ -0,0 +1,47 @@
+package wang.imold.mlf.log4j2;
+
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import wang.imold.mlf.MlfSqlInliner;
+
+/**
+ * Log4j2 过滤器：暂存 MyBatis 的 Preparing 模板，命中时返回 onMatch（默认 DENY，即丢弃该行），遇到 Total / Updates 行时移除模板；
+ * 由同一 appender 布局中的 {@code %mlfSql}（{@link MlfSqlPatternConverter}）在 Parameters 行输出可执行 SQL。
+ * <pre>
+ * &lt;File name="sql" fileName="logs/sql.log"&gt;
+ *     &lt;MlfPreparingFilter/&gt;
+ *     &lt;PatternLayout pattern="%d [%t] %logger - %mlfSql%n"/&gt;
+ * &lt;/File&gt;
+ * </pre>
+ * 只处理 appender 级别的 {@link #filter(LogEvent)}，配合异步 Logger 时在后台线程中执行；Logger 级别的调用一律返回 NEUTRAL。
+ */
+@Plugin(name = "MlfPreparingFilter", category = Node.CATEGORY, elementType = Filter.ELEMENT_TYPE, printObject = true)
+public final class MlfPreparingFilter extends AbstractFilter {
+
+    private MlfPreparingFilter(Result onMatch, Result onMismatch) {
+        super(onMatch, onMismatch);
+    }
+
+    @Override
+    public Result filter(LogEvent event) {
+        String message = event.getMessage().getFormattedMessage();
+        if (message == null) return onMismatch;
+        MlfSqlInliner inliner = MlfSqlInliner.shared();
+        if (inliner.preparing(event.getThreadName(), message)) return onMatch;
+        // 结果行表示语句已执行完，之后的 Parameters 不能再用它的模板
+        inliner.completed(event.getThreadName(), message);
+        return onMismatch;
+    }
+
+    @PluginFactory
+    public static MlfPreparingFilter createFilter(@PluginAttribute("onMatch") Result onMatch,
+                                                  @PluginAttribute("onMismatch") Result onMismatch) {
+        return new MlfPreparingFilter(onMatch != null ? onMatch : Result.DENY,
+                onMismatch != null ? onMismatch : Result.NEUTRAL);
+    }
+}
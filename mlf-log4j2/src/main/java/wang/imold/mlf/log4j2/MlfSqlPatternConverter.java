@@ -0,0 +1,46 @@
+package wang.imold.mlf.log4j2;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.pattern.ConverterKeys;
+import org.apache.logging.log4j.core.pattern.LogEventPatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternConverter;
+import wang.imold.mlf.MlfSqlInliner;
+
+/**
+ * Log4j2 转换符 {@code %mlfSql}：MyBatis 的 Parameters 行输出为填好参数的可执行 SQL，其余消息原样输出（等同 {@code %m}）。
+ * <pre>
+ * &lt;PatternLayout pattern="%d [%t] %-5level %logger - %mlfSql%n"/&gt;
+ * </pre>
+ * {@code %mlfSql{pretty}} 输出排版后的多行 SQL。需要配合 {@link MlfPreparingFilter} 暂存 Preparing 行；
+ * 使用异步 Logger 或 AsyncAppender 时，配对与填充都在后台线程中进行，直接写入布局的 StringBuilder。
+ */
+@Plugin(name = "MlfSqlPatternConverter", category = PatternConverter.CATEGORY)
+@ConverterKeys({"mlfSql"})
+public final class MlfSqlPatternConverter extends LogEventPatternConverter {
+
+    static final String EXECUTABLE = "==>  Executable: ";
+
+    private final boolean pretty;
+
+    private MlfSqlPatternConverter(boolean pretty) {
+        super("MlfSql", "mlfSql");
+        this.pretty = pretty;
+    }
+
+    public static MlfSqlPatternConverter newInstance(String[] options) {
+        return new MlfSqlPatternConverter(options != null && options.length > 0 && "pretty".equalsIgnoreCase(options[0]));
+    }
+
+    @Override
+    public void format(LogEvent event, StringBuilder toAppendTo) {
+        String message = event.getMessage().getFormattedMessage();
+        if (message != null && MlfSqlInliner.isParameters(message)) {
+            int mark = toAppendTo.length();
+            toAppendTo.append(EXECUTABLE);
+            if (MlfSqlInliner.shared().appendExecutable(event.getThreadName(), message, pretty, toAppendTo)) return;
+            toAppendTo.setLength(mark);
+        }
+        toAppendTo.append(message);
+    }
+}
@@ -0,0 +1,21 @@
+plugins {
+    `java-library`
+}
+
+group = rootProject.group
+version = rootProject.version
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    api(project(":mlf-core"))
+    // 由使用方的应用提供
+    compileOnly("ch.qos.logback:logback-classic:1.2.13")
+}
+
+tasks.withType<JavaCompile> {
+    options.release.set(8)
+    options.encoding = "UTF-8"
+}
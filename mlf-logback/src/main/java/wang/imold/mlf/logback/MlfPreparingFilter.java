@@ -0,0 +1,43 @@
+package wang.imold.mlf.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+import wang.imold.mlf.MlfSqlInliner;
+
+/**
+ * Logback 过滤器：暂存 MyBatis 的 Preparing 模板并（默认）丢弃该行，遇到 Total / Updates 行时移除模板，由同一 appender 上的 {@link MlfSqlConverter}
+ * 在 Parameters 行输出完整的可执行 SQL，每条语句只写一行日志。
+ * <pre>
+ * &lt;filter class="wang.imold.mlf.logback.MlfPreparingFilter"&gt;
+ *     &lt;dropPreparing&gt;true&lt;/dropPreparing&gt;
+ * &lt;/filter&gt;
+ * </pre>
+ * 配置在 {@code AsyncAppender} 引用的 appender 上时在后台线程中执行，不占用业务线程。
+ */
+public class MlfPreparingFilter extends Filter<ILoggingEvent> {
+
+    private boolean dropPreparing = true;
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        String message = event.getFormattedMessage();
+        if (message == null) return FilterReply.NEUTRAL;
+        MlfSqlInliner inliner = MlfSqlInliner.shared();
+        if (!inliner.preparing(event.getThreadName(), message)) {
+            // 结果行表示语句已执行完，之后的 Parameters 不能再用它的模板
+            inliner.completed(event.getThreadName(), message);
+            return FilterReply.NEUTRAL;
+        }
+        return dropPreparing ? FilterReply.DENY : FilterReply.NEUTRAL;
+    }
+
+    public boolean isDropPreparing() {
+        return dropPreparing;
+    }
+
+    /** 为 false 时保留 Preparing 行，只额外输出可执行 SQL */
+    public void setDropPreparing(boolean dropPreparing) {
+        this.dropPreparing = dropPreparing;
+    }
+}
@@ -0,0 +1,58 @@
+package wang.imold.mlf.logback;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import wang.imold.mlf.MlfSqlInliner;
+
+/**
+ * Logback 转换符 {@code %mlfSql}：MyBatis 的 Parameters 行输出为填好参数的可执行 SQL，其余消息原样输出（等同 {@code %msg}）。
+ * <pre>
+ * &lt;conversionRule conversionWord="mlfSql" converterClass="wang.imold.mlf.logback.MlfSqlConverter"/&gt;
+ * &lt;pattern&gt;%d [%thread] %-5level %logger - %mlfSql%n&lt;/pattern&gt;
+ * </pre>
+ * {@code %mlfSql{pretty}} 输出排版后的多行 SQL。需要配合 {@link MlfPreparingFilter} 暂存 Preparing 行；
+ * 放在 {@code AsyncAppender}（{@code neverBlock=true}）之后的 appender 上时，配对与填充都在后台线程中进行。
+ */
+public class MlfSqlConverter extends ClassicConverter {
+
+    static final String EXECUTABLE = "==>  Executable: ";
+
+    private boolean pretty;
+
+    @Override
+    public void start() {
+        pretty = "pretty".equalsIgnoreCase(getFirstOption());
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        String message = event.getFormattedMessage();
+        if (message == null || !MlfSqlInliner.isParameters(message)) return message;
+        StringBuilder sb = new StringBuilder(message.length() << 1);
+        return append(event, message, sb) ? sb.toString() : message;
+    }
+
+    /** 没有宽度 / 对齐设置时直接写入布局的 StringBuilder，不产生中间字符串 */
+    @Override
+    public void write(StringBuilder buf, ILoggingEvent event) {
+        if (getFormattingInfo() != null) {
+            super.write(buf, event);
+            return;
+        }
+        String message = event.getFormattedMessage();
+        if (message == null || !MlfSqlInliner.isParameters(message)) {
+            buf.append(message);
+        } else if (!append(event, message, buf)) {
+            buf.append(message);
+        }
+    }
+
+    private boolean append(ILoggingEvent event, String message, StringBuilder out) {
+        int mark = out.length();
+        out.append(EXECUTABLE);
+        if (MlfSqlInliner.shared().appendExecutable(event.getThreadName(), message, pretty, out)) return true;
+        out.setLength(mark);
+        return false;
+    }
+}
@@ -5,4 +5,8 @@ pluginManagement {
     }
 }
 
-rootProject.name = "mlf"
\ No newline at end of file
+rootProject.name = "mlf"
+
+// mlf-core：不依赖 IntelliJ 的解析与格式化；mlf-logback / mlf-log4j2：应用运行时输出可执行 SQL 的日志集成；
+// mlf-agent：MyBatis 拦截器，把 BoundSql 与参数直接发送到 IDE
+include("mlf-core", "mlf-logback", "mlf-log4j2", "mlf-agent")
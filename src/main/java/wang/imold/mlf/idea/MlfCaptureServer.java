@@ -0,0 +1,91 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import wang.imold.mlf.MlfCapturedStatement;
+import wang.imold.mlf.MlfFrameCodec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * 接收 mlf-agent 拦截器推送的语句：只监听本机回环地址，端口由 Registry 项 {@code mlf.agent.port} 指定（0 表示关闭）。
+ * <p>
+ * 每个连接一个后台线程按 {@link MlfFrameCodec} 解码，收到的语句交给所有打开项目的 {@link MlfResultService}。
+ */
+public final class MlfCaptureServer implements Disposable {
+
+    static final String PORT_KEY = "mlf.agent.port";
+
+    private static final Logger LOG = Logger.getInstance(MlfCaptureServer.class);
+
+    private ServerSocket server;
+
+    public static MlfCaptureServer getInstance() {
+        return ApplicationManager.getApplication().getService(MlfCaptureServer.class);
+    }
+
+    /** 启动监听，已启动或端口被占用时什么也不做 */
+    public synchronized void start() {
+        if (server != null) return;
+        int port = Registry.intValue(PORT_KEY, 17017);
+        if (port <= 0) return;
+        try {
+            server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            LOG.warn("MyBatis 捕获端口 " + port + " 无法监听：" + e.getMessage());
+            return;
+        }
+        ServerSocket s = server;
+        AppExecutorUtil.getAppExecutorService().execute(() -> accept(s));
+    }
+
+    private void accept(ServerSocket s) {
+        while (!s.isClosed()) {
+            try {
+                Socket socket = s.accept();
+                AppExecutorUtil.getAppExecutorService().execute(() -> receive(socket));
+            } catch (IOException e) {
+                if (!s.isClosed()) LOG.warn("MyBatis 捕获连接失败", e);
+            }
+        }
+    }
+
+    private static void receive(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 << 10))) {
+            MlfFrameCodec.Decoder decoder = new MlfFrameCodec.Decoder();
+            decoder.readHeader(in);
+            List<MlfCapturedStatement> batch;
+            while ((batch = decoder.read(in)) != null) {
+                if (batch.isEmpty()) continue;
+                for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+                    if (!project.isDisposed()) MlfResultService.getInstance(project).capture(batch);
+                }
+            }
+        } catch (IOException e) {
+            LOG.info("MyBatis 捕获连接已断开：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (server == null) return;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+        server = null;
+    }
+}
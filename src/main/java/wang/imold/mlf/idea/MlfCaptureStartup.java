@@ -0,0 +1,17 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 打开项目时启动 {@link MlfCaptureServer}（整个 IDE 只监听一次），并把格式化各阶段的记录接到 JFR 事件上
+ */
+public class MlfCaptureStartup implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        MlfStageEvent.install();
+        MlfCaptureServer.getInstance().start();
+    }
+}
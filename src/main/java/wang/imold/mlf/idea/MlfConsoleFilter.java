@@ -0,0 +1,114 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.execution.filters.Filter;
+import com.intellij.execution.filters.HyperlinkInfo;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfLogLine;
+import wang.imold.mlf.MlfLogRecordExtractor;
+import wang.imold.mlf.MlfSqlPairing;
+import wang.imold.mlf.MlfStatementHistory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 控制台实时过滤器：日志输出时记录每个「线程 + Mapper」最近的 Preparing，
+ * 遇到对应的 Parameters 行就把该行的 "Parameters:" 变成链接，点击时才在后台格式化这一对并展示可执行 SQL。
+ * <p>
+ * 非 MyBatis 行只做几次 indexOf；过滤器线程上只保存模板与参数原文。BATCH 执行器一条 Preparing 之后的多条
+ * Parameters 都会配对，模板保留到下一条 Preparing 或 Total / Updates。
+ * 配对成功的语句经有界队列在后台记入项目的语句历史（{@link MlfStatementHistory}），控制台刷屏、队列已满时丢弃。
+ */
+public class MlfConsoleFilter implements Filter, DumbAware {
+
+    /** 同时跟踪的「线程 + Mapper」数 */
+    private static final int MAX_KEYS = 256;
+    /** 每个「线程 + Mapper」缓存的 Preparing 数 */
+    private static final int RING_SIZE = 4;
+    /** 等待记入语句历史的语句数上限 */
+    private static final int MAX_PENDING = 4096;
+
+    private static final ExecutorService RECORDER =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("MyBatis Log Format Console", 1);
+
+    private final MlfSqlPairing pairing = new MlfSqlPairing(MAX_KEYS, RING_SIZE);
+    private final MlfLogLine logLine = new MlfLogLine();
+    private final MlfResultService service;
+    private final MlfStatementHistory history;
+    private final BlockingQueue<StatementLink> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public MlfConsoleFilter(@NotNull Project project) {
+        this.service = MlfResultService.getInstance(project);
+        this.history = service.getStatements();
+    }
+
+    @Nullable
+    @Override
+    public synchronized Result applyFilter(@NotNull String line, int entireLength) {
+        if (line.indexOf("Preparing:") < 0 && line.indexOf("Parameters:") < 0 && line.indexOf("<==") < 0) return null;
+        if (!logLine.parse(line, 0, line.length())) return null;
+
+        switch (logLine.kind()) {
+            case MlfLogLine.PREPARING:
+                pairing.preparing(logLine.pairKey(), MlfLogRecordExtractor.trimSql(logLine.payload()));
+                return null;
+            case MlfLogLine.TOTAL:
+            case MlfLogLine.UPDATES:
+                pairing.complete(logLine.pairKey());
+                return null;
+            case MlfLogLine.PARAMETERS:
+                break;
+            default:
+                return null;
+        }
+        String sql = pairing.peek(logLine.pairKey());
+        if (sql == null) return null;
+
+        StatementLink link = new StatementLink(sql, logLine.payload(), System.currentTimeMillis());
+        if (pending.offer(link)) {
+            // 之后再格式化控制台中的这条语句时不重复记录
+            service.consoleRecorded(sql, link.parameters);
+            if (draining.compareAndSet(false, true)) RECORDER.execute(this::drain);
+        }
+        int lineStart = entireLength - line.length();
+        int mark = line.indexOf("Parameters:", logLine.markStart());
+        return new Result(lineStart + mark, lineStart + mark + "Parameters".length(), link);
+    }
+
+    /** 在后台把排队的语句记入历史，队列空后退出；退出前再检查一次，避免与新入队的语句错过 */
+    private void drain() {
+        do {
+            StatementLink link;
+            while ((link = pending.poll()) != null) {
+                history.add(link.sql, link.parameters, link.time, -1, -1);
+            }
+            draining.set(false);
+        } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /** 一对 Preparing / Parameters 的链接，点击时才格式化 */
+    private static final class StatementLink implements HyperlinkInfo {
+
+        private final String sql;
+        private final String parameters;
+        private final long time;
+
+        StatementLink(String sql, String parameters, long time) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.time = time;
+        }
+
+        @Override
+        public void navigate(@NotNull Project project) {
+            MlfFormatTask.run(project, parser -> parser.formatStatement(sql, parameters));
+        }
+    }
+}
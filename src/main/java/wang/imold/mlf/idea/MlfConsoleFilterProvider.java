@@ -0,0 +1,22 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.execution.filters.ConsoleFilterProvider;
+import com.intellij.execution.filters.Filter;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 为每个 Run/Debug 控制台创建独立的 {@link MlfConsoleFilter}，可通过 Registry 项 {@code mlf.console.filter.enabled} 关闭
+ */
+public class MlfConsoleFilterProvider implements ConsoleFilterProvider {
+
+    static final String ENABLED_KEY = "mlf.console.filter.enabled";
+
+    @NotNull
+    @Override
+    public Filter[] getDefaultFilters(@NotNull Project project) {
+        if (!Registry.is(ENABLED_KEY, true)) return Filter.EMPTY_ARRAY;
+        return new Filter[]{new MlfConsoleFilter(project)};
+    }
+}
@@ -0,0 +1,73 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+import wang.imold.mlf.MlfLogParser;
+import wang.imold.mlf.MlfLogRecordExtractor;
+import wang.imold.mlf.MlfResultEntry;
+import wang.imold.mlf.MlfStatementRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+public class MlfFormatAction extends AnAction {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(PlatformDataKeys.EDITOR);
+        if (editor == null) {
+            Messages.showWarningDialog("请在控制台选中文本！", "提示");
+            return;
+        }
+
+        SelectionModel selectionModel = editor.getSelectionModel();
+        String selectedText = selectionModel.getSelectedText();
+        if (selectedText == null || selectedText.trim().isEmpty()) {
+            Messages.showWarningDialog("请选中有效的 MyBatis 日志文本！", "提示");
+            return;
+        }
+
+        // 解析放到后台执行，避免大段选区卡住 IDE
+        Project project = e.getProject();
+        MlfFormatTask.runEntries(project, parser -> format(project, parser, selectedText));
+    }
+
+    private static List<MlfResultEntry> format(Project project, MlfLogParser parser, String selectedText) {
+        // 选区中包含多条语句时全部展示，正文在结果窗口中选中时才格式化
+        List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(selectedText);
+        MlfResultService.recordFormatted(project, records);
+        if (records.size() > 1) {
+            return MlfResultEntry.ofRecords(records, parser);
+        }
+        return Collections.singletonList(MlfResultEntry.of("", formatSingle(parser, selectedText)));
+    }
+
+    private static String formatSingle(MlfLogParser parser, String selectedText) {
+        String formattedSql = parser.formatMybatisLog(selectedText);
+        if (formattedSql != null) return formattedSql;
+
+        if (!selectedText.toLowerCase().contains("preparing:")) {
+            throw new MlfFormatTask.Failure("未识别到 Preparing 关键字，请选中完整的 MyBatis 日志！");
+        } else if (!selectedText.toLowerCase().contains("parameters:")) {
+            String pureSql = parser.extractPureSqlFromLog(selectedText);
+            if (pureSql != null && !pureSql.isEmpty()) {
+                return parser.formatStatement(pureSql, (String) null);
+            }
+            throw new MlfFormatTask.Failure("未识别到 Parameters 且无法解析 SQL！");
+        }
+        throw new MlfFormatTask.Failure("SQL 格式化失败！");
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(PlatformDataKeys.EDITOR);
+        boolean isVisible = editor != null && editor.getSelectionModel().hasSelection();
+        e.getPresentation().setVisible(isVisible);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+import wang.imold.mlf.MlfBatchExpander;
+import wang.imold.mlf.MlfLogRecordExtractor;
+import wang.imold.mlf.MlfResultEntry;
+import wang.imold.mlf.MlfStatementRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 格式化整个控制台（有选区时只处理选区）中的全部 MyBatis 语句。
+ * <p>
+ * Registry 项 {@code mlf.batch.collapse.rows} 大于 1 时，BATCH 执行器的 INSERT 按批次合并为多行 INSERT。
+ */
+public class MlfFormatAllAction extends AnAction {
+
+    private static final String COLLAPSE_ROWS_KEY = "mlf.batch.collapse.rows";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(PlatformDataKeys.EDITOR);
+        if (editor == null) {
+            Messages.showWarningDialog("请在控制台中使用！", "提示");
+            return;
+        }
+
+        // 取不可变快照交给后台任务，控制台继续输出不影响解析
+        SelectionModel selectionModel = editor.getSelectionModel();
+        CharSequence text = selectionModel.hasSelection()
+                ? selectionModel.getSelectedText()
+                : editor.getDocument().getImmutableCharSequence();
+        if (text == null || text.length() == 0) {
+            Messages.showWarningDialog("控制台中没有日志！", "提示");
+            return;
+        }
+
+        int collapseRows = Registry.intValue(COLLAPSE_ROWS_KEY, 0);
+        Project project = e.getProject();
+        MlfFormatTask.runEntries(project, parser -> {
+            List<MlfStatementRecord> records = MlfLogRecordExtractor.extractAll(text);
+            if (records.isEmpty()) {
+                throw new MlfFormatTask.Failure("未识别到 Preparing 关键字，控制台中没有 MyBatis 日志！");
+            }
+            MlfResultService.recordFormatted(project, records);
+            // 正文在结果窗口中选中时才格式化
+            if (collapseRows <= 1) return MlfResultEntry.ofRecords(records, parser);
+
+            StringBuilder sb = new StringBuilder();
+            MlfBatchExpander expander = new MlfBatchExpander(sb, collapseRows);
+            records.forEach(expander::accept);
+            expander.finish();
+            return Collections.singletonList(MlfResultEntry.of("", sb.toString().trim()));
+        });
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setVisible(e.getData(PlatformDataKeys.EDITOR) != null);
+    }
+}
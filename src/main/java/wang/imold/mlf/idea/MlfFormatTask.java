@@ -0,0 +1,101 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfFormatBudget;
+import wang.imold.mlf.MlfLogParser;
+import wang.imold.mlf.MlfResultEntry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 后台格式化任务：在可取消的进度条中解析日志，完成后回到 EDT 展示结果。
+ * <p>
+ * 时间与大小预算由 Registry 项 {@code mlf.format.time.budget.ms}、{@code mlf.format.size.budget.chars} 配置，
+ * 超出预算的语句以未排版的可执行 SQL 展示。多条语句的结果只在后台完成提取，正文在结果窗口中按需格式化。
+ */
+public class MlfFormatTask extends Task.Backgroundable {
+
+    private static final Logger LOG = Logger.getInstance(MlfFormatTask.class);
+
+    static final String TIME_BUDGET_KEY = "mlf.format.time.budget.ms";
+    static final String SIZE_BUDGET_KEY = "mlf.format.size.budget.chars";
+
+    private final Function<MlfLogParser, List<MlfResultEntry>> job;
+    private MlfFormatBudget budget;
+    private List<MlfResultEntry> result;
+
+    private MlfFormatTask(@Nullable Project project, Function<MlfLogParser, List<MlfResultEntry>> job) {
+        super(project, "格式化 MyBatis 日志", true);
+        this.job = job;
+    }
+
+    /**
+     * 在后台执行 job，job 返回要展示的 SQL，无法解析时抛出 {@link Failure}
+     */
+    public static void run(@Nullable Project project, Function<MlfLogParser, String> job) {
+        runEntries(project, parser -> Collections.singletonList(MlfResultEntry.of("", job.apply(parser))));
+    }
+
+    /**
+     * 在后台执行 job，job 返回要展示的条目（可以是尚未格式化的 {@link MlfResultEntry#lazy}），无法解析时抛出 {@link Failure}
+     */
+    public static void runEntries(@Nullable Project project, Function<MlfLogParser, List<MlfResultEntry>> job) {
+        ProgressManager.getInstance().run(new MlfFormatTask(project, job));
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        budget = MlfFormatBudget.of(Registry.intValue(TIME_BUDGET_KEY, 5000),
+                Registry.intValue(SIZE_BUDGET_KEY, 2_000_000), indicator::isCanceled);
+        try {
+            result = budget.call(() -> job.apply(new MlfLogParser()));
+        } catch (MlfFormatBudget.CanceledException e) {
+            throw new ProcessCanceledException(e);
+        }
+    }
+
+    @Override
+    public void onSuccess() {
+        if (result == null || result.isEmpty()) return;
+        if (result.size() == 1) {
+            String text = result.get(0).getText();
+            if (text == null) return;
+            if (budget.isExceeded()) {
+                text = "-- 超出格式化时间或大小预算，部分语句未排版\n" + text;
+            }
+            MlfResultService.show(getProject(), text);
+        } else {
+            MlfResultService.show(getProject(), result);
+        }
+    }
+
+    @Override
+    public void onThrowable(@NotNull Throwable error) {
+        if (error instanceof Failure) {
+            Messages.showErrorDialog(error.getMessage(), "解析失败");
+        } else {
+            // 不是输入问题，保留堆栈便于定位
+            LOG.warn("SQL 格式化失败", error);
+            Messages.showErrorDialog("SQL 格式化失败：" + error.getMessage(), "解析失败");
+        }
+    }
+
+    /** 无法解析选中内容，message 直接提示给用户 */
+    public static class Failure extends RuntimeException {
+        public Failure(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+import wang.imold.mlf.MlfLogRecordExtractor;
+import wang.imold.mlf.MlfNPlusOneDetector;
+
+/**
+ * 检测控制台（有选区时只检测选区）中的 N+1 查询：同一线程上同一语句只换参数连续执行多次。
+ * <p>
+ * 阈值与行窗口由 Registry 项 {@code mlf.n1.threshold}、{@code mlf.n1.window.lines} 配置。
+ */
+public class MlfNPlusOneAction extends AnAction {
+
+    private static final String THRESHOLD_KEY = "mlf.n1.threshold";
+    private static final String WINDOW_KEY = "mlf.n1.window.lines";
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(PlatformDataKeys.EDITOR);
+        if (editor == null) {
+            Messages.showWarningDialog("请在控制台中使用！", "提示");
+            return;
+        }
+
+        SelectionModel selectionModel = editor.getSelectionModel();
+        CharSequence text = selectionModel.hasSelection()
+                ? selectionModel.getSelectedText()
+                : editor.getDocument().getImmutableCharSequence();
+        if (text == null || text.length() == 0) {
+            Messages.showWarningDialog("控制台中没有日志！", "提示");
+            return;
+        }
+
+        int threshold = Math.max(2, Registry.intValue(THRESHOLD_KEY, 10));
+        int window = Math.max(1, Registry.intValue(WINDOW_KEY, 500));
+        MlfFormatTask.run(e.getProject(), parser -> {
+            StringBuilder sb = new StringBuilder();
+            MlfNPlusOneDetector detector = new MlfNPlusOneDetector(threshold, window, alert -> {
+                if (sb.length() > 0) sb.append("\n\n");
+                sb.append(alert.toText(parser));
+            });
+            MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(detector::accept);
+            extractor.acceptAll(text);
+            extractor.finish();
+            detector.finish();
+            if (detector.getAlerts() == 0) {
+                throw new MlfFormatTask.Failure("未发现 N+1 查询（同一线程上同一语句连续执行不少于 " + threshold + " 次）");
+            }
+            return sb.toString();
+        });
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setVisible(e.getData(PlatformDataKeys.EDITOR) != null);
+    }
+}
@@ -0,0 +1,81 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+import wang.imold.mlf.MlfFingerprintReport;
+import wang.imold.mlf.MlfFormatBudget;
+import wang.imold.mlf.MlfLogRecordExtractor;
+
+/**
+ * 统计控制台（有选区时只统计选区）中各语句指纹的执行次数与行数
+ */
+public class MlfReportAction extends AnAction {
+
+    /** 表格展示的指纹数 */
+    private static final int TOP = 200;
+    /** 统计时最多保留的指纹数 */
+    private static final int CAPACITY = 4096;
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(PlatformDataKeys.EDITOR);
+        if (editor == null) {
+            Messages.showWarningDialog("请在控制台中使用！", "提示");
+            return;
+        }
+
+        SelectionModel selectionModel = editor.getSelectionModel();
+        CharSequence text = selectionModel.hasSelection()
+                ? selectionModel.getSelectedText()
+                : editor.getDocument().getImmutableCharSequence();
+        if (text == null || text.length() == 0) {
+            Messages.showWarningDialog("控制台中没有日志！", "提示");
+            return;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(e.getProject(), "统计 MyBatis 语句", true) {
+            private MlfFingerprintReport report;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                MlfFingerprintReport result = new MlfFingerprintReport(CAPACITY);
+                MlfLogRecordExtractor extractor = new MlfLogRecordExtractor(result::accept);
+                MlfFormatBudget budget = MlfFormatBudget.of(0, 0, indicator::isCanceled);
+                try {
+                    budget.call(() -> {
+                        extractor.acceptAll(text);
+                        extractor.finish();
+                        return null;
+                    });
+                } catch (MlfFormatBudget.CanceledException ex) {
+                    throw new ProcessCanceledException(ex);
+                }
+                report = result;
+            }
+
+            @Override
+            public void onSuccess() {
+                if (report.getStatements() == 0) {
+                    Messages.showWarningDialog("未识别到 Preparing 关键字，控制台中没有 MyBatis 日志！", "提示");
+                    return;
+                }
+                MlfReportUI.showReport(getProject(), report, TOP);
+            }
+        });
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setVisible(e.getData(PlatformDataKeys.EDITOR) != null);
+    }
+}
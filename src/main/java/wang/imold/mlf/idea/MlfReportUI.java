@@ -0,0 +1,141 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfFingerprintReport;
+import wang.imold.mlf.MlfLogParser;
+import wang.imold.mlf.MlfSqlFingerprint;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+import static javax.swing.AbstractAction.NAME;
+
+/**
+ * 语句指纹统计结果：可按任意列排序，双击或「查看 SQL」格式化展示该指纹的原始模板
+ */
+public class MlfReportUI extends DialogWrapper {
+
+    private static final String[] COLUMNS = {"次数", "误差", "返回行数", "影响行数", "平均行数", "指纹", "语句"};
+    private static final Class<?>[] COLUMN_TYPES = {Long.class, Long.class, Long.class, Long.class, Double.class, String.class, String.class};
+
+    private final MlfFingerprintReport report;
+    private final Project project;
+    private final List<MlfFingerprintReport.Entry> entries;
+    private JBTable table;
+
+    private MlfReportUI(@Nullable Project project, MlfFingerprintReport report, List<MlfFingerprintReport.Entry> entries) {
+        super(project, true);
+        this.project = project;
+        this.report = report;
+        this.entries = entries;
+        setTitle("MyBatis 语句统计");
+        setModal(false);
+        init();
+        setSize(1000, 560);
+    }
+
+    public static void showReport(@Nullable Project project, MlfFingerprintReport report, int top) {
+        new MlfReportUI(project, report, report.top(top)).show();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        table = new JBTable(new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return entries.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return COLUMN_TYPES[column];
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                MlfFingerprintReport.Entry entry = entries.get(row);
+                switch (column) {
+                    case 0: return entry.getCount();
+                    case 1: return entry.getError();
+                    case 2: return entry.getRows();
+                    case 3: return entry.getUpdates();
+                    case 4: return Math.round(entry.getAverageRows() * 100) / 100.0;
+                    case 5: return MlfSqlFingerprint.hex(entry.getHash());
+                    default: return entry.getFingerprint();
+                }
+            }
+        });
+        table.setAutoCreateRowSorter(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(6).setPreferredWidth(560);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) showSelected();
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        panel.add(new JBLabel("共 " + report.getStatements() + " 条语句，" + report.size()
+                + " 个指纹；误差不为 0 的次数为上界估计"), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(table), BorderLayout.CENTER);
+        return panel;
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+        Action showAction = new AbstractAction("查看 SQL") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showSelected();
+            }
+        };
+        Action copyAction = new AbstractAction("复制指纹") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                MlfFingerprintReport.Entry entry = selected();
+                if (entry == null) return;
+                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(
+                        new StringSelection(entry.getFingerprint()), null);
+            }
+        };
+        Action closeAction = getCancelAction();
+        closeAction.putValue(NAME, "关闭");
+        return new Action[]{showAction, copyAction, closeAction};
+    }
+
+    private MlfFingerprintReport.Entry selected() {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : entries.get(table.convertRowIndexToModel(row));
+    }
+
+    private void showSelected() {
+        MlfFingerprintReport.Entry entry = selected();
+        if (entry == null) return;
+        MlfResultService.show(project, new MlfLogParser().formatRawSql(entry.getSample()));
+    }
+}
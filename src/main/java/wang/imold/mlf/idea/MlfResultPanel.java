@@ -0,0 +1,205 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.command.undo.UndoUtil;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.FoldRegion;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.ex.FoldingModelEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighter;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfFormatBudget;
+import wang.imold.mlf.MlfResultEntry;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 格式化结果面板，结果窗口与工具窗口共用。
+ * <p>
+ * 编辑器与 SQL 高亮器只创建一次，切换结果时原地替换文档内容。多条语句时左侧列表只渲染可见的注释头，
+ * 右侧编辑器只放当前选中的一条：语句在被选中时才在后台格式化、才做 SQL 高亮，超长的 IN / VALUES 列表默认折叠。
+ * 选中另一条时尚未完成的格式化立即取消；文档不记录撤销历史，替换大段文本不会堆积撤销步骤。
+ */
+public class MlfResultPanel extends JPanel implements Disposable {
+
+    private final EditorEx editor;
+    private final EntryListModel model = new EntryListModel();
+    private final JBList<MlfResultEntry> list = new JBList<>(model);
+    private final JBScrollPane listScroll = new JBScrollPane(list);
+    private final JBSplitter splitter = new JBSplitter(false, 0.35f);
+    /** 最近一次选择的序号，只在 EDT 上递增；后台格式化完成时序号已变说明选择已切换，结果作废 */
+    private volatile int selection;
+
+    public MlfResultPanel(@Nullable Project project) {
+        super(new BorderLayout());
+        EditorFactory factory = EditorFactory.getInstance();
+        Document document = factory.createDocument("");
+        UndoUtil.disableUndoFor(document);
+        editor = (EditorEx) factory.createViewer(document, project);
+
+        // 强制 SQL 高亮，文档只包含当前语句，高亮范围随之受限
+        EditorHighlighter highlighter = EditorHighlighterFactory.getInstance()
+                .createEditorHighlighter(
+                        FileTypeManager.getInstance().getFileTypeByExtension("sql"),
+                        EditorColorsManager.getInstance().getGlobalScheme(),
+                        project
+                );
+        editor.setHighlighter(highlighter);
+        editor.getSettings().setLineNumbersShown(false);
+        editor.getSettings().setFoldingOutlineShown(true);
+
+        // 固定行高，列表只为可见行调用渲染器
+        list.setFixedCellHeight(JBUI.scale(22));
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(SimpleListCellRenderer.create("", MlfResultEntry::getTitle));
+        list.addListSelectionListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            MlfResultEntry entry = list.getSelectedValue();
+            if (entry != null) display(entry);
+        });
+
+        splitter.setFirstComponent(listScroll);
+        splitter.setSecondComponent(editor.getComponent());
+        add(splitter, BorderLayout.CENTER);
+    }
+
+    /** 替换为另一组结果，只有一条时隐藏列表 */
+    public void setEntries(List<MlfResultEntry> entries) {
+        model.set(entries);
+        listScroll.setVisible(entries.size() > 1);
+        splitter.revalidate();
+        if (entries.isEmpty()) {
+            selection++;
+            setText("");
+        } else {
+            // 先清空选择，保证重新选中第 0 条时触发监听
+            list.clearSelection();
+            list.setSelectedIndex(0);
+            list.ensureIndexIsVisible(0);
+        }
+    }
+
+    public List<MlfResultEntry> getEntries() {
+        return model.entries;
+    }
+
+    /** 编辑器中当前展示的文本 */
+    public String getCurrentText() {
+        return editor.getDocument().getText();
+    }
+
+    /**
+     * 全部语句（含注释头）拼成一份文本，未格式化的语句在此时格式化，在可取消的进度条中执行；取消时返回 null
+     */
+    @Nullable
+    public String buildAllText(@Nullable Project project) {
+        List<MlfResultEntry> entries = model.entries;
+        if (entries.size() == 1 && entries.get(0).isFormatted()) return getCurrentText();
+        StringBuilder sb = new StringBuilder();
+        boolean done = ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+            for (MlfResultEntry entry : entries) {
+                ProgressManager.checkCanceled();
+                if (sb.length() > 0) sb.append("\n\n");
+                sb.append(entry.getTitle()).append('\n').append(entry.getText());
+            }
+        }, "复制全部 SQL", true, project);
+        return done ? sb.toString() : null;
+    }
+
+    /** 展示一条语句，长列表折叠；尚未格式化时在后台格式化，期间先显示注释头 */
+    private void display(MlfResultEntry entry) {
+        int request = ++selection;
+        if (entry.isFormatted()) {
+            setText(entry.getText());
+            return;
+        }
+        setText(entry.getTitle().isEmpty() ? "-- 格式化中…" : entry.getTitle() + "\n-- 格式化中…");
+        // 结果窗口可能是模态对话框，回到 EDT 时使用面板所在的模态状态
+        ModalityState modality = ModalityState.stateForComponent(this);
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            String text = format(entry, () -> selection != request);
+            if (text == null) return;
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (selection == request && !editor.isDisposed()) setText(text);
+            }, modality);
+        });
+    }
+
+    private void setText(String text) {
+        Document doc = editor.getDocument();
+        ApplicationManager.getApplication().runWriteAction(() -> doc.setText(text));
+
+        int[] lists = MlfResultEntry.longLists(text);
+        FoldingModelEx folding = editor.getFoldingModel();
+        folding.runBatchFoldingOperation(() -> {
+            folding.clearFoldRegions();
+            for (int i = 0; i < lists.length; i += 3) {
+                FoldRegion region = folding.addFoldRegion(lists[i], lists[i + 1], " … " + lists[i + 2] + " 项 … ");
+                if (region != null) region.setExpanded(false);
+            }
+        });
+        editor.getScrollingModel().scrollVertically(0);
+    }
+
+    /** 在格式化预算内格式化，超出时返回不排版的结果，取消时返回 null */
+    @Nullable
+    private static String format(MlfResultEntry entry, BooleanSupplier canceled) {
+        MlfFormatBudget budget = MlfFormatBudget.of(Registry.intValue(MlfFormatTask.TIME_BUDGET_KEY, 5000),
+                Registry.intValue(MlfFormatTask.SIZE_BUDGET_KEY, 2_000_000), canceled);
+        try {
+            String text = budget.call(entry::getText);
+            return budget.isExceeded() ? "-- 超出格式化时间或大小预算，未排版\n" + text : text;
+        } catch (MlfFormatBudget.CanceledException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return "-- SQL 格式化失败：" + e.getMessage();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        selection++;
+        if (!editor.isDisposed()) EditorFactory.getInstance().releaseEditor(editor);
+    }
+
+    private static final class EntryListModel extends AbstractListModel<MlfResultEntry> {
+        List<MlfResultEntry> entries = Collections.emptyList();
+
+        void set(List<MlfResultEntry> newEntries) {
+            int old = entries.size();
+            entries = Collections.emptyList();
+            if (old > 0) fireIntervalRemoved(this, 0, old - 1);
+            entries = newEntries;
+            if (!newEntries.isEmpty()) fireIntervalAdded(this, 0, newEntries.size() - 1);
+        }
+
+        @Override
+        public int getSize() {
+            return entries.size();
+        }
+
+        @Override
+        public MlfResultEntry getElementAt(int index) {
+            return entries.get(index);
+        }
+    }
+}
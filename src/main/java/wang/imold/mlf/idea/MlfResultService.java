@@ -0,0 +1,342 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.SearchTextField;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfCapturedStatement;
+import wang.imold.mlf.MlfLogParser;
+import wang.imold.mlf.MlfResultEntry;
+import wang.imold.mlf.MlfStageStats;
+import wang.imold.mlf.MlfStatementHistory;
+import wang.imold.mlf.MlfStatementRecord;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 项目级结果服务：所有格式化结果展示在同一个工具窗口中，编辑器与高亮器只创建一次，
+ * 新结果原地替换文档内容，并保留最近 {@link #HISTORY_LIMIT} 次结果可随时切换回看。
+ * <p>
+ * 同时持有本项目的 {@link MlfStatementHistory}，工具窗口中可按表名 / 列名检索会话中执行过的语句。
+ * mlf-agent 拦截器推送的语句（见 {@link MlfCaptureServer}）汇总在历史中的「实时捕获」一项，刷新按批合并。
+ */
+public final class MlfResultService implements Disposable {
+
+    public static final String TOOL_WINDOW_ID = "MyBatis SQL";
+    static final String NOTIFICATION_GROUP = "MyBatis Log Format";
+
+    /** 保留的历史结果数 */
+    private static final int HISTORY_LIMIT = 20;
+    /** 语句历史的内存上限（MB） */
+    static final String STATEMENT_HISTORY_KEY = "mlf.history.memory.mb";
+    /** 一次检索最多展示的语句数 */
+    private static final int SEARCH_LIMIT = 1000;
+    /** 「实时捕获」保留的最近语句数 */
+    private static final int LIVE_LIMIT = 1000;
+    /** 记住的控制台过滤器已记录语句数 */
+    private static final int CONSOLE_RECORDED_LIMIT = 4096;
+
+    private static final String[] RANGE_TITLES = {"全部", "最近 10 分钟", "最近 1 小时", "最近 24 小时"};
+    private static final long[] RANGE_MILLIS = {0, 10 * 60_000L, 60 * 60_000L, 24 * 60 * 60_000L};
+
+    private final Project project;
+    private final MlfStatementHistory statements;
+    private final DefaultComboBoxModel<HistoryItem> history = new DefaultComboBoxModel<>();
+    private final ArrayDeque<MlfResultEntry> live = new ArrayDeque<>();
+    /** 控制台过滤器已记入历史、尚未被格式化动作认领的语句（模板 + 参数 → 次数），按最近使用淘汰 */
+    private final Map<String, int[]> consoleRecorded = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > CONSOLE_RECORDED_LIMIT;
+        }
+    };
+    private final AtomicBoolean liveScheduled = new AtomicBoolean();
+    private MlfResultPanel panel;
+    private JComponent component;
+    private boolean switching;
+    private HistoryItem liveItem;
+
+    public MlfResultService(Project project) {
+        this.project = project;
+        this.statements = new MlfStatementHistory(
+                Math.max(1, Registry.intValue(STATEMENT_HISTORY_KEY, 16)) * (1L << 20));
+    }
+
+    public static MlfResultService getInstance(@NotNull Project project) {
+        return project.getService(MlfResultService.class);
+    }
+
+    /** 展示单条结果，没有项目时退化为弹窗 */
+    public static void show(@Nullable Project project, String sql) {
+        show(project, Collections.singletonList(MlfResultEntry.of("", sql)));
+    }
+
+    /** 展示一组结果，没有项目时退化为弹窗 */
+    public static void show(@Nullable Project project, List<MlfResultEntry> entries) {
+        if (entries.isEmpty()) return;
+        if (project == null || project.isDisposed() || project.isDefault()) {
+            MlfUI.showEntries(entries);
+            return;
+        }
+        getInstance(project).show(entries);
+    }
+
+    /**
+     * 把格式化过的语句记入语句历史；控制台过滤器在输出时已经记录过的语句跳过，其余（日志文件、粘贴的文本等）照常记录
+     */
+    public static void recordFormatted(@Nullable Project project, List<MlfStatementRecord> records) {
+        if (project == null || project.isDisposed() || project.isDefault()) return;
+        MlfResultService service = getInstance(project);
+        long now = System.currentTimeMillis();
+        for (MlfStatementRecord record : records) {
+            if (!service.claimConsoleRecorded(record.getSql(), record.getParameters())) {
+                service.statements.add(record, now);
+            }
+        }
+    }
+
+    /** 控制台过滤器已把该语句记入历史 */
+    void consoleRecorded(String sql, @Nullable String parameters) {
+        String key = consoleKey(sql, parameters);
+        synchronized (consoleRecorded) {
+            int[] count = consoleRecorded.get(key);
+            if (count == null) {
+                consoleRecorded.put(key, new int[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+    }
+
+    /** 语句由控制台过滤器记录过时认领一次并返回 true */
+    private boolean claimConsoleRecorded(String sql, @Nullable String parameters) {
+        String key = consoleKey(sql, parameters);
+        synchronized (consoleRecorded) {
+            int[] count = consoleRecorded.get(key);
+            if (count == null) return false;
+            if (--count[0] == 0) consoleRecorded.remove(key);
+            return true;
+        }
+    }
+
+    private static String consoleKey(String sql, @Nullable String parameters) {
+        return parameters == null ? sql : sql + '\0' + parameters;
+    }
+
+    /** 本项目会话内的语句历史 */
+    public MlfStatementHistory getStatements() {
+        return statements;
+    }
+
+    /** 复制到剪贴板并以通知提示，不打断当前操作 */
+    public static void copyToClipboard(@Nullable Project project, String text, String message) {
+        CopyPasteManager.getInstance().setContents(new StringSelection(text));
+        showNotification(project, message);
+    }
+
+    static void showNotification(@Nullable Project project, String message) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification(message, NotificationType.INFORMATION)
+                .notify(project);
+    }
+
+    public void show(List<MlfResultEntry> entries) {
+        show(entries.size() > 1 ? entries.size() + " 条语句" : firstLine(entries.get(0).getText()), entries);
+    }
+
+    private void show(String title, List<MlfResultEntry> entries) {
+        String time = new SimpleDateFormat("HH:mm:ss").format(new Date());
+        HistoryItem item = new HistoryItem(time + "  " + title, entries);
+
+        getComponent();
+        switching = true;
+        try {
+            history.insertElementAt(item, 0);
+            while (history.getSize() > HISTORY_LIMIT) history.removeElementAt(history.getSize() - 1);
+            history.setSelectedItem(item);
+        } finally {
+            switching = false;
+        }
+        panel.setEntries(entries);
+
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow != null) toolWindow.activate(null, false);
+    }
+
+    /**
+     * 拦截器推送的一批语句（后台线程调用）：记入语句历史，并在界面线程中合并刷新「实时捕获」
+     */
+    public void capture(List<MlfCapturedStatement> captured) {
+        MlfLogParser parser = new MlfLogParser();
+        synchronized (live) {
+            for (MlfCapturedStatement statement : captured) {
+                statements.add(statement);
+                live.addFirst(MlfResultEntry.lazy(statement.header(), () -> statement.format(parser) + ';'));
+                if (live.size() > LIVE_LIMIT) live.removeLast();
+            }
+        }
+        if (liveScheduled.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(this::refreshLive, project.getDisposed());
+        }
+    }
+
+    private void refreshLive() {
+        liveScheduled.set(false);
+        List<MlfResultEntry> entries;
+        synchronized (live) {
+            entries = new ArrayList<>(live);
+        }
+        getComponent();
+        HistoryItem item = new HistoryItem("实时捕获（最近 " + entries.size() + " 条）", entries);
+        int index = liveItem == null ? -1 : history.getIndexOf(liveItem);
+        boolean selected = history.getSize() == 0 || (index >= 0 && history.getSelectedItem() == liveItem);
+        switching = true;
+        try {
+            if (index >= 0) history.removeElementAt(index);
+            history.insertElementAt(item, Math.max(index, 0));
+            while (history.getSize() > HISTORY_LIMIT) history.removeElementAt(history.getSize() - 1);
+            if (selected) history.setSelectedItem(item);
+        } finally {
+            switching = false;
+        }
+        liveItem = item;
+        if (selected) panel.setEntries(entries);
+    }
+
+    /** 工具窗口内容，首次调用时创建 */
+    JComponent getComponent() {
+        if (component != null) return component;
+        panel = new MlfResultPanel(project);
+        Disposer.register(this, panel);
+
+        ComboBox<HistoryItem> historyBox = new ComboBox<>(history);
+        historyBox.addActionListener(e -> {
+            HistoryItem item = (HistoryItem) history.getSelectedItem();
+            if (!switching && item != null) panel.setEntries(item.entries);
+        });
+
+        JButton copy = new JButton("复制SQL");
+        copy.addActionListener(e -> copyToClipboard(project, panel.getCurrentText(), "已复制SQL"));
+        JButton copyAll = new JButton("复制全部");
+        copyAll.addActionListener(e -> {
+            String all = panel.buildAllText(project);
+            if (all != null) {
+                copyToClipboard(project, all, "已复制全部 " + panel.getEntries().size() + " 条SQL");
+            }
+        });
+        JButton stages = new JButton("阶段耗时");
+        stages.setToolTipText("格式化各阶段的累计次数与耗时，用于判断慢在哪一步");
+        stages.addActionListener(e -> show(project, stageSummary()));
+        JButton clear = new JButton("清空历史");
+        clear.addActionListener(e -> {
+            history.removeAllElements();
+            synchronized (live) {
+                live.clear();
+            }
+            panel.setEntries(Collections.emptyList());
+        });
+
+        SearchTextField search = new SearchTextField(false);
+        search.getTextEditor().setColumns(18);
+        search.getTextEditor().setToolTipText("按表名 / 列名检索执行过的语句，空格分隔表示同时包含，* 结尾表示前缀匹配");
+        ComboBox<String> range = new ComboBox<>(RANGE_TITLES);
+        search.getTextEditor().addActionListener(e -> search(search.getText(), range.getSelectedIndex()));
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 2));
+        toolbar.add(new JLabel("历史："));
+        toolbar.add(historyBox);
+        toolbar.add(copy);
+        toolbar.add(copyAll);
+        toolbar.add(clear);
+        toolbar.add(stages);
+        toolbar.add(new JLabel("  检索语句："));
+        toolbar.add(search);
+        toolbar.add(range);
+
+        JPanel root = new JPanel(new BorderLayout());
+        root.add(toolbar, BorderLayout.NORTH);
+        root.add(panel, BorderLayout.CENTER);
+        component = root;
+        return component;
+    }
+
+    /** 各阶段计数、模板缓存与语句历史的概况，以 SQL 注释展示 */
+    private String stageSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : (MlfStageStats.summary() + MlfLogParser.templateCache() + '\n' + statements).split("\n")) {
+            sb.append("-- ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** 检索语句历史，结果作为一组条目展示，正文在选中时才解码参数并格式化 */
+    private void search(String query, int rangeIndex) {
+        long since = RANGE_MILLIS[Math.max(0, rangeIndex)] == 0 ? 0
+                : System.currentTimeMillis() - RANGE_MILLIS[rangeIndex];
+        List<MlfStatementHistory.Hit> hits = statements.search(query, since, SEARCH_LIMIT);
+        if (hits.isEmpty()) {
+            showNotification(project, "没有找到匹配「" + query.trim() + "」的语句（" + statements + "）");
+            return;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+        MlfLogParser parser = new MlfLogParser();
+        List<MlfResultEntry> entries = new ArrayList<>(hits.size());
+        for (MlfStatementHistory.Hit hit : hits) {
+            StringBuilder title = new StringBuilder("-- ").append(format.format(new Date(hit.getTime())));
+            if (hit.getTotal() >= 0) title.append("  Total: ").append(hit.getTotal());
+            if (hit.getUpdates() >= 0) title.append("  Updates: ").append(hit.getUpdates());
+            title.append("  ").append(firstLine(hit.getSql()));
+            entries.add(MlfResultEntry.lazy(title.toString(), () -> hit.format(parser) + ';'));
+        }
+        String title = query.trim().isEmpty() ? "全部语句" : "检索 " + query.trim();
+        show(title + "（" + hits.size() + " 条）", entries);
+    }
+
+    private static String firstLine(String text) {
+        int end = text.indexOf('\n');
+        String line = end < 0 ? text : text.substring(0, end);
+        return line.length() > 60 ? line.substring(0, 60) + "…" : line;
+    }
+
+    @Override
+    public void dispose() {
+        history.removeAllElements();
+        statements.clear();
+    }
+
+    private static final class HistoryItem {
+        final String title;
+        final List<MlfResultEntry> entries;
+
+        HistoryItem(String title, List<MlfResultEntry> entries) {
+            this.title = title;
+            this.entries = entries;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+}
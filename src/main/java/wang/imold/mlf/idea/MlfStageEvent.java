@@ -0,0 +1,76 @@
+package wang.imold.mlf.idea;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import wang.imold.mlf.MlfStageStats;
+
+/**
+ * 格式化流水线阶段的 JFR 事件，由 {@link #install()} 挂到 {@link MlfStageStats} 上。
+ * <p>
+ * 只在有 JFR 录制进行时创建并提交，例如 {@code jcmd <pid> JFR.start name=mlf}；未录制时每个阶段只多一次
+ * {@link EventType#isEnabled()} 判断，不分配对象。事件在阶段开始时 {@link #begin()}、结束时 {@link #end()}，
+ * 持续时间即阶段耗时，录制的阈值设置与时间线都按它生效。
+ */
+@Name("wang.imold.mlf.Stage")
+@Label("MyBatis Log Format 阶段")
+@Description("日志格式化流水线中单个阶段的一次执行")
+@Category({"MyBatis Log Format"})
+@StackTrace(false)
+public final class MlfStageEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(MlfStageEvent.class);
+
+    /** 每个线程上各阶段已开始、尚未结束的事件 */
+    private static final ThreadLocal<MlfStageEvent[]> OPEN =
+            ThreadLocal.withInitial(() -> new MlfStageEvent[MlfStageStats.stageCount()]);
+
+    @Label("阶段")
+    String stage;
+
+    @Label("输入字符数")
+    int inputChars;
+
+    @Label("参数个数")
+    int paramCount;
+
+    @Label("子查询嵌套层数")
+    int depth;
+
+    /** 阶段开始的 nanoTime，用来与结束回调配对，不写入录制 */
+    private transient long start;
+
+    static void install() {
+        MlfStageStats.setListener(new MlfStageStats.Listener() {
+            @Override
+            public void begin(int stage, long start) {
+                if (!TYPE.isEnabled()) return;
+                MlfStageEvent event = new MlfStageEvent();
+                event.start = start;
+                event.begin();
+                OPEN.get()[stage] = event;
+            }
+
+            @Override
+            public void stage(int stage, long start, long nanos, int inputChars, int paramCount, int depth) {
+                if (!TYPE.isEnabled()) return;
+                MlfStageEvent[] open = OPEN.get();
+                MlfStageEvent event = open[stage];
+                // 录制在阶段中途开始，或阶段因异常没有结束时，槽中没有本次执行的事件
+                if (event == null || event.start != start) return;
+                open[stage] = null;
+                event.end();
+                if (!event.shouldCommit()) return;
+                event.stage = MlfStageStats.name(stage);
+                event.inputChars = inputChars;
+                event.paramCount = paramCount;
+                event.depth = depth;
+                event.commit();
+            }
+        });
+    }
+}
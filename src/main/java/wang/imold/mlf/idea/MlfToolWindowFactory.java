@@ -0,0 +1,23 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 「MyBatis SQL」工具窗口，内容由 {@link MlfResultService} 持有并复用
+ */
+public class MlfToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        MlfResultService service = MlfResultService.getInstance(project);
+        Content content = ContentFactory.getInstance().createContent(service.getComponent(), "", false);
+        content.setCloseable(false);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
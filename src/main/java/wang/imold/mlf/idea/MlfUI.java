@@ -0,0 +1,82 @@
+package wang.imold.mlf.idea;
+
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import wang.imold.mlf.MlfResultEntry;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.util.Collections;
+import java.util.List;
+
+import static javax.swing.AbstractAction.NAME;
+
+/**
+ * 格式化结果弹窗，仅在没有打开的项目（无法使用工具窗口）时使用，正常情况下结果展示在 {@link MlfResultService} 的工具窗口中
+ */
+public class MlfUI extends DialogWrapper {
+
+    private final List<MlfResultEntry> entries;
+    private MlfResultPanel panel;
+
+    private MlfUI(List<MlfResultEntry> entries) {
+        super(true);
+        this.entries = entries;
+        setTitle(entries.size() > 1
+                ? "MyBatis SQL 格式化结果（" + entries.size() + " 条）"
+                : "MyBatis SQL 格式化结果");
+        init();
+        if (entries.size() > 1) {
+            setSize(1100, 650);
+        } else {
+            // 自适应窗口大小（根据 SQL 行数调整），数到 15 行即可
+            int lineCount = MlfResultEntry.lineCount(panel.getCurrentText(), 15);
+            setSize(900, Math.min(600, 40 * lineCount)); // 最大高度 600
+        }
+    }
+
+    public static void showFormattedLog(String sql) {
+        showEntries(Collections.singletonList(MlfResultEntry.of("", sql)));
+    }
+
+    /** 多条语句的结果，条目按需格式化 */
+    public static void showEntries(List<MlfResultEntry> entries) {
+        if (entries.isEmpty()) return;
+        MlfUI ui = new MlfUI(entries);
+        ui.show();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        panel = new MlfResultPanel(null);
+        Disposer.register(getDisposable(), panel);
+        panel.setEntries(entries);
+        return panel;
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+        Action copyAction = new AbstractAction("复制SQL") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                MlfResultService.copyToClipboard(null, panel.getCurrentText(), "已复制SQL");
+            }
+        };
+        Action closeAction = getCancelAction();
+        closeAction.putValue(NAME, "关闭");
+        if (entries.size() == 1) return new Action[]{copyAction, closeAction};
+
+        Action copyAllAction = new AbstractAction("复制全部") {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String all = panel.buildAllText(null);
+                if (all != null) MlfResultService.copyToClipboard(null, all, "已复制全部 " + entries.size() + " 条SQL");
+            }
+        };
+        return new Action[]{copyAction, copyAllAction, closeAction};
+    }
+}
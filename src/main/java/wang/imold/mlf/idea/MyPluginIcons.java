@@ -1,4 +1,4 @@
-package wang.imold.mlf;
+package wang.imold.mlf.idea;
 
 import com.intellij.openapi.util.IconLoader;
 import javax.swing.*;